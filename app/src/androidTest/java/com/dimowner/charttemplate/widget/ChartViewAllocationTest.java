@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.view.View;
+
+import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.util.AndroidUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Scroll sweep of ChartView with drawing of each frame does not allocate once caches are filled.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartViewAllocationTest {
+
+	private static final int WIDTH = 1080;
+	private static final int HEIGHT = 800;
+	/** Labels of all points fit into label caches of data. */
+	private static final int POINTS = 100;
+	/** Points visible at once. */
+	private static final float SIZE = 30;
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	@Test
+	public void lineScrollDoesNotAllocate() {
+		assertSweepDoesNotAllocate("line", false, false);
+	}
+
+	@Test
+	public void stackedBarsScrollDoesNotAllocate() {
+		assertSweepDoesNotAllocate("bar", true, false);
+	}
+
+	@Test
+	public void percentageAreaScrollDoesNotAllocate() {
+		assertSweepDoesNotAllocate("area", true, true);
+	}
+
+	private static void assertSweepDoesNotAllocate(final String type, final boolean stacked, final boolean percentage) {
+		final Context context = InstrumentationRegistry.getTargetContext();
+		final int[] allocated = new int[1];
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				AndroidUtils.update(context);
+				ChartView view = new ChartView(context);
+				view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+						View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+				view.layout(0, 0, WIDTH, HEIGHT);
+				view.setData(createData(type, stacked, percentage));
+				Canvas canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+				//The first sweeps fill label caches and create animators.
+				sweep(view, canvas);
+				sweep(view, canvas);
+				Debug.startAllocCounting();
+				int before = Debug.getGlobalAllocCount();
+				sweep(view, canvas);
+				allocated[0] = Debug.getGlobalAllocCount() - before;
+				Debug.stopAllocCounting();
+			}
+		});
+		assertEquals(0, allocated[0]);
+	}
+
+	private static void sweep(ChartView view, Canvas canvas) {
+		for (float x = 0; x + SIZE < POINTS; x += 0.25f) {
+			view.scrollPos(x, SIZE);
+			view.invalidate();
+			view.draw(canvas);
+		}
+	}
+
+	private static ChartData createData(String type, boolean stacked, boolean percentage) {
+		Random random = new Random(1);
+		long[] time = new long[POINTS];
+		int[][] columns = new int[3][POINTS];
+		for (int i = 0; i < POINTS; i++) {
+			time[i] = 1522540800000L + i * DAY;
+			for (int j = 0; j < columns.length; j++) {
+				columns[j][i] = 10 + random.nextInt(1000);
+			}
+		}
+		return new ChartData(false, 1, time, columns, new String[] {"y0", "y1", "y2"},
+				new String[] {type, type, type}, new String[] {"#3DC23F", "#F34C44", "#4682B4"},
+				false, percentage, stacked);
+	}
+}
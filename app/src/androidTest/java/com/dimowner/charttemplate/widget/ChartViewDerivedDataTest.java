@@ -0,0 +1,95 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import android.content.Context;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.model.ChartDerivedData;
+import com.dimowner.charttemplate.util.AndroidUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Views release shared derived values when detached from window and take them again when attached.
+ * Derived values are dropped by data when nobody holds them, so a new instance is returned then.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ChartViewDerivedDataTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	@Test
+	public void detachedViewsReleaseDerived() {
+		final Context context = InstrumentationRegistry.getTargetContext();
+		InstrumentationRegistry.getInstrumentation().runOnMainSync(new Runnable() {
+			@Override
+			public void run() {
+				AndroidUtils.update(context);
+				ChartData data = createData();
+				ChartView chartView = new ChartView(context);
+				ChartScrollView scrollView = new ChartScrollView(context);
+				chartView.setData(data);
+				scrollView.setData(data);
+				chartView.onAttachedToWindow();
+				scrollView.onAttachedToWindow();
+				ChartDerivedData held = data.acquireDerived();
+				held.release();
+
+				chartView.onDetachedFromWindow();
+				scrollView.onDetachedFromWindow();
+				ChartDerivedData afterDetach = data.acquireDerived();
+				afterDetach.release();
+				assertNotSame(held, afterDetach);
+
+				//Points added while views are detached are calculated when they are attached.
+				data.append(data.getTime(data.getLength() - 1) + DAY, new int[] {5, 6});
+				chartView.onDataChanged(0, 0);
+				scrollView.onDataChanged(0, 0);
+				chartView.onAttachedToWindow();
+				scrollView.onAttachedToWindow();
+				ChartDerivedData attached = data.acquireDerived();
+				assertSame(attached, data.acquireDerived());
+				attached.release();
+				attached.release();
+				chartView.onDetachedFromWindow();
+				scrollView.onDetachedFromWindow();
+				ChartDerivedData released = data.acquireDerived();
+				released.release();
+				assertNotSame(attached, released);
+			}
+		});
+	}
+
+	private static ChartData createData() {
+		long[] time = new long[100];
+		int[][] columns = new int[2][100];
+		for (int i = 0; i < time.length; i++) {
+			time[i] = 1522540800000L + i * DAY;
+			columns[0][i] = i;
+			columns[1][i] = 100 - i;
+		}
+		return new ChartData(false, 1, time, columns, new String[] {"y0", "y1"},
+				new String[] {"line", "line"}, new String[] {"#3DC23F", "#F34C44"}, false, false, false);
+	}
+}
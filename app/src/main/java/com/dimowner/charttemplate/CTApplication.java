@@ -17,10 +17,15 @@
 package com.dimowner.charttemplate;
 
 import android.app.Application;
+import android.content.ComponentCallbacks2;
 import android.content.res.Configuration;
 
 import com.dimowner.charttemplate.model.ChartData;
 import com.dimowner.charttemplate.util.AndroidUtils;
+import com.dimowner.charttemplate.util.ChartLoader;
+import com.dimowner.charttemplate.widget.FrameStats;
+
+import java.io.File;
 
 import timber.log.Timber;
 
@@ -30,6 +35,8 @@ public class CTApplication extends Application {
 
 	private static ChartData[] chartData;
 
+	private static ChartLoader chartLoader;
+
 	@Override
 	public void onCreate() {
 		if (BuildConfig.DEBUG) {
@@ -42,7 +49,33 @@ public class CTApplication extends Application {
 			});
 		}
 		super.onCreate();
+		//Frame stats are recorded in debug builds and logged when the app goes to background.
+		FrameStats.setEnabled(BuildConfig.DEBUG);
 		AndroidUtils.update(getApplicationContext());
+		chartLoader = new ChartLoader(getApplicationContext(), getChartsDir());
+	}
+
+	/**
+	 * Directory of binary charts converted from assets.
+	 * Bound to app version so that updated assets are converted again.
+	 */
+	private File getChartsDir() {
+		return new File(getFilesDir(), "charts_" + BuildConfig.VERSION_CODE);
+	}
+
+	@Override
+	public void onTrimMemory(int level) {
+		super.onTrimMemory(level);
+		chartLoader.trimMemory(level);
+		if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN && FrameStats.isEnabled()) {
+			Timber.d("Frame stats:\n%s", FrameStats.dumpAll());
+		}
+	}
+
+	@Override
+	public void onTerminate() {
+		chartLoader.shutdown();
+		super.onTerminate();
 	}
 
 	@Override
@@ -66,4 +99,8 @@ public class CTApplication extends Application {
 	public static void setChartData(ChartData[] chartData) {
 		CTApplication.chartData = chartData;
 	}
+
+	public static ChartLoader getChartLoader() {
+		return chartLoader;
+	}
 }
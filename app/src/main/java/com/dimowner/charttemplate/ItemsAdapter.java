@@ -38,6 +38,8 @@ import java.util.List;
 public class ItemsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
 	private ChartData[] data;
+	/** Count of shown items, items are shown in order up to the first not loaded one. */
+	private int shownCount = 0;
 
 	private List<ItemViewHolder> holders;
 
@@ -129,20 +131,49 @@ public class ItemsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 
 	@Override
 	public int getItemCount() {
-		return data.length;
+		return shownCount;
 	}
 
+	/**
+	 * Set items, null items are not loaded yet, see {@link #putItem(int, ChartData)}.
+	 */
 	public void setData(ChartData[] d) {
 		this.data = new ChartData[d.length];
 		for (int i = 0; i < d.length; i++) {
 			data[i] = d[i];
 		}
+		shownCount = 0;
+		updateShownCount();
 		notifyDataSetChanged();
 		holders.clear();
 	}
 
-	public void setItem(int pos, ChartData item) {
+	/**
+	 * Set loaded item. Item is shown when all previous items are loaded.
+	 */
+	public void putItem(int pos, ChartData item) {
 		if (pos < data.length) {
+			data[pos] = item;
+			if (pos < shownCount) {
+				notifyItemChanged(pos);
+			} else {
+				int prev = shownCount;
+				updateShownCount();
+				if (shownCount > prev) {
+					notifyItemRangeInserted(prev, shownCount - prev);
+				}
+			}
+		}
+	}
+
+	private void updateShownCount() {
+		while (shownCount < data.length && data[shownCount] != null) {
+			shownCount++;
+		}
+	}
+
+	public void setItem(int pos, ChartData item) {
+		if (pos < shownCount) {
 			data[pos] = item;
 			notifyItemChanged(pos);
 			String key = "Chart " + item.getChartNum();
@@ -152,6 +183,18 @@ public class ItemsAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder>
 		}
 	}
 
+	/**
+	 * Values were added to the item data, shown item view is updated without full reset.
+	 * @param prepended Count of values added to the beginning.
+	 */
+	public void onItemDataChanged(int pos, int prepended) {
+		for (int i = 0; i < holders.size(); i++) {
+			if (holders.get(i).getAdapterPosition() == pos) {
+				holders.get(i).itemView.onDataChanged(data[pos], prepended, 0);
+			}
+		}
+	}
+
 	public void setItemClickListener(ItemClickListener itemClickListener) {
 		this.itemClickListener = itemClickListener;
 	}
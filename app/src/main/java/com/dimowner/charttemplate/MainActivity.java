@@ -21,36 +21,39 @@ import android.content.res.Configuration;
 
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.util.SparseArray;
 import android.view.View;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
 import com.dimowner.charttemplate.model.ChartData;
-import com.dimowner.charttemplate.model.Data;
 import com.dimowner.charttemplate.util.AndroidUtils;
-import com.dimowner.charttemplate.util.TimeUtils;
+import com.dimowner.charttemplate.util.ChartLoader;
+import com.dimowner.charttemplate.util.DetailsWindow;
 import com.dimowner.charttemplate.widget.ChartScrollOverlayView;
 import com.dimowner.charttemplate.widget.ChartView;
 import com.dimowner.charttemplate.widget.ItemView;
-import com.google.gson.Gson;
-
-import java.io.IOException;
 
 import timber.log.Timber;
 
 public class MainActivity extends Activity implements View.OnClickListener,
 			ChartView.OnMoveEventsListener, ChartScrollOverlayView.OnScrollListener {
 
-	private ItemView itemView;
+	private static final int CHARTS_COUNT = 5;
+	/** Count of days shown on each side of the selected day in details mode. */
+	private static final int DETAILS_WINDOW_DAYS = 3;
 
-	private Gson gson = new Gson();
+	private ItemView itemView;
 
 	private RecyclerView recyclerView;
 	private LinearLayoutManager layoutManager;
 	private ItemsAdapter adapter;
 	private Parcelable listSaveState;
+	/** Details windows of charts in details mode by chart number. */
+	private SparseArray<DetailsWindow> detailsWindows = new SparseArray<>();
 
 	@Override
 	protected void onCreate(Bundle savedInstanceState) {
@@ -93,19 +96,17 @@ public class MainActivity extends Activity implements View.OnClickListener,
 					c.setDetailsMode(true);
 					adapter.setItem(num - 1, c);
 				} else {
-					loadChartAsync(num, time, new OnLoadCharListener() {
-						@Override
-						public void onLoadChart(ChartData chart) {
-							if (chart != null) {
-								adapter.setItem(num - 1, chart);
-							}
-						}
-					});
+					cancelDetailsWindow(num);
+					DetailsWindow window = new DetailsWindow(CTApplication.getChartLoader(), num, time,
+							DETAILS_WINDOW_DAYS, onWindowListener);
+					detailsWindows.put(num, window);
+					window.start();
 				}
 			}
 
 			@Override
 			public void hideDetails(int num) {
+				cancelDetailsWindow(num);
 				if (num == 5) {
 					ChartData c = CTApplication.getChartData()[4];
 					c.setDetailsMode(false);
@@ -113,22 +114,81 @@ public class MainActivity extends Activity implements View.OnClickListener,
 				}
 				adapter.setItem(num-1, CTApplication.getChartData()[num-1]);
 			}
+
+			@Override
+			public void extendDetails(int num, boolean atStart) {
+				DetailsWindow window = detailsWindows.get(num);
+				if (window != null) {
+					window.extend(atStart);
+				}
+			}
+
+			@Override
+			public void prefetchDetails(int num, long[] times) {
+				//The last chart shows details from its overview data.
+				if (num != 5) {
+					CTApplication.getChartLoader().prefetch(num, times);
+				}
+			}
 		});
 
-		if (savedInstanceState == null || CTApplication.getChartData() == null) {
-			Thread thread = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					final ChartData d = readDemoData(0);
-					runOnUiThread(new Runnable() {
-						@Override
-						public void run() {
-							adapter.setData(CTApplication.getChartData());
+		if (savedInstanceState == null || !isOverviewsLoaded()) {
+			loadOverviews();
+		}
+	}
+
+	/**
+	 * Load overview charts in parallel, each chart is shown as soon as it and all previous charts are loaded.
+	 * Charts loaded before activity recreation are not loaded again.
+	 */
+	private void loadOverviews() {
+		if (CTApplication.getChartData() == null) {
+			CTApplication.setChartData(new ChartData[CHARTS_COUNT]);
+		}
+		final ChartData[] chartData = CTApplication.getChartData();
+		final long startTime = SystemClock.elapsedRealtime();
+		for (int i = 0; i < chartData.length; i++) {
+			if (chartData[i] == null) {
+				final int pos = i;
+				CTApplication.getChartLoader().load(i + 1, 0, new ChartLoader.OnLoadListener() {
+					@Override
+					public void onLoadChart(ChartData chart) {
+						if (chart != null) {
+							chartData[pos] = chart;
+							int shownBefore = adapter.getItemCount();
+							adapter.putItem(pos, chart);
+							traceStartup(startTime, shownBefore);
 						}
-					});
-				}
-			});
-			thread.start();
+					}
+				});
+			}
+		}
+		adapter.setData(chartData);
+	}
+
+	private boolean isOverviewsLoaded() {
+		ChartData[] chartData = CTApplication.getChartData();
+		if (chartData == null) {
+			return false;
+		}
+		for (int i = 0; i < chartData.length; i++) {
+			if (chartData[i] == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Log time to the first shown chart and time to all loaded charts.
+	 */
+	private void traceStartup(long startTime, int shownBefore) {
+		long time = SystemClock.elapsedRealtime() - startTime;
+		if (shownBefore == 0 && adapter.getItemCount() > 0) {
+			Timber.d("Startup: first chart shown in %d ms", time);
+		}
+		if (isOverviewsLoaded()) {
+			Timber.d("Startup: all charts loaded in %d ms, %s", time, CTApplication.getChartLoader().getMetrics());
 		}
 	}
 
@@ -136,6 +196,36 @@ public class MainActivity extends Activity implements View.OnClickListener,
 		itemView.setData(d);
 	}
 
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		for (int i = 0; i < detailsWindows.size(); i++) {
+			detailsWindows.valueAt(i).cancel();
+		}
+		detailsWindows.clear();
+		CTApplication.getChartLoader().cancelAll();
+	}
+
+	private void cancelDetailsWindow(int num) {
+		DetailsWindow window = detailsWindows.get(num);
+		if (window != null) {
+			window.cancel();
+			detailsWindows.remove(num);
+		}
+	}
+
+	private final DetailsWindow.OnWindowListener onWindowListener = new DetailsWindow.OnWindowListener() {
+		@Override
+		public void onWindowCreated(DetailsWindow window, ChartData data) {
+			adapter.setItem(window.getChartNum() - 1, data);
+		}
+
+		@Override
+		public void onWindowChanged(DetailsWindow window, ChartData data, int prepended) {
+			adapter.onItemDataChanged(window.getChartNum() - 1, prepended);
+		}
+	};
+
 	@Override
 	public void onConfigurationChanged(Configuration newConfig) {
 		AndroidUtils.update(getApplicationContext());
@@ -165,134 +255,6 @@ public class MainActivity extends Activity implements View.OnClickListener,
 		}
 	}
 
-	/**
-	 * Load chart data
-	 * if time <= 0 load overview chart with selected num
-	 */
-	public ChartData loadChart(int chartNum, long time) {
-		try {
-			boolean detailsMode;
-			String location;
-			if (time > 0) {
-				location = "contest/" + chartNum + "/" + TimeUtils.getMonthYear(time) + "/"
-						+ TimeUtils.getDayOfMonth(time) + ".json";
-				detailsMode = true;
-			} else {
-				location = "contest/" + chartNum + "/overview.json";
-				detailsMode = false;
-			}
-
-			String json1 = AndroidUtils.readAsset(getApplicationContext(), location);
-			return toChartData(detailsMode, chartNum, gson.fromJson(json1, Data.class));
-		} catch (IOException | ClassCastException ex) {
-			Timber.e(ex);
-		}
-		return null;
-	}
-
-	public void loadChartAsync(final int num, final long time, final OnLoadCharListener listener) {
-		Thread thread = new Thread(new Runnable() {
-			@Override
-			public void run() {
-				final ChartData data = loadChart(num, time);
-				runOnUiThread(new Runnable() {
-					@Override
-					public void run() {
-						if (listener != null) {
-							listener.onLoadChart(data);
-						}
-					}
-				});
-			}
-		});
-		thread.start();
-	}
-
-	public ChartData readDemoData(int pos) {
-		try {
-//			String DATA_ARRAY = "dataArray";
-//			String COLUMNS = "columns";
-//			String TYPES = "types";
-//			String COLORS = "colors";
-//			String NAMES = "names";
-
-//			String json = AndroidUtils.readAsset(getApplicationContext(), "telegram_chart_data.json");
-			String json1 = AndroidUtils.readAsset(getApplicationContext(), "contest/1/overview.json");
-			String json2 = AndroidUtils.readAsset(getApplicationContext(), "contest/2/overview.json");
-			String json3 = AndroidUtils.readAsset(getApplicationContext(), "contest/3/overview.json");
-			String json4 = AndroidUtils.readAsset(getApplicationContext(), "contest/4/overview.json");
-			String json5 = AndroidUtils.readAsset(getApplicationContext(), "contest/5/overview.json");
-//			Timber.v("json = %s", json);
-//			JSONObject jo = new JSONObject(json);
-//			JSONArray joArray = jo.getJSONArray(DATA_ARRAY);
-//			Data[] dataValues = new Data[joArray.length()];
-//			for (int i = 0; i < joArray.length(); i++) {
-//				Object[][] columns;
-//				Map<String, String> types;
-//				Map<String, String> names;
-//				Map<String, String> colors;
-//				JSONObject joItem = (JSONObject) joArray.get(i);
-//
-//				names = AndroidUtils.jsonToMap(joItem.getJSONObject(NAMES));
-//				types = AndroidUtils.jsonToMap(joItem.getJSONObject(TYPES));
-//				colors = AndroidUtils.jsonToMap(joItem.getJSONObject(COLORS));
-//
-//				JSONArray colArray = joItem.getJSONArray(COLUMNS);
-//				List<Object> list = AndroidUtils.toList(colArray);
-//				columns = new Object[list.size()][];
-//
-//				for (int j = 0; j < list.size(); j++) {
-//					List<Object> l2 = (List<Object>) list.get(j);
-//					Object[] a = new Object[l2.size()];
-//					for (int k = 0; k < l2.size(); k++) {
-//						a[k] = l2.get(k);
-//					}
-//					columns[j] = a;
-//				}
-//				dataValues[i] = new Data(columns, types, names, colors);
-//			}
-
-			Gson gson = new Gson();
-//			DataArray data = gson.fromJson(json, DataArray.class);
-			Data data1 = gson.fromJson(json1, Data.class);
-			Data data2 = gson.fromJson(json2, Data.class);
-			Data data3 = gson.fromJson(json3, Data.class);
-			Data data4 = gson.fromJson(json4, Data.class);
-			Data data5 = gson.fromJson(json5, Data.class);
-//			dataArray = array.getDataArray();
-			ChartData[] chartData = new ChartData[] {toChartData(false, 1, data1), toChartData(false, 2, data2),
-					toChartData(false, 3, data3), toChartData(false, 4, data4), toChartData(false, 5, data5)};
-			CTApplication.setChartData(chartData);
-//			CTApplication.setData(new Data[]{data1, data2, data3, data4, data5});
-//			CTApplication.setData(dataValues);
-//		} catch (IOException | ClassCastException | JSONException ex) {
-		} catch (IOException | ClassCastException ex) {
-			Timber.e(ex);
-			return null;
-		}
-//		return toChartData(CTApplication.getData()[pos]);
-		return CTApplication.getChartData()[pos];
-	}
-
-	private ChartData toChartData(boolean detailsMode, int chartNum, Data d) {
-		if (d != null) {
-			String[] keys = d.getColumnsKeys();
-			int[][] vals = new int[keys.length][d.getDataLength()];
-			String[] names = new String[keys.length];
-			String[] types = new String[keys.length];
-			String[] colors = new String[keys.length];
-			for (int i = 0; i < keys.length; i++) {
-				vals[i] = d.getValues(keys[i]);
-				names[i] = d.getName(keys[i]);
-				types[i] = d.getType(keys[i]);
-				colors[i] = d.getColor(keys[i]);
-			}
-			return new ChartData(detailsMode, chartNum, d.getTimeArray(), vals, names, types, colors,
-					d.isYscaled(), d.isPercentage(), d.isStacked());
-		}
-		return null;
-	}
-
 	@Override
 	public void onClick(View v) {
 		if (v.getId() == R.id.btnNightMode) {
@@ -319,8 +281,4 @@ public class MainActivity extends Activity implements View.OnClickListener,
 //		scrollView.requestDisallowInterceptTouchEvent(true);
 //		recyclerView.requestDisallowInterceptTouchEvent(true);
 	}
-
-	public interface OnLoadCharListener {
-		void onLoadChart(ChartData chart);
-	}
 }
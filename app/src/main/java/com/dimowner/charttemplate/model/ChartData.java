@@ -4,22 +4,47 @@ import android.graphics.Color;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartModel;
+import com.dimowner.charttemplate.core.RangeIndex;
 import com.dimowner.charttemplate.util.TimeUtils;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
 
-public class ChartData implements Parcelable {
+public class ChartData implements ChartModel, Parcelable {
 
-	public static final int TYPE_LINE = 1;
-	public static final int TYPE_BAR = 2;
-	public static final int TYPE_AREA = 3;
+	/** Max count of cached labels of each kind. */
+	private static final int LABELS_CACHE_SIZE = 128;
+	private static final int LABEL_TIME = 0;
+	private static final int LABEL_SHORT = 1;
+	private static final int LABEL_LONG = 2;
+	private static final int LABEL_KINDS = 3;
 
 	private boolean detailsMode;
 	private int chartNum;
+	/** Time and columns arrays may have free space before and after values, length values are used from start. */
 	private long[] time;
-	private String[] times;
-	private String[] timesShort;
-	private String[] timesLong;
+	private int start;
+	private int length;
+	/** Index of the first point counted from the first point data had, labels are cached by it. */
+	private int firstIndex = 0;
+	/** Incremented when points are inserted to the beginning, so snapshots can tell how data was changed. */
+	private int prependCount = 0;
+	/** Data the snapshot is taken from, this for not a snapshot. */
+	private ChartData source = this;
+	/** Arrays are shared with a snapshot, values in them are not moved or overwritten until arrays are reallocated. */
+	private boolean shared = false;
+	/** Sliding window limits of points count and age, 0 when not limited. */
+	private int maxPoints = 0;
+	private long maxAge = 0;
+	/** Old points are removed by batches, so free space at the beginning is reused once per batch. */
+	private int evictBatch = 1;
+	/** Date labels are formatted on demand, only few of them are shown at once. */
+	private LabelCache labels;
+	/** Use time labels instead of dates, set by details mode the data created with. */
+	private boolean timeLabels;
 	private int[][] columns;
 	private String[] names;
 	private String[] types;
@@ -29,53 +54,63 @@ public class ChartData implements Parcelable {
 	private boolean yScaled;
 	private boolean percentage;
 	private boolean stacked;
+	/** Index of values built in background and taken by derived values. Not parcelled. */
+	private RangeIndex rangeIndex;
+	/** Values derived by views, shared while any view holds it. Not parcelled. */
+	private ChartDerivedData derived;
+	/** Incremented on each change of values. */
+	private int modCount = 0;
 
 	public ChartData(boolean detailsMode, int chartNum, long[] time, int[][] columns, String[] names, String[] types, String[] colors,
 						  boolean yScaled, boolean percentage, boolean stacked) {
 		this.detailsMode = detailsMode;
 		this.chartNum = chartNum;
 		this.time = time;
+		this.length = time.length;
 		this.columns = columns;
 		this.names = names;
 		this.types = types;
 		this.colors = colors;
 		this.colorsInts = parseColor(colors);
-		times = new String[time.length];
-		timesShort = new String[time.length];
-		timesLong = new String[time.length];
+		labels = new LabelCache(LABELS_CACHE_SIZE * LABEL_KINDS);
+		timeLabels = detailsMode;
 		this.yScaled = yScaled;
 		this.percentage = percentage;
 		this.stacked = stacked;
-		Date date = new Date();
-		for (int i = 0; i < time.length; i++) {
-			date.setTime(time[i]);
-			if (detailsMode) {
-				times[i] = TimeUtils.formatTime(date);
-			} else {
-				times[i] = TimeUtils.formatDateWeek(date);
-			}
-			timesShort[i] = TimeUtils.formatDate(date);
-			timesLong[i] = TimeUtils.formatDateLong(date);
-		}
-		typesInt = new int[types.length];
-		for (int i = 0; i < types.length; i++) {
-			if (types[i].equalsIgnoreCase("line")) {
-				typesInt[i] = TYPE_LINE;
-			} else if (types[i].equalsIgnoreCase("bar")) {
-				typesInt[i] = TYPE_BAR;
-			} else if (types[i].equalsIgnoreCase("area")) {
-				typesInt[i] = TYPE_AREA;
-			}
-		}
+		typesInt = ArrayChartModel.parseTypes(types);
+	}
+
+	private ChartData(ChartData d) {
+		source = d.source;
+		detailsMode = d.detailsMode;
+		chartNum = d.chartNum;
+		time = d.time;
+		start = d.start;
+		length = d.length;
+		firstIndex = d.firstIndex;
+		prependCount = d.prependCount;
+		//Labels are cached by index which is the same for the same point.
+		labels = d.labels;
+		timeLabels = d.timeLabels;
+		//Arrays of columns are replaced when data reallocates them.
+		columns = d.columns.clone();
+		names = d.names;
+		types = d.types;
+		typesInt = d.typesInt;
+		colors = d.colors;
+		colorsInts = d.colorsInts;
+		yScaled = d.yScaled;
+		percentage = d.percentage;
+		stacked = d.stacked;
+		modCount = d.modCount;
 	}
 
 	//----- START Parcelable implementation ----------
 	private ChartData(Parcel in) {
-		in.readStringArray(times);
-		in.readStringArray(timesShort);
-		in.readStringArray(timesLong);
+		labels = new LabelCache(LABELS_CACHE_SIZE * LABEL_KINDS);
 		in.readIntArray(colorsInts);
 		in.readLongArray(time);
+		length = time.length;
 		in.readStringArray(names);
 		in.readStringArray(types);
 		in.readStringArray(colors);
@@ -98,11 +133,8 @@ public class ChartData implements Parcelable {
 	}
 
 	public void writeToParcel(Parcel out, int flags) {
-		out.writeStringArray(times);
-		out.writeStringArray(timesShort);
-		out.writeStringArray(timesLong);
 		out.writeIntArray(colorsInts);
-		out.writeLongArray(time);
+		out.writeLongArray(Arrays.copyOfRange(time, start, start + length));
 		out.writeStringArray(names);
 		out.writeStringArray(types);
 		out.writeStringArray(colors);
@@ -112,7 +144,7 @@ public class ChartData implements Parcelable {
 
 		out.writeBooleanArray(new boolean[] {yScaled, percentage, stacked});
 		for (int i = 0; i < columns.length; i++) {
-			out.writeIntArray(columns[i]);
+			out.writeIntArray(Arrays.copyOfRange(columns[i], start, start + length));
 		}
 	}
 
@@ -136,10 +168,23 @@ public class ChartData implements Parcelable {
 		return c;
 	}
 
+	/**
+	 * Array may be longer than {@link #getLength()}, values are placed from {@link #getStart()}.
+	 */
 	public long[] getTime() {
 		return time;
 	}
 
+	/**
+	 * Time of the point at index.
+	 */
+	public long getTime(int index) {
+		return time[start + index];
+	}
+
+	/**
+	 * Arrays may be longer than {@link #getLength()}, values are placed from {@link #getStart()}.
+	 */
 	public int[][] getColumns() {
 		return columns;
 	}
@@ -164,16 +209,38 @@ public class ChartData implements Parcelable {
 		return columns[p];
 	}
 
-	public String[] getTimes() {
-		return times;
+	/**
+	 * Label of the date at index: time in details mode, date with week day otherwise.
+	 */
+	public String getTimes(int index) {
+		return getLabel(index, LABEL_TIME);
+	}
+
+	/** Label of the date at index like 16 May. */
+	public String getTimesShort(int index) {
+		return getLabel(index, LABEL_SHORT);
 	}
 
-	public String[] getTimesShort() {
-		return timesShort;
+	/** Label of the date at index like 10 April 2019. */
+	public String getTimesLong(int index) {
+		return getLabel(index, LABEL_LONG);
 	}
 
-	public String[] getTimesLong() {
-		return timesLong;
+	private String getLabel(int index, int kind) {
+		int key = (firstIndex + index) * LABEL_KINDS + kind;
+		String label = labels.get(key);
+		if (label == null) {
+			Date date = new Date(time[start + index]);
+			if (kind == LABEL_TIME) {
+				label = timeLabels ? TimeUtils.formatTime(date) : TimeUtils.formatDateWeek(date);
+			} else if (kind == LABEL_SHORT) {
+				label = TimeUtils.formatDate(date);
+			} else {
+				label = TimeUtils.formatDateLong(date);
+			}
+			labels.put(key, label);
+		}
+		return label;
 	}
 
 	public boolean isYscaled() {
@@ -189,7 +256,11 @@ public class ChartData implements Parcelable {
 	}
 
 	public int getLength() {
-		return times.length;
+		return length;
+	}
+
+	public int getStart() {
+		return start;
 	}
 
 	public int getLinesCount() {
@@ -201,7 +272,7 @@ public class ChartData implements Parcelable {
 	}
 
 	public int getVal(int lineIndex, int valIndex) {
-		return columns[lineIndex][valIndex];
+		return columns[lineIndex][start + valIndex];
 	}
 
 	public int getChartNum() {
@@ -217,6 +288,262 @@ public class ChartData implements Parcelable {
 	}
 
 	public void setData(int val, int lineIndex, int valIndex) {
-		columns[lineIndex][valIndex] = val;
+		columns[lineIndex][start + valIndex] = val;
+		rangeIndex = null;
+		modCount++;
+	}
+
+	/**
+	 * Build index of values, so that views do not build it on the main thread.
+	 * The index is taken by the first {@link #acquireDerived()} and dropped when values are changed.
+	 * Not taken index must be dropped by {@link #dropPreparedIndex()}, cached data does not hold it.
+	 * @param pool Pool to build index of large data in parallel, null to build on the calling thread.
+	 */
+	public void prepareRangeIndex(ForkJoinPool pool) {
+		rangeIndex = new RangeIndex(columns, start, length, pool);
+	}
+
+	public void dropPreparedIndex() {
+		rangeIndex = null;
+	}
+
+	/**
+	 * Prepared index of current values or null, the data does not hold it after the call.
+	 */
+	RangeIndex takePreparedIndex() {
+		RangeIndex prepared = rangeIndex;
+		rangeIndex = null;
+		return prepared != null && prepared.getLength() == length ? prepared : null;
+	}
+
+	/**
+	 * Snapshot of current values which is not changed by appends, so it can be read on another thread.
+	 * Values are not copied: arrays are shared and data reallocates them instead of moving values
+	 * or writing to free space before values, appends write only after values of the snapshot.
+	 * Snapshot must not be changed.
+	 */
+	public ChartData snapshot() {
+		shared = true;
+		return new ChartData(this);
+	}
+
+	/**
+	 * Count of points removed from the beginning of the older snapshot of the same data to get this data,
+	 * other points of the snapshot are the same and placed at the beginning of this data.
+	 * @return count of removed points or -1 when data is another one, points were inserted to the beginning
+	 * or nothing is left of the snapshot.
+	 */
+	public int getRemovedSince(ChartData older) {
+		if (older.source != source || older.prependCount != prependCount) {
+			return -1;
+		}
+		int removed = firstIndex - older.firstIndex;
+		if (removed < 0 || removed >= older.length || length < older.length - removed) {
+			return -1;
+		}
+		return removed;
+	}
+
+	public int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Take values derived from this data shared by views, each call must be paired with
+	 * {@link ChartDerivedData#release()}. Values are recalculated if data was changed without notifying them.
+	 */
+	public ChartDerivedData acquireDerived() {
+		if (derived == null) {
+			derived = new ChartDerivedData(this);
+		} else {
+			derived.validate();
+		}
+		derived.retain();
+		return derived;
+	}
+
+	void onDerivedReleased(ChartDerivedData d) {
+		if (derived == d) {
+			derived = null;
+		}
+	}
+
+	/**
+	 * Keep only the last points removing old points by batches of half of maxPoints,
+	 * see {@link #setWindow(int, long, int)}.
+	 */
+	public int setWindow(int maxPoints, long maxAge) {
+		return setWindow(maxPoints, maxAge, maxPoints / 2);
+	}
+
+	/**
+	 * Keep only the last points: not more than maxPoints and not older than maxAge than the last point.
+	 * Old points are removed from the beginning by batches of evictBatch points when limit is exceeded,
+	 * so data holds up to maxPoints+evictBatch-1 points. Arrays are allocated once for twice more points,
+	 * so remaining points are moved to the beginning of arrays not more often than once per maxPoints appends.
+	 * @param maxPoints Max count of points or 0.
+	 * @param maxAge Max age of points in milliseconds or 0.
+	 * @param evictBatch Count of points removed at once, larger batches make derived values update less often.
+	 * @return count of points removed from the beginning.
+	 */
+	public int setWindow(int maxPoints, long maxAge, int evictBatch) {
+		rangeIndex = null;
+		modCount++;
+		this.maxPoints = maxPoints;
+		this.maxAge = maxAge;
+		this.evictBatch = Math.max(1, evictBatch);
+		int capacity = 2 * maxPoints + this.evictBatch;
+		if (maxPoints > 0 && time.length != capacity) {
+			int removed = length > maxPoints ? length - maxPoints : 0;
+			removeFirst(removed);
+			resize(0, capacity);
+			return removed + evict();
+		}
+		return evict();
+	}
+
+	/**
+	 * Append one point to the end without allocations while there is free space.
+	 * @param values Value of each line.
+	 * @return count of points removed from the beginning by sliding window.
+	 */
+	public int append(long t, int[] values) {
+		rangeIndex = null;
+		modCount++;
+		ensureTailRoom(1);
+		time[start + length] = t;
+		for (int i = 0; i < columns.length; i++) {
+			columns[i][start + length] = values[i];
+		}
+		length++;
+		return evict();
+	}
+
+	/**
+	 * Append count values starting from index from to the end.
+	 * Arrays grow twice when there is no free space, so appends do not copy existing values each time.
+	 * @param cols Columns of the same lines as this data has.
+	 * @return count of points removed from the beginning by sliding window.
+	 */
+	public int append(long[] t, int[][] cols, int from, int count) {
+		rangeIndex = null;
+		modCount++;
+		ensureTailRoom(count);
+		System.arraycopy(t, from, time, start + length, count);
+		for (int i = 0; i < columns.length; i++) {
+			System.arraycopy(cols[i], from, columns[i], start + length, count);
+		}
+		length += count;
+		return evict();
+	}
+
+	/**
+	 * Insert count values starting from index from to the beginning.
+	 * Values are written to free space before the first value, existing values are not moved.
+	 * When there is not enough free space, arrays are reallocated with free space at the beginning
+	 * not less than the current length, so next inserts do not copy existing values.
+	 * @param cols Columns of the same lines as this data has.
+	 */
+	public void prepend(long[] t, int[][] cols, int from, int count) {
+		rangeIndex = null;
+		modCount++;
+		if (start < count || shared) {
+			resize(Math.max(count, length), time.length - start + Math.max(count, length));
+		}
+		start -= count;
+		System.arraycopy(t, from, time, start, count);
+		for (int i = 0; i < columns.length; i++) {
+			System.arraycopy(cols[i], from, columns[i], start, count);
+		}
+		length += count;
+		if (firstIndex > 0) {
+			//Inserted points take indexes of removed points which labels may be cached.
+			labels.clear();
+		}
+		firstIndex -= count;
+		prependCount++;
+	}
+
+	/**
+	 * Remove points exceeding sliding window limits.
+	 * @return count of removed points.
+	 */
+	private int evict() {
+		int remove = 0;
+		if (maxPoints > 0 && length >= maxPoints + evictBatch) {
+			remove = length - maxPoints;
+		}
+		if (maxAge > 0 && length > 0) {
+			//First point not older than the limit.
+			long limit = time[start + length - 1] - maxAge;
+			int lo = 0;
+			int hi = length;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (time[start + mid] < limit) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			if (lo >= evictBatch && lo > remove) {
+				remove = lo;
+			}
+		}
+		removeFirst(remove);
+		return remove;
+	}
+
+	/**
+	 * Remove points from the beginning, values are not moved.
+	 * Labels of remaining points are kept, see {@link #firstIndex}.
+	 */
+	private void removeFirst(int count) {
+		if (count <= 0) {
+			return;
+		}
+		start += count;
+		length -= count;
+		firstIndex += count;
+	}
+
+	/**
+	 * Make free space for count points after the last one. Values are moved to the beginning
+	 * of arrays when it is enough, otherwise arrays grow twice keeping free space before values.
+	 * Arrays shared with a snapshot are reallocated instead of moving values.
+	 */
+	private void ensureTailRoom(int count) {
+		if (start + length + count <= time.length) {
+			return;
+		}
+		if (shared && length + count <= time.length) {
+			resize(0, time.length);
+		} else if (length + count <= time.length) {
+			System.arraycopy(time, start, time, 0, length);
+			for (int i = 0; i < columns.length; i++) {
+				System.arraycopy(columns[i], start, columns[i], 0, length);
+			}
+			start = 0;
+		} else {
+			resize(start, Math.max(length + count, 2 * length));
+		}
+	}
+
+	/**
+	 * Reallocate arrays placing values after head free points.
+	 * @param head Count of free points before values.
+	 * @param tail Capacity of arrays without head points.
+	 */
+	private void resize(int head, int tail) {
+		long[] t = new long[head + tail];
+		System.arraycopy(time, start, t, head, length);
+		time = t;
+		for (int i = 0; i < columns.length; i++) {
+			int[] c = new int[head + tail];
+			System.arraycopy(columns[i], start, c, head, length);
+			columns[i] = c;
+		}
+		start = head;
+		shared = false;
 	}
 }
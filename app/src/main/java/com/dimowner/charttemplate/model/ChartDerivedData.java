@@ -0,0 +1,243 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.model;
+
+import com.dimowner.charttemplate.core.LineScales;
+import com.dimowner.charttemplate.core.LttbCache;
+import com.dimowner.charttemplate.core.MinMaxPyramid;
+import com.dimowner.charttemplate.core.RangeIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Values derived from chart data which do not depend on a view: min/max pyramids of lines drawn as lines,
+ * LTTB results, range index, line scales, layout buffer and stacked sums of lines states used by views. Everything is calculated when data is set or changed,
+ * views only read the values while drawing. Views showing the same data share one instance taken by
+ * {@link ChartData#acquireDerived()}, so the values are calculated and stored once.
+ * The instance is dropped when the last view releases it.
+ * Not thread safe, used by views on the main thread.
+ */
+public class ChartDerivedData {
+
+	/** Count of lines states which stacked sums are kept for, the least recently used are dropped. */
+	private static final int MAX_STACKED_SUMS = 8;
+
+	private final ChartData data;
+	private int refCount = 0;
+	/** Data modification count the values are calculated for. */
+	private int modCount;
+
+	/** Objects are kept while data is changed, so views may hold them. */
+	private final MinMaxPyramid[] linePyramids;
+	private final LttbCache lttbCache;
+	/** Recalculated when data is changed, so scaled line stays in bounds of other lines. */
+	private final LineScales lineScales;
+	private RangeIndex rangeIndex;
+	private float[] layoutBuffer;
+	/** Ordered from the most recently used. */
+	private final List<StackedSums> stackedSums = new ArrayList<>();
+
+	ChartDerivedData(ChartData data) {
+		this.data = data;
+		linePyramids = new MinMaxPyramid[data.getLinesCount()];
+		for (int i = 0; i < linePyramids.length; i++) {
+			if (isDrawnAsLine(data.getType(i))) {
+				linePyramids[i] = new MinMaxPyramid(data.getValues(i), data.getStart(), data.getLength());
+			}
+		}
+		lttbCache = new LttbCache(data.getColumns(), data.getStart(), data.getLength());
+		rangeIndex = data.takePreparedIndex();
+		if (rangeIndex == null) {
+			rangeIndex = new RangeIndex(data.getColumns(), data.getStart(), data.getLength(), null);
+		}
+		lineScales = new LineScales(data.getLinesCount());
+		lineScales.update(data, rangeIndex);
+		updateLayoutBuffer();
+		modCount = data.getModCount();
+	}
+
+	/**
+	 * Lines of types other than bar and area are drawn as lines.
+	 */
+	public static boolean isDrawnAsLine(int type) {
+		return type != ChartData.TYPE_BAR && type != ChartData.TYPE_AREA;
+	}
+
+	void retain() {
+		refCount++;
+	}
+
+	/**
+	 * Count of views holding the instance.
+	 */
+	int getRefCount() {
+		return refCount;
+	}
+
+	/**
+	 * Release the instance taken by {@link ChartData#acquireDerived()}, the view must not use it anymore.
+	 */
+	public void release() {
+		refCount--;
+		if (refCount == 0) {
+			data.onDerivedReleased(this);
+		}
+	}
+
+	/**
+	 * Recalculate everything when data was changed without {@link #onDataChanged}.
+	 */
+	void validate() {
+		if (modCount != data.getModCount()) {
+			rebuild();
+		}
+	}
+
+	/**
+	 * Update values after points were added to data. Each view sharing the instance calls it,
+	 * only the first call does the work.
+	 * @param prepended Count of points added to the beginning.
+	 * @param removed Count of points removed from the beginning before points were added.
+	 */
+	public void onDataChanged(int prepended, int removed) {
+		if (modCount == data.getModCount()) {
+			return;
+		}
+		int start = data.getStart();
+		if (prepended == 0) {
+			//Removed points are dropped from the beginning, only appended points are calculated.
+			if (removed == 0) {
+				lttbCache.append(data.getColumns(), start, data.getLength());
+			} else {
+				lttbCache.update(data.getColumns(), start, data.getLength());
+			}
+			for (int i = 0; i < linePyramids.length; i++) {
+				if (linePyramids[i] != null) {
+					linePyramids[i].removeFirst(data.getValues(i), start, removed);
+					linePyramids[i].append(data.getValues(i), start, data.getLength());
+				}
+			}
+			rangeIndex.removeFirst(removed);
+			rangeIndex.append(data.getColumns(), start, data.getLength());
+			for (int i = 0; i < stackedSums.size(); i++) {
+				stackedSums.get(i).onAppended(removed);
+			}
+		} else if (removed == 0 && data.getLength() == rangeIndex.getLength() + prepended) {
+			//Only points inserted to the beginning are calculated.
+			lttbCache.update(data.getColumns(), start, data.getLength());
+			for (int i = 0; i < linePyramids.length; i++) {
+				if (linePyramids[i] != null) {
+					linePyramids[i].prepend(data.getValues(i), start, prepended);
+				}
+			}
+			rangeIndex.prepend(data.getColumns(), start, prepended);
+			for (int i = 0; i < stackedSums.size(); i++) {
+				stackedSums.get(i).onPrepended(prepended);
+			}
+		} else {
+			//Structures are rebuilt without allocations while capacity is enough.
+			rebuild();
+			return;
+		}
+		lineScales.update(data, rangeIndex);
+		updateLayoutBuffer();
+		modCount = data.getModCount();
+	}
+
+	private void rebuild() {
+		lttbCache.update(data.getColumns(), data.getStart(), data.getLength());
+		for (int i = 0; i < linePyramids.length; i++) {
+			if (linePyramids[i] != null) {
+				linePyramids[i].reset(data.getValues(i), data.getStart(), data.getLength());
+			}
+		}
+		rangeIndex.reset(data.getColumns(), data.getStart(), data.getLength());
+		for (int i = 0; i < stackedSums.size(); i++) {
+			stackedSums.get(i).rebuild();
+		}
+		lineScales.update(data, rangeIndex);
+		updateLayoutBuffer();
+		modCount = data.getModCount();
+	}
+
+	/**
+	 * Pyramids of lines, null for lines which are not drawn as lines, see {@link #isDrawnAsLine(int)}.
+	 */
+	public MinMaxPyramid[] getLinePyramids() {
+		return linePyramids;
+	}
+
+	public LttbCache getLttbCache() {
+		return lttbCache;
+	}
+
+	/**
+	 * Scales of lines, changed by {@link #onDataChanged}. Copy them to use on another thread.
+	 */
+	public LineScales getLineScales() {
+		return lineScales;
+	}
+
+	/**
+	 * Range index of all lines, views pass own lines state into queries.
+	 */
+	public RangeIndex getRangeIndex() {
+		return rangeIndex;
+	}
+
+	/**
+	 * Sums of lines values for the lines state, shared by views showing the same lines.
+	 * Views do not keep the result: it is taken for each use, because sums of states which were not used
+	 * for a while are dropped. Nothing is allocated when sums of the state are kept.
+	 * @param lines Lines included into sums, the array is not kept.
+	 */
+	public StackedSums getStackedSums(boolean[] lines) {
+		for (int i = 0; i < stackedSums.size(); i++) {
+			StackedSums sums = stackedSums.get(i);
+			if (sums.isFor(lines)) {
+				if (i > 0) {
+					stackedSums.remove(i);
+					stackedSums.add(0, sums);
+				}
+				return sums;
+			}
+		}
+		if (stackedSums.size() == MAX_STACKED_SUMS) {
+			stackedSums.remove(MAX_STACKED_SUMS - 1);
+		}
+		StackedSums sums = new StackedSums(data, lines);
+		stackedSums.add(0, sums);
+		return sums;
+	}
+
+	/**
+	 * Buffer for laid out points of one line, 4 floats per point.
+	 * Has the same free space as data, so it is not reallocated on each append.
+	 * Views draw on the main thread one after another, so they use the same buffer.
+	 * Take it before each draw, it is reallocated when data grows.
+	 */
+	public float[] getLayoutBuffer() {
+		return layoutBuffer;
+	}
+
+	private void updateLayoutBuffer() {
+		if (layoutBuffer == null || layoutBuffer.length < data.getLength() * 4) {
+			layoutBuffer = new float[data.getTime().length * 4];
+		}
+	}
+}
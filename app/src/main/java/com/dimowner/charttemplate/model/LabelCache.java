@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.model;
+
+/**
+ * Bounded cache of labels by int key.
+ * Cache is split into sets of WAYS entries, least recently used entry of a set is replaced.
+ * Lookup does not allocate. Thread safe.
+ */
+public class LabelCache {
+
+	private static final int WAYS = 4;
+
+	private final int setsBits;
+	private final int[] keys;
+	private final String[] labels;
+	private final long[] used;
+	private long useCounter = 0;
+
+	/**
+	 * @param capacity Max count of cached labels, rounded up to power of two.
+	 */
+	public LabelCache(int capacity) {
+		int bits = 0;
+		while ((WAYS << bits) < capacity) {
+			bits++;
+		}
+		setsBits = bits;
+		keys = new int[WAYS << bits];
+		labels = new String[WAYS << bits];
+		used = new long[WAYS << bits];
+	}
+
+	/**
+	 * @return cached label or null.
+	 */
+	public synchronized String get(int key) {
+		int first = setIndex(key) * WAYS;
+		for (int i = first; i < first + WAYS; i++) {
+			if (labels[i] != null && keys[i] == key) {
+				used[i] = ++useCounter;
+				return labels[i];
+			}
+		}
+		return null;
+	}
+
+	public synchronized void put(int key, String label) {
+		int first = setIndex(key) * WAYS;
+		int entry = first;
+		for (int i = first; i < first + WAYS; i++) {
+			if (labels[i] == null || keys[i] == key) {
+				entry = i;
+				break;
+			}
+			if (used[i] < used[entry]) {
+				entry = i;
+			}
+		}
+		keys[entry] = key;
+		labels[entry] = label;
+		used[entry] = ++useCounter;
+	}
+
+	public synchronized void clear() {
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = null;
+		}
+	}
+
+	private int setIndex(int key) {
+		if (setsBits == 0) {
+			return 0;
+		}
+		return (key * 0x9E3779B9) >>> (32 - setsBits);
+	}
+}
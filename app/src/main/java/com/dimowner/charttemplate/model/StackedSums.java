@@ -0,0 +1,126 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.model;
+
+import com.dimowner.charttemplate.core.ChartLayout;
+import com.dimowner.charttemplate.core.StackSums;
+import com.dimowner.charttemplate.core.SumIndex;
+
+/**
+ * Sums of lines values which depend on lines state: max of stacked sums, prefix sums of stacked lines
+ * and totals of percentage chart. Taken from {@link ChartDerivedData#getStackedSums(boolean[])},
+ * so views showing the same lines of the same data share them.
+ * Updated by {@link ChartDerivedData} when data is changed.
+ */
+public class StackedSums {
+
+	private final ChartData data;
+	/** Lines included into sums. */
+	private final boolean[] lines;
+	/** Null for not stacked chart. */
+	private final SumIndex sumIndex;
+	private final StackSums stackSums = new StackSums();
+	private float[] totals;
+	/** Count of points totals are calculated for. */
+	private int totalsLength = 0;
+
+	StackedSums(ChartData data, boolean[] lines) {
+		this.data = data;
+		this.lines = lines.clone();
+		sumIndex = data.isStacked() ? new SumIndex(data.getColumns(), data.getStart(), data.getLength(), this.lines) : null;
+	}
+
+	boolean isFor(boolean[] lines) {
+		if (lines.length != this.lines.length) {
+			return false;
+		}
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i] != this.lines[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Points were removed from the beginning and then appended to the end.
+	 */
+	void onAppended(int removed) {
+		if (sumIndex != null) {
+			sumIndex.removeFirst(removed);
+			sumIndex.append(data.getColumns(), data.getStart(), data.getLength());
+		}
+		if (removed > 0) {
+			stackSums.invalidate();
+			//Sliding window, totals of remaining points are moved without allocations.
+			int kept = Math.max(0, totalsLength - removed);
+			if (kept > 0) {
+				System.arraycopy(totals, removed, totals, 0, kept);
+			}
+			totalsLength = kept;
+		}
+	}
+
+	/**
+	 * Points were inserted to the beginning.
+	 */
+	void onPrepended(int count) {
+		if (sumIndex != null) {
+			sumIndex.prepend(data.getColumns(), data.getStart(), count);
+		}
+		stackSums.invalidate();
+		totalsLength = 0;
+	}
+
+	void rebuild() {
+		if (sumIndex != null) {
+			sumIndex.reset(data.getColumns(), data.getStart(), data.getLength());
+		}
+		stackSums.invalidate();
+		totalsLength = 0;
+	}
+
+	/**
+	 * Max of stacked sums, null for not stacked chart.
+	 */
+	public SumIndex getSumIndex() {
+		return sumIndex;
+	}
+
+	/**
+	 * Prefix sums of stacked lines updated for animation state of the view which is drawing.
+	 * Views draw on the main thread one after another, so take them before each layout.
+	 * @param animIndex Animated line index or -1.
+	 * @param animKoef Animated line values multiplier.
+	 */
+	public StackSums getStackSums(int animIndex, float animKoef) {
+		stackSums.update(data, lines, animIndex, animKoef);
+		return stackSums;
+	}
+
+	/**
+	 * Sums of lines values divided by 100 for percentage chart, see {@link ChartLayout#calculateTotals}.
+	 * Only points added since the last call are calculated.
+	 */
+	public float[] getTotals() {
+		if (totals == null || totalsLength != data.getLength()) {
+			totals = ChartLayout.calculateTotals(data, lines, -1, 1, totals, totalsLength);
+			totalsLength = data.getLength();
+		}
+		return totals;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import com.dimowner.charttemplate.core.ChartBinaryFormat;
+import com.dimowner.charttemplate.core.ChartDataParser;
+import com.dimowner.charttemplate.model.ChartData;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Converts contest JSON assets into {@link ChartBinaryFormat} files.
+ */
+public class ChartBinaryConverter {
+
+	public static final String CONTEST_DIR = "contest";
+	private static final String JSON_EXT = ".json";
+	private static final String BIN_EXT = ".bin";
+	private static final String OVERVIEW = "overview.json";
+
+	private ChartBinaryConverter() {}
+
+	/**
+	 * Convert every JSON file of the contest/N/ assets tree.
+	 * @return count of converted files.
+	 */
+	public static int convertAssets(Context context, File outDir) throws IOException {
+		AssetManager assets = context.getAssets();
+		int count = 0;
+		String[] charts = assets.list(CONTEST_DIR);
+		if (charts != null) {
+			for (String chart : charts) {
+				try {
+					count += convertDir(context, CONTEST_DIR + "/" + chart, Integer.parseInt(chart), outDir);
+				} catch (NumberFormatException e) {
+					//Not a chart directory, skip it.
+				}
+			}
+		}
+		return count;
+	}
+
+	private static int convertDir(Context context, String path, int chartNum, File outDir) throws IOException {
+		int count = 0;
+		String[] list = context.getAssets().list(path);
+		if (list != null) {
+			for (String name : list) {
+				String location = path + "/" + name;
+				if (name.endsWith(JSON_EXT)) {
+					convert(context, location, !OVERVIEW.equals(name), chartNum, getBinaryFile(outDir, location));
+					count++;
+				} else {
+					count += convertDir(context, location, chartNum, outDir);
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Parse JSON asset and store it into binary file.
+	 * @return parsed chart.
+	 */
+	public static ChartData convert(Context context, String location, boolean detailsMode,
+											  int chartNum, File out) throws IOException {
+		ChartData data = ChartDataParser.parse(context.getAssets().open(location), factory(detailsMode, chartNum));
+		File dir = out.getParentFile();
+		if (dir != null && !dir.exists() && !dir.mkdirs()) {
+			throw new IOException("Failed to create dir: " + dir.getAbsolutePath());
+		}
+		//Write into temp file first so that partially written file is never mapped.
+		File tmp = new File(out.getAbsolutePath() + ".tmp");
+		ChartBinaryFormat.write(data, data.getNames(), data.getTypes(), data.getColors(), new FileOutputStream(tmp));
+		if (!tmp.renameTo(out)) {
+			tmp.delete();
+			throw new IOException("Failed to rename: " + tmp.getAbsolutePath());
+		}
+		return data;
+	}
+
+	/**
+	 * Read chart from binary file.
+	 */
+	public static ChartData read(File file, boolean detailsMode, int chartNum) throws IOException {
+		return ChartBinaryFormat.read(file, factory(detailsMode, chartNum));
+	}
+
+	private static ChartDataParser.ChartFactory<ChartData> factory(final boolean detailsMode, final int chartNum) {
+		return new ChartDataParser.ChartFactory<ChartData>() {
+			@Override
+			public ChartData create(long[] time, int[][] columns, String[] names, String[] types,
+											String[] colors, boolean yScaled, boolean percentage, boolean stacked) {
+				return new ChartData(detailsMode, chartNum, time, columns, names, types, colors,
+						yScaled, percentage, stacked);
+			}
+		};
+	}
+
+	/**
+	 * Binary file location for JSON asset location.
+	 */
+	public static File getBinaryFile(File outDir, String location) {
+		if (location.endsWith(JSON_EXT)) {
+			location = location.substring(0, location.length() - JSON_EXT.length());
+		}
+		return new File(outDir, location + BIN_EXT);
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import android.content.ComponentCallbacks2;
+import android.util.LruCache;
+
+import com.dimowner.charttemplate.model.ChartData;
+
+/**
+ * LRU cache of decoded charts by asset location, limited by size of charts in bytes.
+ * Thread safe.
+ */
+public class ChartCache extends LruCache<String, ChartData> {
+
+	/** Approximate size of object headers and small fields of a chart. */
+	private static final int CHART_OVERHEAD = 256;
+	private static final int ARRAY_OVERHEAD = 16;
+
+	/**
+	 * @param maxBytes Max size of cached charts in bytes.
+	 */
+	public ChartCache(int maxBytes) {
+		super(maxBytes);
+	}
+
+	@Override
+	protected int sizeOf(String key, ChartData value) {
+		return getSize(value);
+	}
+
+	/**
+	 * Size of chart primitive arrays in bytes.
+	 */
+	public static int getSize(ChartData data) {
+		long size = CHART_OVERHEAD + ARRAY_OVERHEAD + 8L * data.getTime().length;
+		int[][] columns = data.getColumns();
+		for (int i = 0; i < columns.length; i++) {
+			size += ARRAY_OVERHEAD + 4L * columns[i].length;
+		}
+		return (int) Math.min(size, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Release memory depending on {@link ComponentCallbacks2#onTrimMemory(int)} level.
+	 */
+	public void trimMemory(int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			evictAll();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			trimToSize(maxSize() / 2);
+		}
+	}
+}
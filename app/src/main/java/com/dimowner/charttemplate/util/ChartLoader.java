@@ -0,0 +1,505 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.SparseArray;
+
+import com.dimowner.charttemplate.model.ChartData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import timber.log.Timber;
+
+/**
+ * Loads charts on a small bounded pool of background threads.
+ * Requests are executed in order they were made, so that charts requested first are shown first.
+ * Each chart slot (chart number) has at most one active request: request of the same day joins
+ * the active one, request of another day cancels it, so results are never delivered out of order.
+ * Details charts can be prefetched into the cache on a separate lowest priority thread.
+ * Public methods and listeners are called on the main thread.
+ */
+public class ChartLoader {
+
+	/** Threads count, overviews are loaded in parallel on startup. */
+	private static final int THREADS_COUNT = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	private static final int QUEUE_CAPACITY = 16;
+	private static final long KEEP_ALIVE_SECONDS = 30;
+	/** Part of the max heap size used by the cache of details charts. */
+	private static final int CACHE_HEAP_PART = 16;
+	/** Prefetch must not compete with requested charts, so it uses one thread. */
+	private static final int PREFETCH_THREADS_COUNT = 1;
+
+	private final Context context;
+	private final File chartsDir;
+	private final ThreadPoolExecutor executor;
+	private final ThreadPoolExecutor prefetchExecutor;
+	private final Handler mainHandler;
+	/** Builds indexes of large charts in parallel, shared by loader threads, stopped by {@link #shutdown()}. */
+	private final ForkJoinPool indexPool = new ForkJoinPool(THREADS_COUNT);
+	/** Decoded details charts. */
+	private final ChartCache cache;
+
+	/** Active request of each chart slot. */
+	private final SparseArray<Request> slots = new SparseArray<>();
+	/** Not delivered prefetch requests. */
+	private final List<Request> prefetches = new ArrayList<>();
+	private final Metrics metrics = new Metrics();
+
+	public ChartLoader(Context context, File chartsDir) {
+		this.context = context.getApplicationContext();
+		this.chartsDir = chartsDir;
+		this.mainHandler = new Handler(Looper.getMainLooper());
+		executor = new ThreadPoolExecutor(THREADS_COUNT, THREADS_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+				new LoaderThreadFactory("ChartLoader-", Process.THREAD_PRIORITY_BACKGROUND));
+		executor.allowCoreThreadTimeOut(true);
+		prefetchExecutor = new ThreadPoolExecutor(PREFETCH_THREADS_COUNT, PREFETCH_THREADS_COUNT, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY),
+				new LoaderThreadFactory("ChartPrefetch-", Process.THREAD_PRIORITY_LOWEST));
+		prefetchExecutor.allowCoreThreadTimeOut(true);
+		cache = new ChartCache((int) Math.min(Runtime.getRuntime().maxMemory() / CACHE_HEAP_PART, Integer.MAX_VALUE));
+	}
+
+	/**
+	 * Load chart asynchronously. Cached details chart is delivered immediately.
+	 * @param chartNum Chart number, also used as the slot of the request.
+	 * @param time Day of the details chart or 0 to load overview.
+	 */
+	public void load(int chartNum, long time, OnLoadListener listener) {
+		String location = getLocation(chartNum, time);
+		Request active = slots.get(chartNum);
+		ChartData cached = time > 0 ? cache.get(location) : null;
+		if (cached != null) {
+			if (active != null) {
+				cancel(active);
+			}
+			metrics.cacheHits++;
+			listener.onLoadChart(cached);
+			return;
+		}
+		if (active != null) {
+			if (active.location.equals(location)) {
+				active.listeners.add(listener);
+				metrics.deduplicated++;
+				return;
+			}
+			cancel(active);
+		}
+		Request prefetch = findPrefetch(location);
+		if (prefetch != null) {
+			prefetches.remove(prefetch);
+			if (!prefetch.future.cancel(false)) {
+				//Prefetch is already running, wait for its result instead of loading again.
+				prefetch.listeners.add(listener);
+				slots.put(chartNum, prefetch);
+				metrics.deduplicated++;
+				return;
+			}
+		}
+		Request request = new Request(chartNum, time, location, false);
+		request.listeners.add(listener);
+		try {
+			request.future = executor.submit(request);
+			slots.put(chartNum, request);
+		} catch (RejectedExecutionException ex) {
+			Timber.e(ex);
+			metrics.failed++;
+			listener.onLoadChart(null);
+		}
+	}
+
+	/**
+	 * Load details charts into the cache in background with the lowest priority.
+	 * Not started prefetch of days which are not in the list is cancelled.
+	 * @param times Days of the details charts in order of importance.
+	 */
+	public void prefetch(int chartNum, long[] times) {
+		for (int i = prefetches.size() - 1; i >= 0; i--) {
+			Request request = prefetches.get(i);
+			if (request.chartNum != chartNum || indexOf(times, request.time) < 0) {
+				if (request.future.cancel(false)) {
+					request.cancelled = true;
+					prefetches.remove(i);
+					metrics.cancelled++;
+				}
+			}
+		}
+		prefetchExecutor.purge();
+		for (int i = 0; i < times.length; i++) {
+			if (times[i] <= 0) {
+				continue;
+			}
+			String location = getLocation(chartNum, times[i]);
+			Request active = slots.get(chartNum);
+			if (cache.get(location) != null || findPrefetch(location) != null
+					|| (active != null && active.location.equals(location))) {
+				continue;
+			}
+			Request request = new Request(chartNum, times[i], location, true);
+			try {
+				request.future = prefetchExecutor.submit(request);
+				prefetches.add(request);
+			} catch (RejectedExecutionException ex) {
+				//Prefetch is optional, skip days which do not fit into the queue.
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Cancel not started prefetch requests.
+	 */
+	public void cancelPrefetch() {
+		prefetch(0, new long[0]);
+	}
+
+	private Request findPrefetch(String location) {
+		for (int i = 0; i < prefetches.size(); i++) {
+			if (prefetches.get(i).location.equals(location)) {
+				return prefetches.get(i);
+			}
+		}
+		return null;
+	}
+
+	private static int indexOf(long[] times, long time) {
+		for (int i = 0; i < times.length; i++) {
+			if (times[i] == time) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Cancel active request of the chart slot, its listeners are not called.
+	 */
+	public void cancel(int chartNum) {
+		Request active = slots.get(chartNum);
+		if (active != null) {
+			cancel(active);
+		}
+	}
+
+	public void cancelAll() {
+		while (slots.size() > 0) {
+			cancel(slots.valueAt(0));
+		}
+		cancelPrefetch();
+	}
+
+	/**
+	 * Cancel all requests and stop loader threads and index pool, the loader can not be used after it.
+	 */
+	public void shutdown() {
+		cancelAll();
+		executor.shutdown();
+		prefetchExecutor.shutdown();
+		indexPool.shutdown();
+	}
+
+	private void cancel(Request request) {
+		request.cancelled = true;
+		if (request.future != null) {
+			request.future.cancel(false);
+		}
+		if (slots.get(request.chartNum) == request) {
+			slots.remove(request.chartNum);
+		}
+		metrics.cancelled++;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public ChartCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Release cached charts depending on {@link android.content.ComponentCallbacks2#onTrimMemory(int)} level.
+	 */
+	public void trimMemory(int level) {
+		cache.trimMemory(level);
+	}
+
+	/**
+	 * Load chart on the calling thread. Binary copy of the asset is used when exists.
+	 * @param time Day of the details chart or 0 to load overview.
+	 */
+	public ChartData loadChart(int chartNum, long time) {
+		String location = getLocation(chartNum, time);
+		boolean detailsMode = time > 0;
+		try {
+			File bin = ChartBinaryConverter.getBinaryFile(chartsDir, location);
+			if (bin.exists()) {
+				try {
+					return ChartBinaryConverter.read(bin, detailsMode, chartNum);
+				} catch (IOException ex) {
+					Timber.e(ex);
+					bin.delete();
+				}
+			}
+			return ChartBinaryConverter.convert(context, location, detailsMode, chartNum, bin);
+		} catch (IOException | IllegalStateException | NumberFormatException ex) {
+			Timber.e(ex);
+		}
+		return null;
+	}
+
+	/**
+	 * Asset location of the chart.
+	 * @param time Day of the details chart or 0 for overview.
+	 */
+	public static String getLocation(int chartNum, long time) {
+		if (time > 0) {
+			return ChartBinaryConverter.CONTEST_DIR + "/" + chartNum + "/" + TimeUtils.getMonthYear(time) + "/"
+					+ TimeUtils.getDayOfMonth(time) + ".json";
+		} else {
+			return ChartBinaryConverter.CONTEST_DIR + "/" + chartNum + "/overview.json";
+		}
+	}
+
+	private void deliver(Request request, ChartData data) {
+		try {
+			deliverToListeners(request, data);
+		} finally {
+			if (data != null) {
+				//Index is taken by views of listeners, cached data must not hold it.
+				data.dropPreparedIndex();
+			}
+		}
+	}
+
+	private void deliverToListeners(Request request, ChartData data) {
+		if (request.cancelled) {
+			return;
+		}
+		if (slots.get(request.chartNum) == request) {
+			slots.remove(request.chartNum);
+		}
+		if (prefetches.remove(request)) {
+			if (data != null) {
+				metrics.prefetched++;
+			}
+			return;
+		}
+		long now = SystemClock.elapsedRealtime();
+		metrics.record(request.startTime - request.submitTime, request.endTime - request.startTime,
+				now - request.submitTime, data != null);
+		Timber.d("Loaded %s in %d ms (wait %d ms, load %d ms)", request.location, now - request.submitTime,
+				request.startTime - request.submitTime, request.endTime - request.startTime);
+		for (int i = 0; i < request.listeners.size(); i++) {
+			request.listeners.get(i).onLoadChart(data);
+		}
+	}
+
+	private class Request implements Runnable {
+
+		private final int chartNum;
+		private final long time;
+		private final String location;
+		/** Prefetched chart is only cached, so index is not prepared for it. */
+		private final boolean prefetch;
+		private final List<OnLoadListener> listeners = new ArrayList<>();
+		private final long submitTime = SystemClock.elapsedRealtime();
+		private Future<?> future;
+		private volatile boolean cancelled = false;
+		private long startTime;
+		private long endTime;
+
+		Request(int chartNum, long time, String location, boolean prefetch) {
+			this.chartNum = chartNum;
+			this.time = time;
+			this.location = location;
+			this.prefetch = prefetch;
+		}
+
+		@Override
+		public void run() {
+			if (cancelled) {
+				return;
+			}
+			startTime = SystemClock.elapsedRealtime();
+			Trace.beginSection("ChartLoader.load");
+			ChartData loaded;
+			try {
+				loaded = loadChart(chartNum, time);
+				if (loaded != null && !prefetch) {
+					//Views take the prepared index instead of scanning all values on the main thread.
+					loaded.prepareRangeIndex(indexPool);
+				}
+				if (loaded != null && time > 0) {
+					cache.put(location, loaded);
+				}
+			} catch (RuntimeException ex) {
+				//Listeners still get the result and the slot is released, so next requests do not wait for it.
+				Timber.e(ex, "Failed to load %s", location);
+				loaded = null;
+			} finally {
+				Trace.endSection();
+			}
+			final ChartData data = loaded;
+			endTime = SystemClock.elapsedRealtime();
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					deliver(Request.this, data);
+				}
+			});
+		}
+	}
+
+	private static class LoaderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private final String namePrefix;
+		private final int priority;
+
+		LoaderThreadFactory(String namePrefix, int priority) {
+			this.namePrefix = namePrefix;
+			this.priority = priority;
+		}
+
+		@Override
+		public Thread newThread(final Runnable r) {
+			return new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(priority);
+					r.run();
+				}
+			}, namePrefix + count.incrementAndGet());
+		}
+	}
+
+	/**
+	 * Latency of delivered requests in milliseconds and counters of requests.
+	 */
+	public static class Metrics {
+
+		private int loaded;
+		private int failed;
+		private int cancelled;
+		private int deduplicated;
+		private int cacheHits;
+		private int prefetched;
+		private long totalWait;
+		private long totalLoad;
+		private long totalLatency;
+		private long maxLatency;
+
+		private void record(long wait, long load, long latency, boolean success) {
+			if (success) {
+				loaded++;
+			} else {
+				failed++;
+			}
+			totalWait += wait;
+			totalLoad += load;
+			totalLatency += latency;
+			if (latency > maxLatency) {
+				maxLatency = latency;
+			}
+		}
+
+		public int getLoaded() {
+			return loaded;
+		}
+
+		public int getFailed() {
+			return failed;
+		}
+
+		public int getCancelled() {
+			return cancelled;
+		}
+
+		public int getDeduplicated() {
+			return deduplicated;
+		}
+
+		public int getCacheHits() {
+			return cacheHits;
+		}
+
+		/** Count of charts loaded into the cache by prefetch. */
+		public int getPrefetched() {
+			return prefetched;
+		}
+
+		/** Average time from request to delivery of the result. */
+		public long getAverageLatency() {
+			int count = loaded + failed;
+			return count > 0 ? totalLatency / count : 0;
+		}
+
+		/** Average time request waited in queue. */
+		public long getAverageWait() {
+			int count = loaded + failed;
+			return count > 0 ? totalWait / count : 0;
+		}
+
+		/** Average time of reading and parsing. */
+		public long getAverageLoad() {
+			int count = loaded + failed;
+			return count > 0 ? totalLoad / count : 0;
+		}
+
+		public long getMaxLatency() {
+			return maxLatency;
+		}
+
+		@Override
+		public String toString() {
+			return "Metrics{" +
+					"loaded=" + loaded +
+					", failed=" + failed +
+					", cancelled=" + cancelled +
+					", deduplicated=" + deduplicated +
+					", cacheHits=" + cacheHits +
+					", prefetched=" + prefetched +
+					", avgLatency=" + getAverageLatency() +
+					", avgWait=" + getAverageWait() +
+					", avgLoad=" + getAverageLoad() +
+					", maxLatency=" + maxLatency +
+					'}';
+		}
+	}
+
+	public interface OnLoadListener {
+		void onLoadChart(ChartData chart);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import com.dimowner.charttemplate.model.ChartData;
+
+import java.util.Arrays;
+
+/**
+ * Details chart of several days assembled from per day files.
+ * Each day file contains values of the surrounding days too, only values of the day itself are taken.
+ * Days are loaded one by one starting from the selected day and added to the window edges,
+ * so the window data grows without copying of already loaded values.
+ * Methods and listener are called on the main thread.
+ */
+public class DetailsWindow {
+
+	public static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+	private final ChartLoader loader;
+	private final int chartNum;
+	private final OnWindowListener listener;
+
+	private ChartData data;
+	/** First and last days of the window, including loading ones. */
+	private long firstDay;
+	private long lastDay;
+	/** Count of days still to add on each side. */
+	private int pendingBefore;
+	private int pendingAfter;
+	/** No more days on the side. */
+	private boolean startReached = false;
+	private boolean endReached = false;
+	private boolean loading = false;
+	/** Add next day after the last day when both sides are pending. */
+	private boolean nextAfter = true;
+	private boolean cancelled = false;
+
+	/**
+	 * @param day Selected day, start of the day in milliseconds.
+	 * @param radius Count of days loaded on each side of the selected day.
+	 */
+	public DetailsWindow(ChartLoader loader, int chartNum, long day, int radius, OnWindowListener listener) {
+		this.loader = loader;
+		this.chartNum = chartNum;
+		this.listener = listener;
+		this.firstDay = day;
+		this.lastDay = day;
+		this.pendingBefore = radius;
+		this.pendingAfter = radius;
+	}
+
+	public void start() {
+		load(firstDay, false);
+	}
+
+	/**
+	 * Add one more day to the window side if there is such day.
+	 * Ignored while another day is loading, call it again when the edge is still reached.
+	 * @param atStart Add day before the first day, after the last day otherwise.
+	 */
+	public void extend(boolean atStart) {
+		if (data == null || loading || cancelled) {
+			return;
+		}
+		if (atStart && !startReached) {
+			pendingBefore++;
+		} else if (!atStart && !endReached) {
+			pendingAfter++;
+		}
+		loadNext();
+	}
+
+	public void cancel() {
+		cancelled = true;
+		if (loading) {
+			loader.cancel(chartNum);
+		}
+	}
+
+	public ChartData getData() {
+		return data;
+	}
+
+	public int getChartNum() {
+		return chartNum;
+	}
+
+	private void loadNext() {
+		if (pendingBefore > 0 && startReached) {
+			pendingBefore = 0;
+		}
+		if (pendingAfter > 0 && endReached) {
+			pendingAfter = 0;
+		}
+		boolean before;
+		if (pendingBefore > 0 && pendingAfter > 0) {
+			before = !nextAfter;
+			nextAfter = !nextAfter;
+		} else if (pendingBefore > 0) {
+			before = true;
+		} else if (pendingAfter > 0) {
+			before = false;
+		} else {
+			return;
+		}
+		if (before) {
+			pendingBefore--;
+			firstDay -= DAY_MILLIS;
+			load(firstDay, true);
+		} else {
+			pendingAfter--;
+			lastDay += DAY_MILLIS;
+			load(lastDay, false);
+		}
+	}
+
+	private void load(final long day, final boolean before) {
+		loading = true;
+		loader.load(chartNum, day, new ChartLoader.OnLoadListener() {
+			@Override
+			public void onLoadChart(ChartData chart) {
+				if (cancelled) {
+					return;
+				}
+				loading = false;
+				onDayLoaded(chart, day, before);
+				//Neighbours are not shown without the selected day.
+				if (data != null) {
+					loadNext();
+				}
+			}
+		});
+	}
+
+	private void onDayLoaded(ChartData chart, long day, boolean before) {
+		int from = chart != null ? findIndex(chart, day) : 0;
+		int to = chart != null ? findIndex(chart, day + DAY_MILLIS) : 0;
+		if (data == null) {
+			if (to > from) {
+				data = copyOfRange(chart, from, to);
+				listener.onWindowCreated(this, data);
+			}
+		} else if (to > from) {
+			if (before) {
+				data.prepend(chart.getTime(), chart.getColumns(), chart.getStart() + from, to - from);
+				listener.onWindowChanged(this, data, to - from);
+			} else {
+				data.append(chart.getTime(), chart.getColumns(), chart.getStart() + from, to - from);
+				listener.onWindowChanged(this, data, 0);
+			}
+		} else if (before) {
+			startReached = true;
+			firstDay += DAY_MILLIS;
+		} else {
+			endReached = true;
+			lastDay -= DAY_MILLIS;
+		}
+	}
+
+	/**
+	 * Index of the first value not earlier than time.
+	 */
+	private static int findIndex(ChartData chart, long time) {
+		int lo = 0;
+		int hi = chart.getLength();
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (chart.getTime(mid) < time) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Copy values of the range to the new data, cached day chart must not be changed by appends.
+	 */
+	private static ChartData copyOfRange(ChartData chart, int from, int to) {
+		int start = chart.getStart();
+		int[][] columns = new int[chart.getLinesCount()][];
+		for (int i = 0; i < columns.length; i++) {
+			columns[i] = Arrays.copyOfRange(chart.getValues(i), start + from, start + to);
+		}
+		long[] time = Arrays.copyOfRange(chart.getTime(), start + from, start + to);
+		return new ChartData(true, chart.getChartNum(), time, columns,
+				chart.getNames(), chart.getTypes(), chart.getColors(), chart.isYscaled(), chart.isPercentage(),
+				chart.isStacked());
+	}
+
+	public interface OnWindowListener {
+		/** Window data is created from the selected day. */
+		void onWindowCreated(DetailsWindow window, ChartData data);
+		/**
+		 * Day added to the window data.
+		 * @param prepended Count of values inserted at the beginning, indexes of old values are shifted by it.
+		 */
+		void onWindowChanged(DetailsWindow window, ChartData data, int prepended);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.dimowner.charttemplate.model.ChartData;
+
+import java.util.Random;
+
+/**
+ * Appends generated points to chart data on the main thread, values of each line make a random walk.
+ * Feeds live charts without a real data source. Points are appended without allocations.
+ */
+public class LiveDataGenerator {
+
+	private static final int START_VALUE = 100;
+
+	/** Created on start, so points can be generated with {@link #generate(int)} without a Looper. */
+	private Handler handler;
+	private final ChartData data;
+	private final long interval;
+	private final Random random;
+	private final int[] values;
+	private long time;
+	private boolean running = false;
+	private OnAppendListener listener;
+
+	private final Runnable appendTask = new Runnable() {
+		@Override
+		public void run() {
+			generate(1);
+			if (running) {
+				handler.postDelayed(this, interval);
+			}
+		}
+	};
+
+	/**
+	 * @param interval Time between points in milliseconds, used for both timestamps and real time.
+	 * @param seed Seed of values, the same seed generates the same values.
+	 */
+	public LiveDataGenerator(ChartData data, long interval, long seed) {
+		this.data = data;
+		this.interval = interval;
+		this.random = new Random(seed);
+		values = new int[data.getLinesCount()];
+		int last = data.getLength() - 1;
+		for (int i = 0; i < values.length; i++) {
+			values[i] = last >= 0 ? data.getVal(i, last) : START_VALUE;
+		}
+		time = last >= 0 ? data.getTime(last) : System.currentTimeMillis();
+	}
+
+	public void setOnAppendListener(OnAppendListener listener) {
+		this.listener = listener;
+	}
+
+	public void start() {
+		if (!running) {
+			running = true;
+			if (handler == null) {
+				handler = new Handler(Looper.getMainLooper());
+			}
+			handler.postDelayed(appendTask, interval);
+		}
+	}
+
+	public void stop() {
+		running = false;
+		if (handler != null) {
+			handler.removeCallbacks(appendTask);
+		}
+	}
+
+	/**
+	 * Append count points immediately.
+	 */
+	public void generate(int count) {
+		int removed = 0;
+		for (int k = 0; k < count; k++) {
+			for (int i = 0; i < values.length; i++) {
+				int step = Math.max(1, values[i] / 10);
+				values[i] = Math.max(0, values[i] + random.nextInt(2 * step + 1) - step);
+			}
+			time += interval;
+			removed += data.append(time, values);
+		}
+		if (listener != null) {
+			listener.onAppend(data, count, removed);
+		}
+	}
+
+	public interface OnAppendListener {
+		/**
+		 * @param removed Count of points removed from the beginning by sliding window of data.
+		 */
+		void onAppend(ChartData data, int count, int removed);
+	}
+}
@@ -21,19 +21,42 @@ import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
 
+/**
+ * Date formatting helpers. SimpleDateFormat is not thread safe, so each thread uses own format instances.
+ */
 public class TimeUtils {
 
 	/** Date format: 16 May */
-	private static SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM", Locale.getDefault());
+	private static final ThreadLocal<SimpleDateFormat> dateFormat = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("dd MMM", Locale.getDefault());
+		}
+	};
 
 	/** Date format: Sat, 12 May 2019 */
-	private static SimpleDateFormat dateFormatWeek = new SimpleDateFormat("EEE, dd MMM yyyy", Locale.getDefault());
+	private static final ThreadLocal<SimpleDateFormat> dateFormatWeek = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("EEE, dd MMM yyyy", Locale.getDefault());
+		}
+	};
 
 	/** Date format: 10 April 2019 */
-	private static SimpleDateFormat dateFormatLong = new SimpleDateFormat("dd MMMM yyyy", Locale.getDefault());
+	private static final ThreadLocal<SimpleDateFormat> dateFormatLong = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("dd MMMM yyyy", Locale.getDefault());
+		}
+	};
 
 	/** Time format: 15:30 */
-	private static SimpleDateFormat timeFormat24H = new SimpleDateFormat("HH:mm", Locale.getDefault());
+	private static final ThreadLocal<SimpleDateFormat> timeFormat24H = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("HH:mm", Locale.getDefault());
+		}
+	};
 
 	private TimeUtils() {
 	}
@@ -42,28 +65,28 @@ public class TimeUtils {
 		if (date == null) {
 			return "Wrong date!";
 		}
-		return dateFormat.format(date);
+		return dateFormat.get().format(date);
 	}
 
 	public static String formatDateWeek(Date date) {
 		if (date == null) {
 			return "Wrong date!";
 		}
-		return dateFormatWeek.format(date);
+		return dateFormatWeek.get().format(date);
 	}
 
 	public static String formatDateLong(Date date) {
 		if (date == null) {
 			return "Wrong date!";
 		}
-		return dateFormatLong.format(date);
+		return dateFormatLong.get().format(date);
 	}
 
 	public static String formatTime(Date date) {
 		if (date == null) {
 			return "Wrong date!";
 		}
-		return timeFormat24H.format(date);
+		return timeFormat24H.get().format(date);
 	}
 
 	public static String getMonthYear(long time) {
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Build;
+
+/**
+ * Fills stacked area layers laid out by {@link com.dimowner.charttemplate.core.ChartLayout#layoutAreaStrip}
+ * with a single draw call per layer.
+ * Triangle strip is drawn as vertices where it is supported, hardware canvas supports vertices since API 29.
+ * Otherwise outline of the strip is drawn as one path, path object is reused between frames.
+ */
+class AreaRenderer {
+
+	private static final int VERTICES_HW_SDK = 29;
+
+	private final Path path = new Path();
+
+	/**
+	 * @param strip Pairs of bottom and top vertices, see
+	 * {@link com.dimowner.charttemplate.core.ChartLayout#layoutAreaStrip}.
+	 * @param count Count of filled floats of strip.
+	 */
+	void draw(Canvas canvas, float[] strip, int count, Paint paint) {
+		if (count < 8) {
+			return;
+		}
+		Paint.Style style = paint.getStyle();
+		paint.setStyle(Paint.Style.FILL);
+		if (!canvas.isHardwareAccelerated() || Build.VERSION.SDK_INT >= VERTICES_HW_SDK) {
+			canvas.drawVertices(Canvas.VertexMode.TRIANGLE_STRIP, count, strip, 0,
+					null, 0, null, 0, null, 0, 0, paint);
+		} else {
+			path.rewind();
+			path.moveTo(strip[0], strip[1]);
+			for (int k = 0; k < count; k += 4) {
+				path.lineTo(strip[k + 2], strip[k + 3]);
+			}
+			for (int k = count - 4; k >= 0; k -= 4) {
+				path.lineTo(strip[k], strip[k + 1]);
+			}
+			path.close();
+			canvas.drawPath(path, paint);
+		}
+		paint.setStyle(style);
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import com.dimowner.charttemplate.core.ChartLayout;
+import com.dimowner.charttemplate.core.LineScales;
+import com.dimowner.charttemplate.core.LttbCache;
+import com.dimowner.charttemplate.core.MinMaxPyramid;
+import com.dimowner.charttemplate.core.StackSums;
+import com.dimowner.charttemplate.core.Viewport;
+import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.model.ChartDerivedData;
+import com.dimowner.charttemplate.util.AndroidUtils;
+
+import java.util.Arrays;
+
+/**
+ * Draws charts of the overview strip shown in {@link ChartScrollView}.
+ * Holds own buffers and paints so that separate instance can draw into a bitmap on a background thread.
+ */
+class ChartScrollDrawer {
+
+	private final float DENSITY;
+	private final float PADD_NORMAL;
+
+	{
+		DENSITY = AndroidUtils.dpToPx(1);
+		PADD_NORMAL = 16*DENSITY;
+	}
+
+	private ChartData data;
+	private boolean[] linesVisibility;
+	private boolean[] linesCalculated;
+	private float chartArray[];
+	private final AreaRenderer areaRenderer = new AreaRenderer();
+	private float STEP = 10;
+
+	private Paint[] linePaints;
+
+	private float WIDTH = 1;
+	private float H1 = 1;
+	private float valueScaleY = 0;
+
+	private boolean isAnimating = false;
+	private float scaleKoef = 1;
+	private int amnimItemIndex = -1;
+	/** Own totals and prefix sums when drawer is used without derived values or a line is animated. */
+	private float[] sumVals;
+	private final StackSums stackSums = new StackSums();
+	private final Viewport viewport = new Viewport();
+	private final ChartLayout layout = new ChartLayout();
+	private int drawnPoints = 0;
+	/** Min/max pyramids of lines drawn as lines, null for bars and areas. */
+	private MinMaxPyramid[] linePyramids;
+	private LttbCache lttbCache;
+	private ChartDerivedData derived;
+	private LineScales lineScales;
+	/** Downsample line charts with LTTB instead of min/max pyramid. */
+	private boolean lttbEnabled = false;
+
+	/**
+	 * Set data with lines state arrays. Arrays are not copied, drawer reads their actual values.
+	 * @param derived Values derived from data shared with other views and updated by the owner view,
+	 * null to calculate own values, for example when drawing on a background thread.
+	 */
+	public void setData(ChartData d, ChartDerivedData derived, boolean[] linesVisibility, boolean[] linesCalculated) {
+		this.data = d;
+		this.derived = derived;
+		if (derived != null) {
+			lineScales = derived.getLineScales();
+		} else if (d != null) {
+			lineScales = new LineScales(d.getLinesCount());
+		}
+		this.linesVisibility = linesVisibility;
+		this.linesCalculated = linesCalculated;
+		stackSums.invalidate();
+		isAnimating = false;
+		amnimItemIndex = -1;
+		scaleKoef = 1;
+		if (data != null) {
+			linePaints = new Paint[data.getLinesCount()];
+			for (int i = 0; i < data.getLinesCount(); i++) {
+				linePaints[i] = createLinePaint(data.getColorsInts()[i]);
+				linePaints[i].setAlpha(linesVisibility[i] ? 255 : 0);
+			}
+			updateLinePyramids();
+			calculateSumsLine();
+			if (WIDTH > 1 && data.getLength() > 0) {
+				STEP = (WIDTH / data.getLength());
+			}
+			if (derived == null) {
+				chartArray = new float[data.getLength() * 4];
+			}
+		}
+	}
+
+	/**
+	 * Points were removed from the beginning and appended to the end of the same data.
+	 * Only appended points are calculated when nothing is removed, nothing is allocated while data has free space.
+	 * @param removed Count of points removed from the beginning.
+	 * @param from Index of the first appended point.
+	 */
+	public void onDataAppended(int removed, int from) {
+		if (derived == null) {
+			if (removed == 0) {
+				lttbCache.append(data.getColumns(), data.getStart(), data.getLength());
+			} else {
+				lttbCache.update(data.getColumns(), data.getStart(), data.getLength());
+			}
+			for (int i = 0; i < data.getLinesCount(); i++) {
+				if (linePyramids[i] != null) {
+					linePyramids[i].removeFirst(data.getValues(i), data.getStart(), removed);
+					linePyramids[i].append(data.getValues(i), data.getStart(), data.getLength());
+				}
+			}
+		}
+		if (derived != null) {
+			//Shared sums are updated with derived values, own totals are calculated only while a line is animated.
+			calculateSumsLine();
+		} else {
+			if (removed > 0) {
+				System.arraycopy(sumVals, removed, sumVals, 0, from);
+				stackSums.invalidate();
+			}
+			calculateSumsLine(from);
+		}
+		if (WIDTH > 1 && data.getLength() > 0) {
+			STEP = (WIDTH / data.getLength());
+		}
+		//Arrays have the same free space as data, so they are not reallocated on each append.
+		if (derived == null && chartArray.length < data.getLength() * 4) {
+			chartArray = new float[data.getTime().length * 4];
+		}
+	}
+
+	/**
+	 * Replace data by a newer snapshot of the same data, see {@link ChartData#getRemovedSince(ChartData)}.
+	 * Only appended points are calculated, used without derived values.
+	 * @param removed Count of points removed from the beginning of the current data.
+	 */
+	public void setNewerData(ChartData d, int removed) {
+		int from = data.getLength() - removed;
+		data = d;
+		onDataAppended(removed, from);
+	}
+
+	/**
+	 * Replace lines state arrays of the same data, all visible lines are drawn opaque.
+	 */
+	public void setLinesState(boolean[] linesVisibility, boolean[] linesCalculated) {
+		if (Arrays.equals(this.linesVisibility, linesVisibility) && Arrays.equals(this.linesCalculated, linesCalculated)) {
+			//Sums of the same state are kept.
+			this.linesVisibility = linesVisibility;
+			this.linesCalculated = linesCalculated;
+			return;
+		}
+		this.linesVisibility = linesVisibility;
+		this.linesCalculated = linesCalculated;
+		stackSums.invalidate();
+		for (int i = 0; i < linePaints.length; i++) {
+			linePaints[i].setAlpha(linesVisibility[i] ? 255 : 0);
+		}
+		if (data.isPercentage()) {
+			calculateSumsLine();
+		}
+	}
+
+	public ChartData getData() {
+		return data;
+	}
+
+	public void setSize(float width, float height) {
+		WIDTH = width;
+		H1 = height-1.5f*DENSITY;
+		if (data != null && data.getLength() > 0) {
+			STEP = (WIDTH/data.getLength());
+		}
+	}
+
+	/**
+	 * Scales of lines values when drawer is used without derived values.
+	 * Pass a copy when the drawer is used on another thread, scales are changed when data is changed.
+	 */
+	public void setLineScales(LineScales lineScales) {
+		this.lineScales = lineScales;
+	}
+
+	public void setValueScale(float valueScaleY) {
+		this.valueScaleY = valueScaleY;
+	}
+
+	/**
+	 * Set state of line show/hide animation.
+	 * @param index Animated line index or -1.
+	 * @param koef Animated line values multiplier.
+	 */
+	public void setAnimation(boolean animating, int index, float koef) {
+		isAnimating = animating;
+		amnimItemIndex = index;
+		scaleKoef = koef;
+	}
+
+	public void setLineAlpha(int index, int alpha) {
+		linePaints[index].setAlpha(alpha);
+	}
+
+	public int getLineAlpha(int index) {
+		return linePaints[index].getAlpha();
+	}
+
+	/**
+	 * Count of points laid out by the last draw.
+	 */
+	public int getDrawnPoints() {
+		return drawnPoints;
+	}
+
+	public void setLttbEnabled(boolean enabled) {
+		this.lttbEnabled = enabled;
+	}
+
+	public boolean isLttbEnabled() {
+		return lttbEnabled;
+	}
+
+	public void draw(Canvas canvas) {
+		drawnPoints = 0;
+		if (data != null) {
+			if (derived != null) {
+				chartArray = derived.getLayoutBuffer();
+			}
+			viewport.setScroll(0, 0, STEP);
+			viewport.setSize(WIDTH, PADD_NORMAL);
+			viewport.setValues(H1, valueScaleY, 0);
+			for (int i = 0; i < data.getNames().length; i++) {
+				if (linesVisibility[i]) {
+					if (data.getType(i) == ChartData.TYPE_LINE) {
+						drawChart(canvas, data.getValues(i), i);
+					} else if (data.getType(i) == ChartData.TYPE_BAR) {
+						drawBars(canvas, data.getValues(i), i);
+					} else if (data.getType(i) == ChartData.TYPE_AREA) {
+						drawAreaPercentage(canvas, data.getValues(i), i);
+					} else {
+						drawChart(canvas, data.getValues(i), i);
+					}
+				}
+			}
+		}
+	}
+
+	private Paint createLinePaint(int color) {
+		Paint lp = new Paint(1);
+		lp.setStyle(Paint.Style.STROKE);
+		lp.setStrokeWidth(1.0f*DENSITY);
+		lp.setColor(color);
+		return lp;
+	}
+
+	private void drawChart(Canvas canvas, int[] values, int index) {
+		viewport.setLineTransform(lineScales.getScale(index), lineScales.getOffset(index));
+		MinMaxPyramid pyramid = linePyramids[index];
+		int k;
+		if (lttbEnabled && pyramid.chooseLevel(STEP) > 0) {
+			k = layout.layoutLineLttb(values, data.getStart(), lttbCache.getIndexes(index, lttbCache.chooseZoom(STEP)),
+					viewport, chartArray);
+		} else {
+			k = layout.layoutLineLod(pyramid, viewport, chartArray);
+		}
+		canvas.drawLines(chartArray, 0, k, linePaints[index]);
+		drawnPoints += k/4;
+	}
+
+	private void drawBars(Canvas canvas, int[] values, int index) {
+		int k;
+		//TODO: Draw every second bar.
+		linePaints[index].setStrokeWidth(3*STEP+1);
+		if (data.isStacked()) {
+			viewport.setPercentScale((H1-1.5f*DENSITY)/100);
+			k = layout.layoutStackedBars(values, data.getStart(), data.getLength(), index, 3, updateStackSums(),
+					data.isPercentage() ? getTotals() : null, viewport, chartArray);
+		} else {
+			k = layout.layoutBars(values, data.getStart(), data.getLength(), 3, viewport, chartArray);
+		}
+		canvas.drawLines(chartArray, 0, k, linePaints[index]);
+		drawnPoints += k/4;
+	}
+
+	private void drawAreaPercentage(Canvas canvas, int[] values, int index) {
+		int scale = 6;
+		viewport.setPercentScale(H1/100);
+		int k = layout.layoutAreaStrip(values, data.getStart(), data.getLength(), index, scale, updateStackSums(), getTotals(),
+				viewport, chartArray);
+		areaRenderer.draw(canvas, chartArray, k, linePaints[index]);
+		drawnPoints += k/4;
+	}
+
+	private void updateLinePyramids() {
+		if (derived != null) {
+			linePyramids = derived.getLinePyramids();
+			lttbCache = derived.getLttbCache();
+			return;
+		}
+		lttbCache = new LttbCache(data.getColumns(), data.getStart(), data.getLength());
+		linePyramids = new MinMaxPyramid[data.getLinesCount()];
+		for (int i = 0; i < data.getLinesCount(); i++) {
+			if (ChartDerivedData.isDrawnAsLine(data.getType(i))) {
+				linePyramids[i] = new MinMaxPyramid(data.getValues(i), data.getStart(), data.getLength());
+			}
+		}
+	}
+
+	/**
+	 * Prefix sums of stacked lines, shared by views with the same lines state when derived values are used.
+	 */
+	private StackSums updateStackSums() {
+		int animIndex = isAnimating ? amnimItemIndex : -1;
+		if (derived != null) {
+			return derived.getStackedSums(linesCalculated).getStackSums(animIndex, scaleKoef);
+		}
+		stackSums.update(data, linesCalculated, animIndex, scaleKoef);
+		return stackSums;
+	}
+
+	/**
+	 * Totals of percentage chart, shared by views with the same lines state when derived values are used
+	 * and no line is animated.
+	 */
+	private float[] getTotals() {
+		if (derived != null && !isAnimating) {
+			return derived.getStackedSums(linesVisibility).getTotals();
+		}
+		if (sumVals == null) {
+			calculateSumsLine();
+		}
+		return sumVals;
+	}
+
+	public void calculateSumsLine() {
+		calculateSumsLine(0);
+	}
+
+	/**
+	 * Calculate own sums of points starting from index from, not needed when shared totals are used.
+	 */
+	private void calculateSumsLine(int from) {
+		if (derived != null && !isAnimating) {
+			return;
+		}
+		sumVals = ChartLayout.calculateTotals(data, linesVisibility, isAnimating ? amnimItemIndex : -1, scaleKoef,
+				sumVals, from);
+	}
+}
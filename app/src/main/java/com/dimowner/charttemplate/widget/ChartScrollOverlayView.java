@@ -84,8 +84,15 @@ public class ChartScrollOverlayView extends View {
 	private int colorWhite;
 	private int selectionColor;
 
+	/** Keep selection at the end of data when points are appended and selection is at the end. */
+	private boolean followTail = false;
+
 	private OnScrollListener onScrollListener;
 
+	private final FrameStats frameStats = FrameStats.get("ChartScrollOverlayView");
+	/** Time of the first selection move since the previous frame. */
+	private long updateTime = 0;
+
 	public ChartScrollOverlayView(Context context) {
 		super(context);
 		init(context);
@@ -225,6 +232,9 @@ public class ChartScrollOverlayView extends View {
 
 	private void onScroll(float scroll, float width) {
 		if (onScrollListener != null && (scroll != prevScroll || width != prevWidth)) {
+			if (updateTime == 0) {
+				updateTime = FrameStats.now();
+			}
 //			Timber.v("onScroll Scroll = "+ scroll + " width = " + width + " x = " + scroll/STEP + " w = " + width/STEP);
 			onScrollListener.onScroll(scroll/STEP, width/STEP);
 			getParent().getParent().requestDisallowInterceptTouchEvent(true);
@@ -271,6 +281,7 @@ public class ChartScrollOverlayView extends View {
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
+		long frameStart = FrameStats.now();
 //		if (path.isEmpty()) {
 //			path.addRoundRect(0, 0, WIDTH, HEIGHT, SELECTION_HALF, SELECTION_HALF, Path.Direction.CCW);
 //		}
@@ -331,6 +342,8 @@ public class ChartScrollOverlayView extends View {
 		rect.bottom = HEIGHT/2+LINE_HEIGHT;
 		rect.right = scrollX - SELECTION_HALF + LINE_WIDTH;
 		canvas.drawRoundRect(rect, LINE_WIDTH, LINE_WIDTH, selectionPaint);
+		frameStats.onFrame(frameStart, updateTime, FrameStats.NO_POINTS, false);
+		updateTime = 0;
 	}
 
 	public void setData(int length) {
@@ -348,6 +361,48 @@ public class ChartScrollOverlayView extends View {
 		}
 	}
 
+	/**
+	 * Data length changed, selection keeps the same indexes.
+	 * @param prepended Count of values added to the beginning.
+	 * @param removed Count of values removed from the beginning before values were added.
+	 */
+	public void onDataChanged(int length, int prepended, int removed) {
+		if (length <= 0 || dataLength <= 0 || WIDTH <= 1) {
+			setData(length);
+			return;
+		}
+		float start = (scrollX-SELECTION)/STEP;
+		float size = (selectionWidth+2*SELECTION)/STEP;
+		boolean atEnd = start + size >= dataLength - 0.5f;
+		start += prepended - removed;
+		if (followTail && prepended == 0 && atEnd) {
+			start = length - size;
+		}
+		if (start < 0) {
+			start = 0;
+		}
+		dataLength = length;
+		STEP = (WIDTH / dataLength);
+		selectionWidth = size*STEP - 2*SELECTION;
+		if (selectionWidth < SMALLEST_SELECTION_WIDTH) {
+			selectionWidth = SMALLEST_SELECTION_WIDTH;
+		}
+		scrollX = start*STEP + SELECTION;
+		//Set scroll edges.
+		if (scrollX + selectionWidth > WIDTH-SELECTION) {
+			scrollX = WIDTH - selectionWidth-SELECTION;
+		}
+		if (scrollX < SELECTION) {
+			scrollX = SELECTION;
+		}
+		onScroll(scrollX-SELECTION, selectionWidth+2*SELECTION);
+		invalidate();
+	}
+
+	public void setFollowTail(boolean followTail) {
+		this.followTail = followTail;
+	}
+
 	public void setOnScrollListener(OnScrollListener onScrollListener) {
 		this.onScrollListener = onScrollListener;
 	}
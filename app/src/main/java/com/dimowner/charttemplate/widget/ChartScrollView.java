@@ -16,12 +16,20 @@
 
 package com.dimowner.charttemplate.widget;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.ValueAnimator;
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.Paint;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.View;
@@ -29,16 +37,24 @@ import android.view.animation.AccelerateInterpolator;
 import android.view.animation.DecelerateInterpolator;
 
 import com.dimowner.charttemplate.R;
+import com.dimowner.charttemplate.core.LineScales;
+import com.dimowner.charttemplate.core.RangeIndex;
 import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.model.ChartDerivedData;
 import com.dimowner.charttemplate.util.AndroidUtils;
 
 public class ChartScrollView extends View {
 
 	private static final int ANIMATION_DURATION = 100; //mills
+	/** Min interval between renders of changed data, live data may be appended more often. */
+	private static final long DATA_RENDER_INTERVAL = 100; //mills
+
+	/** Thread shared by all views to render cached bitmaps. */
+	private static Handler renderHandler;
+	private static Handler mainHandler;
 
 	private final float DENSITY;
 	private final float PADD_TINY;
-	private final float PADD_NORMAL;
 	private final float SELECTION_HALF;
 	private final float BORDER;
 
@@ -46,33 +62,66 @@ public class ChartScrollView extends View {
 		DENSITY = AndroidUtils.dpToPx(1);
 		PADD_TINY = 3*DENSITY;
 		BORDER = 4*DENSITY;
-		PADD_NORMAL = 16*DENSITY;
 		SELECTION_HALF = 8*DENSITY;
 	}
 
 	private ChartData data;
+	/** Data length which max value is calculated for. */
+	private int dataLength;
 	private boolean[] linesVisibility;
 	private boolean[] linesCalculated;
-	private float chartArray[];
-	private float chartArray2[];
-	private float STEP = 10;
-
-	private Paint[] linePaints;
+	/** Values derived from data shared with other views, taken while data is set and view is attached. */
+	private ChartDerivedData derived;
+	/** Max values of lines shared with other views, queried with own lines state. */
+	private RangeIndex rangeIndex;
+	private LineScales lineScales;
+
+	private ChartScrollDrawer drawer = new ChartScrollDrawer();
+	private final FrameStats frameStats = FrameStats.get("ChartScrollView");
+	/** Time of the first data or lines change since the previous frame. */
+	private long updateTime = 0;
 	private Paint borderPaint;
 
 	private float WIDTH = 1;
 	private float HEIGHT = 1;
-	private float H1 = 1;
 	private int maxValueY = 0;
 	private float valueScaleY = 0;
 
 	private boolean isAnimating = false;
 	private float scaleKoef = 1;
 	private int amnimItemIndex = -1;
-	private float[] sumVals;
+
+	/** Render charts on background thread into bitmap and draw only the bitmap on UI thread. */
+	private boolean bitmapCacheEnabled = false;
+	/** Drawer used only on render thread. */
+	private ChartScrollDrawer renderDrawer;
+	/** Snapshot of data read by render thread, appends change data while it draws. */
+	private ChartData renderData;
+	private ChartData renderDataSource;
+	private int renderDataModCount;
+	private long renderRequestTime = 0;
+	private boolean dataRenderScheduled = false;
+	private final Runnable dataRenderTask = new Runnable() {
+		@Override
+		public void run() {
+			dataRenderScheduled = false;
+			requestRender(false);
+		}
+	};
+	/** Incremented on each render request, results of older requests are dropped. */
+	private volatile int renderGeneration = 0;
+	private final Object bitmapLock = new Object();
+	/** Bitmap which is ready to be reused by render thread. Guarded by bitmapLock. */
+	private Bitmap spareBitmap;
+	private Bitmap frontBitmap;
+	/** Previous bitmap which fades out while front bitmap fades in. */
+	private Bitmap fadingBitmap;
+	private float fadeValue = 1;
+	private Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
 
 	private ValueAnimator animator;
 	private ValueAnimator alphaAnimator;
+	private ValueAnimator fadeAnimator;
 	private DecelerateInterpolator decelerateInterpolator = new DecelerateInterpolator();
 	private AccelerateInterpolator accelerateInterpolator= new AccelerateInterpolator();
 
@@ -100,19 +149,27 @@ public class ChartScrollView extends View {
 		public void onAnimationUpdate(ValueAnimator animation) {
 			float val = (float) animation.getAnimatedValue();
 			scaleKoef = Math.abs(val/255);
-			linePaints[index].setAlpha((int)val);
+			drawer.setLineAlpha(index, (int)val);
 			if (val == end2) {
 				linesVisibility[index] = show;
 				isAnimating = false;
 				amnimItemIndex = -1;
 			}
+			drawer.setAnimation(isAnimating, amnimItemIndex, scaleKoef);
 			if (data.isPercentage()) {
-				calculateSumsLine();
+				drawer.calculateSumsLine();
 			}
 			invalidate();
 		}
 	};
 
+	ValueAnimator.AnimatorUpdateListener fadeValueAnimator = new ValueAnimator.AnimatorUpdateListener() {
+		@Override
+		public void onAnimationUpdate(ValueAnimator animation) {
+			fadeValue = (float) animation.getAnimatedValue();
+			invalidate();
+		}
+	};
 
 	public ChartScrollView(Context context) {
 		super(context);
@@ -146,349 +203,256 @@ public class ChartScrollView extends View {
 		borderPaint.setAntiAlias(true);
 	}
 
-	private Paint createLinePaint(int color) {
-		Paint lp = new Paint(1);
-//		lp.setAntiAlias(true);
-//		lp.setDither(false);
-		lp.setStyle(Paint.Style.STROKE);
-		lp.setStrokeWidth(1.0f*DENSITY);
-//		lp.setStrokeJoin(Paint.Join.ROUND);
-//		lp.setStrokeCap(Paint.Cap.ROUND);
-		lp.setColor(color);
-		return lp;
-	}
-
 	@Override
 	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
 		super.onLayout(changed, left, top, right, bottom);
+		boolean resized = WIDTH != getWidth() || HEIGHT != getHeight();
 		WIDTH = getWidth();
 		HEIGHT = getHeight();
-//		H1 = HEIGHT-PADD_TINY;
-		H1 = HEIGHT-1.5f*DENSITY;
 		valueScaleY = (HEIGHT-2*PADD_TINY)/maxValueY;
-
-		if (data != null) {
-			STEP = (WIDTH/data.getLength());
+		drawer.setSize(WIDTH, HEIGHT);
+		if (resized) {
+			requestRender(false);
 		}
 	}
 
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
-//		Timber.v("onDraw sel = " + maxValueY);
-//		if (path.isEmpty()) {
-//			path.addRoundRect(0, 1.5f*DENSITY, WIDTH, HEIGHT-1.5f*DENSITY, SELECTION_HALF, SELECTION_HALF, Path.Direction.CW);
-//		}
-//		canvas.clipPath(path);
+		long frameStart = FrameStats.now();
+		int points = FrameStats.NO_POINTS;
 		if (data != null) {
-			for (int i = 0; i < data.getNames().length; i++) {
-				if (linesVisibility[i]) {
-					if (data.getType(i) == ChartData.TYPE_LINE) {
-						drawChart(canvas, data.getValues(i), i);
-					} else if (data.getType(i) == ChartData.TYPE_BAR) {
-						drawBars(canvas, data.getValues(i), i);
-					} else if (data.getType(i) == ChartData.TYPE_AREA) {
-//						drawBars(canvas, data.getValues(i), i);
-						drawAreaPercentage(canvas, data.getValues(i), i);
-					} else {
-						drawChart(canvas, data.getValues(i), i);
-					}
+			if (bitmapCacheEnabled && frontBitmap != null) {
+				if (fadingBitmap != null) {
+					bitmapPaint.setAlpha((int)(255*(1-fadeValue)));
+					canvas.drawBitmap(fadingBitmap, 0, 0, bitmapPaint);
 				}
+				bitmapPaint.setAlpha(fadingBitmap != null ? (int)(255*fadeValue) : 255);
+				canvas.drawBitmap(frontBitmap, 0, 0, bitmapPaint);
+			} else {
+				drawer.setValueScale(valueScaleY);
+				drawer.draw(canvas);
+				points = drawer.getDrawnPoints();
 			}
 			//Draw round borders.
 			canvas.drawRoundRect(-DENSITY, -0.5f*DENSITY, WIDTH, HEIGHT+DENSITY, SELECTION_HALF, SELECTION_HALF, borderPaint);
-//			canvas.drawRoundRect(rectF, SELECTION_HALF, SELECTION_HALF, borderPaint);
-		}
-	}
-
-	private void drawChart(Canvas canvas, int[] values, int index) {
-//		path.rewind();
-		float x = 0;
-		int k = 0;
-//		chartArray = new float[4* (int)Math.ceil((WIDTH/STEP))];
-//		Log.v("LOG", "drawChart size = " + chartArray.length + " WIDTH = " + WIDTH + " STEP = " + STEP);
-		for (int i = 0; i < values.length; i+=2) {
-//			if (x == 0) {
-//				path.moveTo(x, HEIGHT - values[i] * valueScale);
-//			} else {
-//				path.lineTo(x, HEIGHT - values[i] * valueScale);
-//			}
-			chartArray[k] = x; //x
-			chartArray[k+1] = H1 - values[i] * valueScaleY; //y
-			chartArray[k + 2] = x + 2*STEP; //x
-			if (i+2 < values.length) {
-				chartArray[k + 3] = H1 - values[i + 2] * valueScaleY; //y
-			} else {
-				chartArray[k + 3] = H1 - values[i] * valueScaleY; //y
-			}
-//			if (x - STEP > WIDTH) {
-//				break;
-//			}
-			x += 2*STEP;
-			k +=4;
-		}
-//		canvas.drawPath(path, linePaints[index]);
-		canvas.drawLines(chartArray, linePaints[index]);
-	}
-
-
-	private void drawBars(Canvas canvas, int[] values, int index) {
-		float pos = 0;
-//		int skip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-//		if (skip < 0) {skip = 0;}
-//		pos +=skip*STEP;
-		float H3 = (H1-1.5f*DENSITY)/100;
-		int k = 0;
-		//TODO: Draw every second bar.
-		linePaints[index].setStrokeWidth(3*STEP+1);
-		if (data.isStacked()) {
-			int j;
-			int sum=0;
-			for (int i = 0; i < values.length; i+=3) {
-				if (k < chartArray.length) {
-					for (j = 0; j <= index; j++) {
-						if (linesCalculated[j] && j != amnimItemIndex) { //
-							sum += data.getVal(j, i);
-						}
-					}
-					if (isAnimating && amnimItemIndex <= index) {
-						sum += scaleKoef*data.getVal(amnimItemIndex, i);
-					}
-					if (data.isPercentage()) {
-						chartArray[k] = pos; //x1
-						if (index == amnimItemIndex) {
-							chartArray[k + 1] = H1 - H3*(sum - values[i] * scaleKoef)/(sumVals[i]);
-						} else {
-							chartArray[k + 1] = H1 - H3*(sum - values[i])/(sumVals[i]);
-						}
-						chartArray[k + 2] = pos; //x2
-						chartArray[k + 3] = H1 - H3*sum/(sumVals[i]); //y2
-					} else {
-						chartArray[k] = pos; //x1
-						//					chartArray[k + 1] = H1 - data.getValues(index-1)[i] * valueScale; //y1
-						if (index == amnimItemIndex) {
-							chartArray[k + 1] = H1 - (sum - values[i] * scaleKoef) * valueScaleY; //y1
-						} else {
-							chartArray[k + 1] = H1 - (sum - values[i]) * valueScaleY; //y1
-						}
-						chartArray[k + 2] = pos; //x2
-						//					chartArray[k + 3] = H1 - values[i] * valueScale; //y2
-						chartArray[k + 3] = H1 - sum * valueScaleY; //y2
-					}
-					k += 4;
-					if (pos - STEP > WIDTH + PADD_NORMAL) {
-						break;
-					}
-					sum = 0;
-				}
-				pos += 3*STEP;
-			}
-		} else {
-			for (int i = 0; i < values.length; i+=3) {
-				if (k < chartArray.length) {
-					chartArray[k] = pos; //x1
-					chartArray[k + 1] = H1; //y1
-					chartArray[k + 2] = pos; //x2
-					chartArray[k + 3] = H1 - values[i] * valueScaleY; //y2
-					k += 4;
-					if (pos - STEP > WIDTH + PADD_NORMAL) {
-						break;
-					}
-				}
-				pos += 3*STEP;
-			}
 		}
-		canvas.drawLines(chartArray, linePaints[index]);
-	}
-
-	private void drawAreaPercentage(Canvas canvas, int[] values, int index) {
-		int scale = 6;
-		float pos = 0;
-//		int skip = 0;
-//		if (skip < 0) {skip = 0;}
-//		skip -= skip%scale;
-		pos +=0;
-		int k = 0;
-		int j;
-		int sum=0;
-		int sum2=0;
-		float H3 = H1/100;
-		for (int i = 0; i < values.length; i+=scale) {
-			if (k < chartArray.length) {
-				for (j = 0; j <= index; j++) {
-					if (linesCalculated[j] && j != amnimItemIndex) { //
-						sum += data.getVal(j, i);
-						if (i+scale < values.length) {
-							sum2 += data.getVal(j, i + scale);
-						}
-					}
-				}
-				if (isAnimating && amnimItemIndex <= index) {
-					sum += scaleKoef*data.getVal(amnimItemIndex, i);
-					if (i+scale < values.length) {
-						sum2 += scaleKoef * data.getVal(amnimItemIndex, i+scale);
-					}
-				}
-				chartArray[k] = pos; //x1
-				if (index == amnimItemIndex) {
-					chartArray[k + 1] = H1 - H3*(sum - values[i] * scaleKoef)/(sumVals[i]);
-				} else {
-					chartArray[k + 1] = H1 - H3*(sum - values[i])/(sumVals[i]);
-				}
-				chartArray[k + 2] = pos; //x2
-				chartArray[k + 3] = H1 - H3*sum/(sumVals[i]); //y2
+		frameStats.onFrame(frameStart, updateTime, points, isAnimationRunning());
+		updateTime = 0;
+	}
 
-				///Draw lines
-				chartArray2[k] = pos-1; //x1
-				if (index == amnimItemIndex) {
-					chartArray2[k + 1] = H1 - H3*(sum - values[i] * scaleKoef)/(sumVals[i]);
-				} else {
-					chartArray2[k + 1] = H1 - H3*(sum - values[i])/(sumVals[i]);
-				}
-				if (i + scale < values.length) {
-					chartArray2[k + 2] = pos + STEP*scale; //x2
-					if (index == amnimItemIndex) {
-						chartArray2[k + 3] = H1 - H3 * (sum2 - values[i+scale]* scaleKoef) / (sumVals[i + scale]);
-					} else {
-						chartArray2[k + 3] = H1 - H3 * (sum2 - values[i+scale]) / (sumVals[i + scale]);
-					}
-				} else {
-					chartArray2[k + 2] = pos+STEP*scale/2; //x2
-					if (index == amnimItemIndex) {
-						chartArray2[k + 3] = H1 - H3 * (sum - values[i]*scaleKoef) / (sumVals[i]); //y2
-					} else {
-						chartArray2[k + 3] = H1 - H3 * (sum - values[i]) / (sumVals[i]); //y2
-					}
-				}
-				k += 4;
-				if (pos - STEP*scale > WIDTH + PADD_NORMAL) {
-					break;
-				}
-				sum = 0;
-				sum2 = 0;
-			}
-			pos += scale*STEP;
+	private boolean isAnimationRunning() {
+		return isAnimating || (animator != null && animator.isRunning())
+				|| (fadeAnimator != null && fadeAnimator.isRunning());
+	}
+
+	/**
+	 * Remember time of data or lines change for latency stats.
+	 */
+	private void markUpdate() {
+		if (updateTime == 0) {
+			updateTime = FrameStats.now();
 		}
+	}
 
-		linePaints[index].setStrokeWidth(scale*STEP+1);
-		linePaints[index].setTextAlign(Paint.Align.RIGHT);
-		linePaints[index].setStrokeCap(Paint.Cap.BUTT);
-		canvas.drawLines(chartArray, 0, k, linePaints[index]);
-		if (data.isPercentage() && index > 0 && !isBottomLine(index)) {
-			linePaints[index].setStrokeWidth(STEP*scale);
-			linePaints[index].setStrokeCap(Paint.Cap.BUTT);
-			canvas.drawLines(chartArray2, 0, k, linePaints[index]);
-			linePaints[index].setStrokeCap(Paint.Cap.ROUND);
-			canvas.drawPoints(chartArray2, 0, k-1, linePaints[index]);
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		if (bitmapCacheEnabled) {
+			releaseBitmaps();
 		}
+		releaseDerived();
 	}
 
-	private boolean isBottomLine(int index) {
-		for (int i = 0; i < index; i++) {
-			if (linesVisibility[i]) {
-				return false;
-			}
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (data != null && derived == null) {
+			//Data could be changed while view was detached, everything is calculated again.
+			dataLength = data.getLength();
+			acquireDerived();
+			calculateMaxValue(false, false);
+		}
+		if (bitmapCacheEnabled && frontBitmap == null) {
+			requestRender(false);
 		}
-		return true;
 	}
 
 	public void hideLine(String name) {
-		isAnimating = true;
+		markUpdate();
 		final int pos = findLinePosition(name);
+		if (bitmapCacheEnabled) {
+			if (pos >= 0) {
+				linesVisibility[pos] = false;
+				linesCalculated[pos] = false;
+				drawer.setLineAlpha(pos, 0);
+			}
+			calculateMaxValue(false, false);
+			requestRender(true);
+			return;
+		}
+		isAnimating = true;
 		if (pos >= 0) {
 			amnimItemIndex = pos;
 			linesCalculated[pos] = false;
-			alphaAnimator(linePaints[pos].getAlpha(), 0, pos, false);
+			drawer.setAnimation(isAnimating, amnimItemIndex, scaleKoef);
+			alphaAnimator(drawer.getLineAlpha(pos), 0, pos, false);
 		}
 		calculateMaxValue(false, true);
 		invalidate();
 	}
 
 	public void showLine(String name) {
-		isAnimating = true;
+		markUpdate();
 		final int pos = findLinePosition(name);
+		if (bitmapCacheEnabled) {
+			if (pos >= 0) {
+				linesVisibility[pos] = true;
+				linesCalculated[pos] = true;
+				drawer.setLineAlpha(pos, 255);
+			}
+			calculateMaxValue(false, false);
+			requestRender(true);
+			return;
+		}
+		isAnimating = true;
 		if (pos >= 0) {
 			amnimItemIndex = pos;
 			linesVisibility[pos] = true;
 			linesCalculated[pos] = true;
-			alphaAnimator(linePaints[pos].getAlpha(), 255f, pos, true);
+			drawer.setAnimation(isAnimating, amnimItemIndex, scaleKoef);
+			alphaAnimator(drawer.getLineAlpha(pos), 255f, pos, true);
 		}
 		calculateMaxValue(false, true);
 		invalidate();
 	}
 
 	public void setData(ChartData d) {
+		markUpdate();
+		releaseDerived();
 		this.data = d;
 		if (data != null) {
+			dataLength = data.getLength();
 			//Init lines visibility state, all visible by default.
 			linesVisibility = new boolean[data.getLinesCount()];
 			linesCalculated = new boolean[data.getLinesCount()];
-			linePaints = new Paint[data.getLinesCount()];
 			for (int i = 0; i < linesVisibility.length; i++) {
 				linesVisibility[i] = true;
 				linesCalculated[i] = true;
-				linePaints[i] = createLinePaint(data.getColorsInts()[i]);
 			}
-			calculateSumsLine();
+			isAnimating = false;
+			amnimItemIndex = -1;
+			scaleKoef = 1;
+			acquireDerived();
 			calculateMaxValue(true, false);
-			if (WIDTH > 1 && data.getLength() > 0) {
-				STEP = (WIDTH / data.getLength());
-			}
-			chartArray = new float[data.getLength() * 4];
-			if (data.isPercentage()) {
-				chartArray2 = new float[data.getLength() * 4];
+			requestRender(false);
+		}
+		invalidate();
+	}
+
+	/**
+	 * Take values derived from data which are shared with other views of the same data.
+	 */
+	private void acquireDerived() {
+		derived = data.acquireDerived();
+		rangeIndex = derived.getRangeIndex();
+		lineScales = derived.getLineScales();
+		drawer.setData(data, derived, linesVisibility, linesCalculated);
+	}
+
+	private void releaseDerived() {
+		if (derived != null) {
+			derived.release();
+			derived = null;
+		}
+	}
+
+	/**
+	 * Values were added to the same data, lines state is kept.
+	 * @param prepended Count of values added to the beginning.
+	 * @param removed Count of values removed from the beginning before values were added.
+	 */
+	public void onDataChanged(int prepended, int removed) {
+		markUpdate();
+		if (data != null && derived == null) {
+			//Detached view, derived values are calculated when it is attached.
+			dataLength = data.getLength();
+		} else if (data != null) {
+			//Derived values and sums are shared with other views, they are updated once.
+			derived.onDataChanged(prepended, removed);
+			if (prepended == 0 && removed == 0 && dataLength > 0) {
+				//Only points appended to the end are calculated.
+				drawer.onDataAppended(0, dataLength);
+				appendMaxValue(dataLength);
+			} else if (prepended == 0 && removed < dataLength) {
+				//Sliding window, max value may become smaller.
+				drawer.onDataAppended(removed, dataLength - removed);
+				calculateMaxValue(true, true);
 			} else {
-				chartArray2 = null;
+				isAnimating = false;
+				amnimItemIndex = -1;
+				scaleKoef = 1;
+				drawer.setData(data, derived, linesVisibility, linesCalculated);
+				calculateMaxValue(true, true);
 			}
+			dataLength = data.getLength();
+			requestDataRender();
+			invalidate();
 		}
-		invalidate();
 	}
 
-	private void calculateSumsLine() {
-		sumVals = new float[data.getLength()];
-		int sum = 0;
-		for (int i = 0; i < data.getLength(); i++) {
+	/**
+	 * Render changed data not more often than once per {@link #DATA_RENDER_INTERVAL},
+	 * the last change is rendered when the interval passes.
+	 */
+	private void requestDataRender() {
+		if (!bitmapCacheEnabled || dataRenderScheduled) {
+			return;
+		}
+		long delay = renderRequestTime + DATA_RENDER_INTERVAL - SystemClock.uptimeMillis();
+		if (delay > 0) {
+			dataRenderScheduled = true;
+			postDelayed(dataRenderTask, delay);
+		} else {
+			requestRender(false);
+		}
+	}
+
+	/**
+	 * Grow max value if points appended starting from index from exceed it.
+	 */
+	private void appendMaxValue(int from) {
+		int max = animator != null && animator.isRunning() ? (int) end : maxValueY;
+		int prev = max;
+		for (int i = from; i < data.getLength(); i++) {
+			int sum = 0;
 			for (int j = 0; j < data.getLinesCount(); j++) {
-				if (linesVisibility[j]) {
-					if (isAnimating && j == amnimItemIndex) {
-						sum += data.getValues(j)[i]*scaleKoef;
-					} else {
-						sum += data.getValues(j)[i];
+				if (linesCalculated[j]) {
+					if (data.isStacked()) {
+						sum += data.getVal(j, i);
+					} else if (lineScales.apply(j, data.getVal(j, i)) > max) {
+						max = (int) lineScales.apply(j, data.getVal(j, i));
 					}
 				}
 			}
-			sumVals[i] = (float)sum/100;
-			sum = 0;
+			if (sum > max) {
+				max = sum;
+			}
+		}
+		if (max != prev) {
+			heightAnimation(maxValueY, max, true);
 		}
 	}
 
 	private void calculateMaxValue(final boolean invalidate, boolean animate) {
-		int prev = maxValueY;
-		maxValueY = 0;
-		int sum=0;
-		for (int j = 0; j < data.getLinesCount(); j++) {
-			if (linesCalculated[j]) {
-				for (int i = 0; i < data.getLength(); i++) {
-					if (!data.isStacked()) {
-						if (data.getValues(j)[i] > maxValueY) {
-							maxValueY = data.getValues(j)[i];
-						}
-					} else {
-//						if (i >= 0 && i < maxValuesLine.length) {
-							for (j = 0; j < data.getLinesCount(); j++) {
-								if (linesCalculated[j]) {
-									sum += data.getVal(j, i);
-								}
-							}
-							if (sum > maxValueY) {
-								maxValueY = sum;
-							}
-							sum =0;
-//						}
-					}
-				}
-			}
+		if (derived == null) {
+			//Detached view, max value is calculated when it is attached.
+			return;
 		}
+		int prev = maxValueY;
+		float max = data.isStacked() ? derived.getStackedSums(linesCalculated).getSumIndex().getMax(0, data.getLength())
+				: rangeIndex.getMax(0, data.getLength(), linesCalculated, lineScales);
+		maxValueY = (int) Math.max(max, 0);
 		valueScaleY = (HEIGHT-2*PADD_TINY)/maxValueY;
 		if (prev != maxValueY) {
 			if (animate) {
@@ -511,16 +475,6 @@ public class ChartScrollView extends View {
 		animator.setInterpolator(decelerateInterpolator);
 		animator.setDuration(ANIMATION_DURATION);
 		animator.addUpdateListener(heightValueAnimator);
-//		animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-//			@Override
-//			public void onAnimationUpdate(ValueAnimator animation) {
-//				maxValueY = (int) (start+(end-start)*(Float) animation.getAnimatedValue());
-//				valueScale = (HEIGHT-2*PADD_TINY)/ maxValueY;
-//				if (invalidate) {
-//					invalidate();
-//				}
-//			}
-//		});
 		animator.start();
 	}
 
@@ -539,20 +493,233 @@ public class ChartScrollView extends View {
 		}
 		alphaAnimator.setDuration(ANIMATION_DURATION);
 		alphaAnimator.addUpdateListener(alphaValueAnimator);
-//		alphaAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-//			@Override
-//			public void onAnimationUpdate(ValueAnimator animation) {
-//				float val = (float) animation.getAnimatedValue();
-//				linePaints[index].setAlpha((int)val);
-//				if (val == end) {
-//					linesVisibility[index] = show;
-//				}
-//				invalidate();
-//			}
-//		});
 		alphaAnimator.start();
 	}
 
+	public void setLttbEnabled(boolean enabled) {
+		drawer.setLttbEnabled(enabled);
+		requestRender(false);
+		invalidate();
+	}
+
+	/**
+	 * Render overview on background thread into cached bitmap.
+	 * Data, visibility and size changes re-render the bitmap, lines show/hide cross-fades old and new bitmaps.
+	 */
+	public void setBitmapCacheEnabled(boolean enabled) {
+		if (bitmapCacheEnabled != enabled) {
+			bitmapCacheEnabled = enabled;
+			if (enabled) {
+				if (alphaAnimator != null && alphaAnimator.isStarted()) {
+					alphaAnimator.end();
+				}
+				requestRender(false);
+			} else {
+				releaseBitmaps();
+			}
+			invalidate();
+		}
+	}
+
+	private void requestRender(boolean fade) {
+		if (!bitmapCacheEnabled || data == null || derived == null || WIDTH <= 1 || HEIGHT <= 1) {
+			return;
+		}
+		if (renderDrawer == null) {
+			renderDrawer = new ChartScrollDrawer();
+		}
+		renderRequestTime = SystemClock.uptimeMillis();
+		if (dataRenderScheduled) {
+			//Latest data is rendered now.
+			removeCallbacks(dataRenderTask);
+			dataRenderScheduled = false;
+		}
+		if (renderDataSource != data || renderDataModCount != data.getModCount()) {
+			renderData = data.snapshot();
+			renderDataSource = data;
+			renderDataModCount = data.getModCount();
+		}
+		renderGeneration++;
+		getRenderHandler().post(new RenderTask(renderGeneration, renderData, new LineScales(lineScales), linesVisibility.clone(),
+				linesCalculated.clone(), (HEIGHT-2*PADD_TINY)/maxValueY, drawer.isLttbEnabled(),
+				(int)WIDTH, (int)HEIGHT, fade));
+	}
+
+	/**
+	 * Called on UI thread when bitmap is rendered.
+	 */
+	private void onRendered(int generation, Bitmap bitmap, boolean fade) {
+		if (generation != renderGeneration || !bitmapCacheEnabled) {
+			//Outdated result.
+			recycleBitmap(bitmap);
+			return;
+		}
+		if (fadeAnimator != null && fadeAnimator.isStarted()) {
+			fadeAnimator.cancel();
+		}
+		recycleBitmap(fadingBitmap);
+		fadingBitmap = null;
+		if (fade && frontBitmap != null) {
+			fadingBitmap = frontBitmap;
+			frontBitmap = bitmap;
+			fadeAnimation();
+		} else {
+			recycleBitmap(frontBitmap);
+			frontBitmap = bitmap;
+		}
+		invalidate();
+	}
+
+	private void fadeAnimation() {
+		fadeValue = 0;
+		fadeAnimator = ValueAnimator.ofFloat(0.0f, 1.0f);
+		fadeAnimator.setInterpolator(decelerateInterpolator);
+		fadeAnimator.setDuration(ANIMATION_DURATION);
+		fadeAnimator.addUpdateListener(fadeValueAnimator);
+		fadeAnimator.addListener(new AnimatorListenerAdapter() {
+			@Override
+			public void onAnimationEnd(Animator animation) {
+				if (animation == fadeAnimator) {
+					recycleBitmap(fadingBitmap);
+					fadingBitmap = null;
+					fadeValue = 1;
+				}
+			}
+		});
+		fadeAnimator.start();
+	}
+
+	/**
+	 * Keep bitmap for reuse by render thread if there is no spare bitmap yet.
+	 */
+	private void recycleBitmap(Bitmap bitmap) {
+		if (bitmap != null) {
+			synchronized (bitmapLock) {
+				if (spareBitmap == null && bitmap.getWidth() == (int)WIDTH && bitmap.getHeight() == (int)HEIGHT) {
+					spareBitmap = bitmap;
+				} else {
+					bitmap.recycle();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Take spare bitmap or create new one. Called on render thread.
+	 */
+	private Bitmap obtainBitmap(int width, int height) {
+		synchronized (bitmapLock) {
+			Bitmap bitmap = spareBitmap;
+			spareBitmap = null;
+			if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+				bitmap.eraseColor(Color.TRANSPARENT);
+				return bitmap;
+			} else if (bitmap != null) {
+				bitmap.recycle();
+			}
+		}
+		return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+	}
+
+	private void releaseBitmaps() {
+		renderGeneration++;
+		removeCallbacks(dataRenderTask);
+		dataRenderScheduled = false;
+		renderData = null;
+		renderDataSource = null;
+		if (fadeAnimator != null && fadeAnimator.isStarted()) {
+			fadeAnimator.cancel();
+		}
+		fadeValue = 1;
+		synchronized (bitmapLock) {
+			if (spareBitmap != null) {
+				spareBitmap.recycle();
+				spareBitmap = null;
+			}
+		}
+		if (frontBitmap != null) {
+			frontBitmap.recycle();
+			frontBitmap = null;
+		}
+		if (fadingBitmap != null) {
+			fadingBitmap.recycle();
+			fadingBitmap = null;
+		}
+	}
+
+	private static synchronized Handler getRenderHandler() {
+		if (renderHandler == null) {
+			HandlerThread thread = new HandlerThread("ChartScrollRender");
+			thread.start();
+			renderHandler = new Handler(thread.getLooper());
+			mainHandler = new Handler(Looper.getMainLooper());
+		}
+		return renderHandler;
+	}
+
+	/**
+	 * Snapshot of the view state rendered on render thread.
+	 */
+	private class RenderTask implements Runnable {
+
+		private final int generation;
+		private final ChartData data;
+		private final LineScales lineScales;
+		private final boolean[] linesVisibility;
+		private final boolean[] linesCalculated;
+		private final float valueScaleY;
+		private final boolean lttbEnabled;
+		private final int width;
+		private final int height;
+		private final boolean fade;
+
+		RenderTask(int generation, ChartData data, LineScales lineScales, boolean[] linesVisibility,
+					  boolean[] linesCalculated, float valueScaleY, boolean lttbEnabled, int width, int height,
+					  boolean fade) {
+			this.generation = generation;
+			this.data = data;
+			this.lineScales = lineScales;
+			this.linesVisibility = linesVisibility;
+			this.linesCalculated = linesCalculated;
+			this.valueScaleY = valueScaleY;
+			this.lttbEnabled = lttbEnabled;
+			this.width = width;
+			this.height = height;
+			this.fade = fade;
+		}
+
+		@Override
+		public void run() {
+			if (generation != renderGeneration) {
+				//Newer request is already queued.
+				return;
+			}
+			ChartData prev = renderDrawer.getData();
+			int removed = prev != null && prev != data ? data.getRemovedSince(prev) : -1;
+			if (prev == data) {
+				renderDrawer.setLinesState(linesVisibility, linesCalculated);
+			} else if (removed >= 0) {
+				//Points were appended to the same data, pyramids and LTTB are updated only for them.
+				renderDrawer.setNewerData(data, removed);
+				renderDrawer.setLinesState(linesVisibility, linesCalculated);
+			} else {
+				renderDrawer.setData(data, null, linesVisibility, linesCalculated);
+			}
+			renderDrawer.setLineScales(lineScales);
+			renderDrawer.setLttbEnabled(lttbEnabled);
+			renderDrawer.setSize(width, height);
+			renderDrawer.setValueScale(valueScaleY);
+			final Bitmap bitmap = obtainBitmap(width, height);
+			renderDrawer.draw(new Canvas(bitmap));
+			mainHandler.post(new Runnable() {
+				@Override
+				public void run() {
+					onRendered(generation, bitmap, fade);
+				}
+			});
+		}
+	}
+
 	private int findLinePosition(String name) {
 		for (int i = 0; i < data.getLinesCount(); i++) {
 			if (data.getNames()[i].equalsIgnoreCase(name)) {
@@ -570,7 +737,6 @@ public class ChartScrollView extends View {
 		ss.maxValueY = maxValueY;
 		ss.linesVisibility = linesVisibility;
 		ss.linesCalculated = linesCalculated;
-		ss.sumVals = sumVals;
 		ss.data = data;
 		return ss;
 	}
@@ -582,19 +748,12 @@ public class ChartScrollView extends View {
 		maxValueY = ss.maxValueY;
 		linesVisibility = ss.linesVisibility;
 		linesCalculated = ss.linesCalculated;
-		sumVals = ss.sumVals;
+		releaseDerived();
 		data = ss.data;
 		if (data != null) {
-			linePaints = new Paint[data.getLinesCount()];
-			for (int i = 0; i < data.getLinesCount(); i++) {
-				linePaints[i] = createLinePaint(data.getColorsInts()[i]);
-			}
-			chartArray = new float[data.getLength() * 4];
-			if (data.isPercentage()) {
-				chartArray2 = new float[data.getLength() * 4];
-			} else {
-				chartArray2 = null;
-			}
+			dataLength = data.getLength();
+			acquireDerived();
+			requestRender(false);
 		}
 	}
 
@@ -609,7 +768,6 @@ public class ChartScrollView extends View {
 			valueScaleY = in.readFloat();
 			in.readBooleanArray(linesVisibility);
 			in.readBooleanArray(linesCalculated);
-			in.readFloatArray(sumVals);
 			data = in.readParcelable(ChartData.class.getClassLoader());
 		}
 
@@ -620,7 +778,6 @@ public class ChartScrollView extends View {
 			out.writeFloat(valueScaleY);
 			out.writeBooleanArray(linesVisibility);
 			out.writeBooleanArray(linesCalculated);
-			out.writeFloatArray(sumVals);
 			out.writeParcelable(data, Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
 		}
 
@@ -629,7 +786,6 @@ public class ChartScrollView extends View {
 		private float valueScaleY = 0;
 		private boolean[] linesVisibility;
 		private boolean[] linesCalculated;
-		private float[] sumVals;
 
 		public static final Parcelable.Creator<SavedState> CREATOR =
 				new Parcelable.Creator<SavedState>() {
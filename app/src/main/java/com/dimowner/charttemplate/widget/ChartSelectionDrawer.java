@@ -12,13 +12,11 @@ import android.view.animation.AccelerateInterpolator;
 import android.view.animation.DecelerateInterpolator;
 
 import com.dimowner.charttemplate.R;
+import com.dimowner.charttemplate.core.LineScales;
+import com.dimowner.charttemplate.core.NumberFormatter;
 import com.dimowner.charttemplate.model.ChartData;
 import com.dimowner.charttemplate.util.AndroidUtils;
 
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
-import java.util.Locale;
-
 //import timber.log.Timber;
 
 public class ChartSelectionDrawer {
@@ -47,7 +45,7 @@ public class ChartSelectionDrawer {
 		RADIUS = (int) (6*DENSITY);
 	}
 
-	DecimalFormat format;
+	NumberFormatter formatter;
 
 	private TextPaint selectedDatePaint;
 	private TextPaint selectedNamePaint;
@@ -63,8 +61,10 @@ public class ChartSelectionDrawer {
 	private int panelColor;
 
 	private float[] selectedValues;
-	private String[] formattedValues;
-	private String[] formattedPrecents;
+	private char[][] formattedValues;
+	private int[] formattedValuesLength;
+	private char[][] formattedPrecents;
+	private int[] formattedPrecentsLength;
 
 	private float selectedDateHeight = 0;
 	private float selectedDateWidth = 0;
@@ -139,12 +139,12 @@ public class ChartSelectionDrawer {
 
 	public void setLinesCount(int count) {
 		selectedValues = new float[count];
-		formattedValues = new String[count];
-		formattedPrecents = new String[count];
+		formattedValues = new char[count][NumberFormatter.MAX_LENGTH];
+		formattedValuesLength = new int[count];
+		formattedPrecents = new char[count][NumberFormatter.MAX_LENGTH + 1];
+		formattedPrecentsLength = new int[count];
 		for (int i = 0; i < count; i++) {
 			selectedValues[i] = 0;
-			formattedValues[i] = "";
-			formattedPrecents[i] = "";
 		}
 	}
 
@@ -216,10 +216,8 @@ public class ChartSelectionDrawer {
 		arrowPaint.setStrokeWidth(1.6f*DENSITY);
 		arrowPaint.setStrokeCap(Paint.Cap.ROUND);
 
-		DecimalFormatSymbols formatSymbols = new DecimalFormatSymbols(Locale.getDefault());
-      formatSymbols.setDecimalSeparator('.');
-      formatSymbols.setGroupingSeparator(' ');
-		format = new DecimalFormat("###,###.#", formatSymbols);
+		//Same as DecimalFormat("###,###.#") with ' ' grouping and '.' decimal separators.
+		formatter = new NumberFormatter(' ', '.');
 	}
 
 	public void drawBarOverlay(Canvas canvas, int type, float STEP, float H1, float WIDTH, float HEIGHT) {
@@ -276,7 +274,7 @@ public class ChartSelectionDrawer {
 				if (linesVisibility[i]) {
 					if (data.isPercentage()) {
 						//Draw percents
-						canvas.drawText(formattedPrecents[i],
+						canvas.drawText(formattedPrecents[i], 0, formattedPrecentsLength[i],
 								sizeRect.left + PADD_XNORMAL,
 								sizeRect.top + selectedDateHeight + PADD_XSMALL + 2 * PADD_XNORMAL + PADD_TINY + selectedNameHeight * count, percentsPaint);
 						//Draw names
@@ -293,7 +291,7 @@ public class ChartSelectionDrawer {
 					selectedValuePaint.setAlpha(alpha);
 //					canvas.drawText(String.valueOf(((int)selectedValues[i])),
 					//Draw values
-					canvas.drawText(formattedValues[i],
+					canvas.drawText(formattedValues[i], 0, formattedValuesLength[i],
 							sizeRect.right - PADD_XNORMAL,
 							sizeRect.top+selectedDateHeight + PADD_SMALL+2* PADD_XNORMAL +PADD_TINY + selectedNameHeight*count,
 							selectedValuePaint);
@@ -316,8 +314,7 @@ public class ChartSelectionDrawer {
 	}
 
 	public void calculatePanelSize(ChartData data, float STEP, boolean[] linesCalculated,
-											 float scrollPos, float WIDTH, boolean isYscale, int yIndex,
-											 float yScale, float[] sumVals) {
+											 float scrollPos, float WIDTH, LineScales lineScales, float[] sumVals) {
 		this.STEP = STEP;
 		this.scrollPos = scrollPos;
 		selectionIndex = (int)((scrollPos + selectionX)/STEP);
@@ -330,14 +327,14 @@ public class ChartSelectionDrawer {
 			if (linesCalculated[i]) {
 				visibleLinesCount++;
 				if (selectionIndex + 1 < data.getLength()) {
-					//Interpolate intermediate Y val for each line.
-					selectedValues[i] = calculateValY(
+					//Interpolate intermediate Y val for each line, scaled as the line is drawn.
+					selectedValues[i] = lineScales.apply(i, calculateValY(
 							scrollPos + selectionX,  //X
 							selectionIndex * STEP, //X1
 							(selectionIndex + 1) * STEP, //X2
-							data.getValues(i)[selectionIndex], //Y1
-							data.getValues(i)[selectionIndex + 1] //Y2
-					);
+							data.getVal(i, selectionIndex), //Y1
+							data.getVal(i, selectionIndex + 1) //Y2
+					));
 				}
 				//Name height and width
 				selectedNamePaint.getTextBounds(data.getNames()[i], 0, data.getNames()[i].length(), tempRect);
@@ -346,21 +343,19 @@ public class ChartSelectionDrawer {
 
 //				val = String.valueOf((data.getValues(i)[selectionIndex]));
 				if (data.isPercentage()) {
-					formattedPrecents[i] = format.format(data.getValues(i)[selectionIndex]/sumVals[selectionIndex])+"%";
-					selectedValuePaint.getTextBounds(formattedPrecents[i], 0, formattedPrecents[i].length(), tempRect);
+					int length = formatter.format(data.getVal(i, selectionIndex)/sumVals[selectionIndex], formattedPrecents[i], 0);
+					formattedPrecents[i][length++] = '%';
+					formattedPrecentsLength[i] = length;
+					selectedValuePaint.getTextBounds(formattedPrecents[i], 0, length, tempRect);
 					percentWidth = percentWidth < tempRect.width() ? tempRect.width() : percentWidth;
 				} else {
 					percentWidth = 0;
 				}
-				if (isYscale && i == yIndex) {
-					formattedValues[i] = format.format(data.getValues(i)[selectionIndex]/yScale);
-				} else {
-					formattedValues[i] = format.format(data.getValues(i)[selectionIndex]);
-				}
+				formattedValuesLength[i] = formatter.format(data.getVal(i, selectionIndex), formattedValues[i], 0);
 
 				//Value height and width
 //				selectedValuePaint.getTextBounds(val, 0, val.length(), tempRect);
-				selectedValuePaint.getTextBounds(formattedValues[i], 0, formattedValues[i].length(), tempRect);
+				selectedValuePaint.getTextBounds(formattedValues[i], 0, formattedValuesLength[i], tempRect);
 				maxRowWidth = maxRowWidth < tempWidth + tempRect.width() + percentWidth
 						? tempWidth + tempRect.width() + percentWidth : maxRowWidth;
 			}
@@ -368,7 +363,7 @@ public class ChartSelectionDrawer {
 
 		//Calculate date sizes
 //		date.setTime(data.getTimes()[selectionIndex]);
-		selectionDate = data.getTimes()[selectionIndex];//String.valueOf(date.getTime()/1000000);//TimeUtils.formatDateWeek(date);
+		selectionDate = data.getTimes(selectionIndex);//String.valueOf(date.getTime()/1000000);//TimeUtils.formatDateWeek(date);
 		selectedDatePaint.getTextBounds(selectionDate, 0, selectionDate.length(), tempRect);
 
 		if (selectedDateHeight < tempRect.height()) {
@@ -37,11 +37,21 @@ import android.view.animation.DecelerateInterpolator;
 import android.view.animation.LinearInterpolator;
 
 import com.dimowner.charttemplate.R;
+import com.dimowner.charttemplate.core.ChartLayout;
+import com.dimowner.charttemplate.core.LineScales;
+import com.dimowner.charttemplate.core.LttbCache;
+import com.dimowner.charttemplate.core.MinMaxPyramid;
+import com.dimowner.charttemplate.core.NumberFormatter;
+import com.dimowner.charttemplate.core.RangeIndex;
+import com.dimowner.charttemplate.core.StackSums;
+import com.dimowner.charttemplate.core.Viewport;
 import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.model.ChartDerivedData;
 import com.dimowner.charttemplate.util.AndroidUtils;
 import com.dimowner.charttemplate.util.TimeUtils;
 
-import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 
 public class ChartView extends View {
 
@@ -57,6 +67,10 @@ public class ChartView extends View {
 	private final int RADIUS;
 	private static final int GRID_LINES_COUNT = 6;
 	private static final int ANIMATION_DURATION = 220; //mills
+	/** Time selection should stay on the same index before details of it are prefetched. */
+	private static final int PREFETCH_DELAY = 300; //mills
+	/** Count of neighbour days prefetched on each side of the selected day. */
+	private static final int PREFETCH_RADIUS = 1;
 
 	{
 		DENSITY = AndroidUtils.dpToPx(1);
@@ -81,13 +95,15 @@ public class ChartView extends View {
 	private float H3 = 0;
 	private float HEIGHT_PADDS = 2*BASE_LINE_Y+PADD_NORMAL;
 
-	private DecimalFormat format = new DecimalFormat("#,##0.#");
-	private StringBuilder stringBuilder = new StringBuilder();
+	private NumberFormatter formatter;
+	/** Reusable buffer for grid labels and percents, so that draw does not allocate strings. */
+	private char[] labelBuffer = new char[NumberFormatter.MAX_LENGTH + 1];
+	private String[] percentLabels;
 
 	private ChartData data;
 
 	private float chartArray[];
-	private float chartArray2[];
+	private final AreaRenderer areaRenderer = new AreaRenderer();
 
 	private boolean[] linesVisibility;
 	private boolean[] linesCalculated;
@@ -109,6 +125,8 @@ public class ChartView extends View {
 	private float scrollPos;
 	private float scrollStartIndex;
 	private float indexesWidth;
+	/** Data length which derived arrays are calculated for. */
+	private int dataLength;
 
 	private ChartSelectionDrawer selectionDrawer;
 
@@ -123,18 +141,31 @@ public class ChartView extends View {
 	private float minValueCalculated = 0;
 
 	//Y scaled line values;
-	private float yScale = 1;
 	private int yIndex = 0;
 	private boolean isYscaled = false;
 
-	private int[] maxValuesLine;
-	private int[] minValuesLine;
+	/** Values derived from data shared with other views, taken while data is set and view is attached. */
+	private ChartDerivedData derived;
+	/** Max and min of lines shared with other views, queried with own lines state. */
+	private RangeIndex rangeIndex;
+	/** Max stacked sums of calculated lines, only for stacked charts. */
+	/** Scales of lines values, the smaller line of Y-scaled chart is scaled to other lines. */
+	private LineScales lineScales;
+	/** Min/max pyramids of line charts, null for other chart types. */
+	private MinMaxPyramid[] linePyramids;
+	private LttbCache lttbCache;
+	/** Downsample line charts with LTTB instead of min/max pyramid. */
+	private boolean lttbEnabled = false;
 	private float gridScale = 1;
 	private int gridCount = GRID_LINES_COUNT;
 	private float gridStep = 1;
 	private float gridValueStep = 1;
 	private boolean skipNextInvalidation = false;
-	private String dateRange;
+	private char[] dateRange = new char[64];
+	private int dateRangeLength = 0;
+	/** Indexes of dates shown in dateRange, end is -1 when single date shown. */
+	private int dateRangeStart = -1;
+	private int dateRangeEnd = -1;
 	private float dateRangeHeight;
 	private Rect rect;
 	private int gridTextColor;
@@ -145,13 +176,21 @@ public class ChartView extends View {
 	private float scaleKoef = 1;
 	private int amnimItemIndex = -1;
 	private float[] sumVals;
+	/** Own percentage totals while a line is animated, shared totals of lines state are used otherwise. */
+	private float[] animSumVals;
+	private final Viewport viewport = new Viewport();
+	private final ChartLayout layout = new ChartLayout();
+	private final FrameStats frameStats = FrameStats.get("ChartView");
+	private long frameStart;
+	/** Time of the first scroll since the previous frame. */
+	private long updateTime = 0;
+	private int framePoints;
 	private boolean isFirst = true;
 	private boolean isMove = false;
 	private int scale = 1;
 	private boolean isDetailsMode = false;
 
 	private float[] arcSums;
-	private int totalAdcSum;
 	private float prevArc;
 
 	public boolean isMoveAnimation = false;
@@ -165,6 +204,28 @@ public class ChartView extends View {
 
 	public OnDetailsListener onDetailsListener;
 
+	private final long[] prefetchTimes = new long[PREFETCH_RADIUS*2+1];
+	private int prefetchIndex = -1;
+
+	private final Runnable prefetchTask = new Runnable() {
+		@Override
+		public void run() {
+			int index = selectionDrawer.getSelectionIndex();
+			if (onDetailsListener == null || isDetailsMode || data == null
+					|| index < 0 || index >= data.getLength() || index == prefetchIndex) {
+				return;
+			}
+			prefetchIndex = index;
+			//Selected day first, then neighbours from the nearest.
+			prefetchTimes[0] = data.getTime(index);
+			for (int i = 1; i <= PREFETCH_RADIUS; i++) {
+				prefetchTimes[i*2-1] = index+i < data.getLength() ? data.getTime(index+i) : 0;
+				prefetchTimes[i*2] = index-i >= 0 ? data.getTime(index-i) : 0;
+			}
+			onDetailsListener.prefetchDetails(data.getChartNum(), prefetchTimes);
+		}
+	};
+
 	ValueAnimator.AnimatorUpdateListener heightValueAnimator = new ValueAnimator.AnimatorUpdateListener() {
 		@Override
 		public void onAnimationUpdate(ValueAnimator animation) {
@@ -245,6 +306,13 @@ public class ChartView extends View {
 		scrollStartIndex = 0;
 		rect = new Rect();
 
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance();
+		formatter = new NumberFormatter(symbols.getGroupingSeparator(), symbols.getDecimalSeparator());
+		percentLabels = new String[6];
+		for (int i = 0; i < percentLabels.length; i++) {
+			percentLabels[i] = String.valueOf(20f * i);
+		}
+
 		int gridColor;
 		int panelTextColor;
 		int panelColor;
@@ -352,14 +420,15 @@ public class ChartView extends View {
 					selectionDrawer.showPanel();
 					selectionDrawer.setSelectionX(e.getX());
 					selectionDrawer.calculatePanelSize(data, STEP, linesCalculated, scrollPos, WIDTH,
-							isYscaled, yIndex, yScale, sumVals);
+							lineScales, sumVals);
+					schedulePrefetch();
 				} else
 				if (!selectionDrawer.checkCoordinateInPanel(e.getX(), e.getY())) {
 					selectionDrawer.hidePanel();
 				} else {
 					//Open detailed chart;
 					if (onDetailsListener != null && !isDetailsMode) {
-						onDetailsListener.showDetails(data.getChartNum(), data.getTime()[selectionDrawer.getSelectionIndex()]);
+						onDetailsListener.showDetails(data.getChartNum(), data.getTime(selectionDrawer.getSelectionIndex()));
 					}
 				}
 				return super.onSingleTapUp(e);
@@ -403,10 +472,11 @@ public class ChartView extends View {
 							if (Math.abs(motionEvent.getY() - startY) < 90 * DENSITY) {
 								selectionDrawer.setSelectionX(selectionX);
 								selectionDrawer.calculatePanelSize(data, STEP, linesCalculated, scrollPos,
-										WIDTH, isYscaled, yIndex, yScale, sumVals);
+										WIDTH, lineScales, sumVals);
 								if (isDetailsMode && !data.isPercentage()) {
 									setDateRange((int)((scrollPos+selectionX)/STEP));
 								}
+								schedulePrefetch();
 								if (onMoveEventsListener != null) {
 									onMoveEventsListener.disallowTouchEvent();
 								}
@@ -442,6 +512,13 @@ public class ChartView extends View {
 
 	private Paint createLinePaint(int color, boolean isBars) {
 		Paint lp = new Paint(Paint.ANTI_ALIAS_FLAG);
+		setupLinePaint(lp, color, isBars);
+		return lp;
+	}
+
+	private void setupLinePaint(Paint lp, int color, boolean isBars) {
+		lp.reset();
+		lp.setFlags(Paint.ANTI_ALIAS_FLAG);
 		lp.setStyle(Paint.Style.STROKE);
 		lp.setStrokeWidth(2*DENSITY);
 		lp.setStrokeJoin(Paint.Join.ROUND);
@@ -449,32 +526,40 @@ public class ChartView extends View {
 		if (isBars) {
 			lp.setStrokeCap(Paint.Cap.BUTT);
 		}
-		return lp;
 	}
 
 	private void alphaAnimator(float start, final float end, final int index, final boolean show) {
 		this.show = show;
 		this.index = index;
 		this.end2 = end;
-		if (alphaAnimator != null && alphaAnimator.isStarted()) {
-			alphaAnimator.cancel();
+		if (alphaAnimator == null) {
+			alphaAnimator = ValueAnimator.ofFloat(start, end);
+			alphaAnimator.addUpdateListener(alphaValueAnimator);
+		} else {
+			if (alphaAnimator.isStarted()) {
+				alphaAnimator.cancel();
+			}
+			alphaAnimator.setFloatValues(start, end);
 		}
-		alphaAnimator = ValueAnimator.ofFloat(start, end);
 		if (show) {
 			alphaAnimator.setInterpolator(decelerateInterpolator);
 		} else {
 			alphaAnimator.setInterpolator(accelerateInterpolator);
 		}
 		alphaAnimator.setDuration(ANIMATION_DURATION);
-		alphaAnimator.addUpdateListener(alphaValueAnimator);
 		alphaAnimator.start();
 	}
 
 	private void heightAnimator(final float diff, boolean isLinear) {
-		if (heightAnimator != null && (heightAnimator.isStarted())) {
-			heightAnimator.cancel();
+		if (heightAnimator == null) {
+			heightAnimator = ValueAnimator.ofFloat(diff, 0);
+			heightAnimator.addUpdateListener(heightValueAnimator);
+		} else {
+			if (heightAnimator.isStarted()) {
+				heightAnimator.cancel();
+			}
+			heightAnimator.setFloatValues(diff, 0);
 		}
-		heightAnimator = ValueAnimator.ofFloat(diff, 0);
 		if (isLinear) {
 			heightAnimator.setInterpolator(linearInterpolator);
 			heightAnimator.setDuration(300);
@@ -482,18 +567,21 @@ public class ChartView extends View {
 			heightAnimator.setInterpolator(decelerateInterpolator);
 			heightAnimator.setDuration(ANIMATION_DURATION);
 		}
-		heightAnimator.addUpdateListener(heightValueAnimator);
 		heightAnimator.start();
 	}
 
 	private void minHeightAnimator(final float diff) {
-		if (minHeightAnimator != null && (minHeightAnimator.isStarted())) {
-			minHeightAnimator.cancel();
+		if (minHeightAnimator == null) {
+			minHeightAnimator = ValueAnimator.ofFloat(diff, 0);
+			minHeightAnimator.setInterpolator(linearInterpolator);
+			minHeightAnimator.setDuration(300);
+			minHeightAnimator.addUpdateListener(minHeightValueAnimator);
+		} else {
+			if (minHeightAnimator.isStarted()) {
+				minHeightAnimator.cancel();
+			}
+			minHeightAnimator.setFloatValues(diff, 0);
 		}
-		minHeightAnimator = ValueAnimator.ofFloat(diff, 0);
-		minHeightAnimator.setInterpolator(linearInterpolator);
-		minHeightAnimator.setDuration(300);
-		minHeightAnimator.addUpdateListener(minHeightValueAnimator);
 		minHeightAnimator.start();
 	}
 
@@ -531,11 +619,14 @@ public class ChartView extends View {
 	}
 
 	private void updateGrid() {
-		gridCount = (int)((HEIGHT-BASE_LINE_Y-PADD_TINY)/gridStep);
+		gridCount = ChartLayout.getGridCount(HEIGHT-BASE_LINE_Y-PADD_TINY, gridStep);
 	}
 
 	public void scrollPos(float x, float size) {
 		if (x >= 0) {
+			if (updateTime == 0) {
+				updateTime = FrameStats.now();
+			}
 			STEP = WIDTH / size;
 			scrollPos = (x * STEP);
 			scrollStartIndex = x;
@@ -558,6 +649,14 @@ public class ChartView extends View {
 			}
 
 			selectionDrawer.setScrollPos(scrollStartIndex, STEP);
+			if (isDetailsMode && onDetailsListener != null) {
+				//Request more days when window edge is reached.
+				if (x < 1) {
+					onDetailsListener.extendDetails(data.getChartNum(), true);
+				} else if (x + size > data.getLength() - 1) {
+					onDetailsListener.extendDetails(data.getChartNum(), false);
+				}
+			}
 			calculateDateRange();
 			if (!data.isPercentage()) {
 				calculateMaxValue2(true, !isFirst);
@@ -577,37 +676,50 @@ public class ChartView extends View {
 //		int idx = (int) Math.ceil(scrollStartIndex + indexesWidth) - 1;
 		idx = (int) Math.ceil(scrollStartIndex + indexesWidth) - 1;
 		if (idx < data.getLength()) {
-			if (isDetailsMode) {
-				int start = (int) Math.floor(scrollStartIndex);
-				if (TimeUtils.isDiffSorterThan2Days(data.getTime()[start], data.getTime()[idx])) {
-					dateRange = data.getTimesLong()[start];
-				} else {
-					dateRange = data.getTimesLong()[start] + minus + data.getTimesLong()[idx];
-				}
+			int start = (int) Math.floor(scrollStartIndex);
+			if (isDetailsMode && TimeUtils.isDiffSorterThan2Days(data.getTime(start), data.getTime(idx))) {
+				updateDateRange(start, -1);
 			} else {
-				dateRange = data.getTimesLong()[(int) Math.floor(scrollStartIndex)] + minus + data.getTimesLong()[idx];
+				updateDateRange(start, idx);
 			}
-			dateRangePaint.getTextBounds(dateRange, 0, dateRange.length(), rect);
 		}
+	}
+
+	private void setDateRange(int index) {
+		if (data.getLength() > index) {
+			updateDateRange(index, -1);
+		}
+	}
+
+	/**
+	 * Write dates range text into dateRange buffer if dates indexes changed.
+	 * @param end Index of the last date or -1 to show single date.
+	 */
+	private void updateDateRange(int start, int end) {
+		if (start == dateRangeStart && end == dateRangeEnd) {
+			return;
+		}
+		dateRangeStart = start;
+		dateRangeEnd = end;
+		dateRangeLength = 0;
+		appendDateRange(data.getTimesLong(start));
+		if (end >= 0) {
+			appendDateRange(minus);
+			appendDateRange(data.getTimesLong(end));
+		}
+		dateRangePaint.getTextBounds(dateRange, 0, dateRangeLength, rect);
 		if (dateRangeHeight < rect.height()) {
 			dateRangeHeight = rect.height();
 		}
-		if (dateRange == null) {
-			dateRange = "";
-		}
 	}
 
-	private void setDateRange(int index) {
-		if (data.getLength() > index) {
-			dateRange = data.getTimesLong()[index];
-			dateRangePaint.getTextBounds(dateRange, 0, dateRange.length(), rect);
-			if (dateRangeHeight < rect.height()) {
-				dateRangeHeight = rect.height();
-			}
-			if (dateRange == null) {
-				dateRange = "";
-			}
+	private void appendDateRange(String text) {
+		int length = dateRangeLength + text.length();
+		if (length > dateRange.length) {
+			dateRange = Arrays.copyOf(dateRange, 2*length);
 		}
+		text.getChars(0, text.length(), dateRange, dateRangeLength);
+		dateRangeLength = length;
 	}
 
 	@Override
@@ -627,34 +739,23 @@ public class ChartView extends View {
 	}
 
 	private int arcIndexForCoordinates(float x, float y) {
-		float angle = (float) Math.atan2((y - WIDTH/2), (x - (HEIGHT-BASE_LINE_Y+PADD_SMALL)/2 + (BASE_LINE_Y+PADD_NORMAL+PADD_SMALL)/2f));
-
-		float angle2 =(float) (angle * 180/Math.PI);
-		if (angle2 < 0) {
-			angle2 = 180 + 180+angle2;
-		}
-
-		float angleToStart  = angle2 - START_ANGLE;
-		if (angleToStart < 0) {
-			angleToStart = 360-START_ANGLE + START_ANGLE + angleToStart;
-		}
-
-		float prev = 0;
-		if (arcSums != null && arcSums.length > 0) {
-			for (int i = 0; i < arcSums.length; i++) {
-				prev += arcSums[i];
-				if (angleToStart - prev < 0) {
-					return i;
-				}
-			}
-		}
-		return -1;
+		return ChartLayout.arcIndexAt(x, y,
+				(HEIGHT-BASE_LINE_Y+PADD_SMALL)/2 - (BASE_LINE_Y+PADD_NORMAL+PADD_SMALL)/2f, WIDTH/2,
+				START_ANGLE, arcSums);
 	}
 
 	@Override
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
+		frameStart = FrameStats.now();
+		framePoints = 0;
 		if (data != null) {
+			chartArray = derived.getLayoutBuffer();
+			viewport.setScroll(scrollStartIndex, scrollPos, STEP);
+			viewport.setSize(WIDTH, PADD_NORMAL);
+			viewport.resolveRange(data.getLength());
+			viewport.setValues(H1, valueScale, minValueVisible);
+			viewport.setPercentScale(H3);
 			//Draw charts
 			timelineTextPaint.setTextAlign(Paint.Align.CENTER);
 			for (int i = 0; i < data.getLinesCount(); i++) {
@@ -691,8 +792,16 @@ public class ChartView extends View {
 				//Draw selection panel with scrubbler
 				selectionDrawer.draw(canvas, data, linesVisibility, HEIGHT, linePaints, valueScale, minValueVisible);
 			}
-			canvas.drawText(dateRange, WIDTH-2, dateRangeHeight+DATE_RANGE_PADD, dateRangePaint);
+			canvas.drawText(dateRange, 0, dateRangeLength, WIDTH-2, dateRangeHeight+DATE_RANGE_PADD, dateRangePaint);
 		}
+		frameStats.onFrame(frameStart, updateTime, framePoints, isAnimationRunning());
+		updateTime = 0;
+	}
+
+	private boolean isAnimationRunning() {
+		return isAnimating || (heightAnimator != null && heightAnimator.isRunning())
+				|| (minHeightAnimator != null && minHeightAnimator.isRunning())
+				|| (moveAnimator != null && moveAnimator.isRunning());
 	}
 
 	private void drawPercentCircle(Canvas canvas, int i) {
@@ -713,7 +822,9 @@ public class ChartView extends View {
 					(WIDTH - (H2)) / 2, BASE_LINE_Y + PADD_NORMAL + PADD_SMALL,
 					(WIDTH - (H2)) / 2 + H2, HEIGHT - BASE_LINE_Y + PADD_SMALL,
 					prevArc, arcSums[i], true, linePaints[i]);
-			canvas.drawText((int) (arcSums[i]/3.6) + "%",
+			int length = formatter.format((int) (arcSums[i]/3.6), labelBuffer, 0);
+			labelBuffer[length++] = '%';
+			canvas.drawText(labelBuffer, 0, length,
 					WIDTH/2+(float) Math.cos((prevArc+arcSums[i]/2)*Math.PI/180)*RADIUS,
 					(HEIGHT)/2+(float) Math.sin((prevArc+arcSums[i]/2)*Math.PI/180)*RADIUS+PADD_NORMAL+PADD_TINY, percentPaint);
 		}
@@ -728,7 +839,7 @@ public class ChartView extends View {
 		}
 		for (int i = 0; i < gridCount; i++) {
 			canvas.drawLine(0, H1 - gridStep * i, WIDTH, H1 - gridStep * i, gridPaint);
-			canvas.drawText(formatValue(gridValueStep * i+minValueVisible), 0, H1 - gridStep * i - PADD_TINY, timelineTextPaint);
+			canvas.drawText(labelBuffer, 0, formatValue(gridValueStep * i+minValueVisible), 0, H1 - gridStep * i - PADD_TINY, timelineTextPaint);
 		}
 //		for (float i = 0; i < maxValueVisible*valueScale; i+=gridStep) {
 //			canvas.drawLine(0, H1 - i, WIDTH, H1 - i, gridPaint);
@@ -738,7 +849,7 @@ public class ChartView extends View {
 			timelineTextPaint.setTextAlign(Paint.Align.RIGHT);
 			timelineTextPaint.setAlpha(linePaints[yIndex].getAlpha());
 			for (int i = 0; i < gridCount; i++) {
-				canvas.drawText(formatValue((gridValueStep * i+minValueVisible)/yScale),
+				canvas.drawText(labelBuffer, 0, formatValue(lineScales.invert(yIndex, gridValueStep * i+minValueVisible)),
 						WIDTH, H1 - gridStep * i - PADD_TINY, timelineTextPaint);
 			}
 			timelineTextPaint.setAlpha(255);
@@ -749,6 +860,36 @@ public class ChartView extends View {
 	protected void onDetachedFromWindow() {
 		super.onDetachedFromWindow();
 //		selectionDrawer.setView(null);
+		removeCallbacks(prefetchTask);
+		if (derived != null) {
+			derived.release();
+			derived = null;
+		}
+	}
+
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if (data != null && derived == null) {
+			//Data could be changed while view was detached, everything is calculated again.
+			dataLength = data.getLength();
+			acquireDerived();
+			calculateSumsLine();
+			dateRangeStart = -1;
+			dateRangeEnd = -1;
+			calculateDateRange();
+			calculateMaxValue2(false, false);
+		}
+	}
+
+	/**
+	 * Prefetch details of the selected day and its neighbours when selection stops moving.
+	 */
+	private void schedulePrefetch() {
+		removeCallbacks(prefetchTask);
+		if (!isDetailsMode && onDetailsListener != null) {
+			postDelayed(prefetchTask, PREFETCH_DELAY);
+		}
 	}
 
 	private void drawPercentageGrid(Canvas canvas) {
@@ -757,214 +898,70 @@ public class ChartView extends View {
 		timelineTextPaint.setAlpha(255);
 		for (int i = 0; i <= 5; i++) {
 			canvas.drawLine(0, H1 - gridStep * i, WIDTH, H1 - gridStep * i, gridPaint);
-			canvas.drawText(String.valueOf(gridValueStep * i), 0, H1 - gridStep * i - PADD_TINY, timelineTextPaint);
+			canvas.drawText(percentLabels[i], 0, H1 - gridStep * i - PADD_TINY, timelineTextPaint);
 		}
 	}
 
-	private float chartPos;
-	private int chartSkip;
 	private int chartK;
 
 	private void drawChart(Canvas canvas, int[] values, int index) {
-//		float pos = -scrollPos;
-		chartPos = -scrollPos;
-//		int skip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-		chartSkip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-		if (chartSkip < 0) {chartSkip = 0;}
-		chartPos +=chartSkip*STEP;
-//		int k = chartSkip;
-		chartK = chartSkip;
-		for (int i = chartSkip; i < values.length; i++) {
-			if (chartK < chartArray.length) {
-				chartArray[chartK] = chartPos; //x1
-				chartArray[chartK + 1] = H1 - (values[i]-minValueVisible) * valueScale; //y1
-				if (i + 1 < values.length) {
-					chartArray[chartK + 2] = chartPos + STEP; //x2
-					chartArray[chartK + 3] = H1 - (values[i + 1]-minValueVisible) * valueScale; //y2
-				} else {
-					chartArray[chartK + 2] = chartPos; //x2
-					chartArray[chartK + 3] = H1 - (values[i]-minValueVisible) * valueScale; //y2
-				}
-				chartK +=4;
-				if (chartPos - STEP > WIDTH+PADD_NORMAL) {
-					break;
-				}
+		viewport.setLineTransform(lineScales.getScale(index), lineScales.getOffset(index));
+		if (linePyramids[index] != null && linePyramids[index].chooseLevel(STEP) > 0) {
+			if (lttbEnabled) {
+				drawChartLttb(canvas, values, index);
+			} else {
+				drawChartLod(canvas, linePyramids[index], index);
 			}
-			chartPos += STEP;
+			return;
 		}
-		if (chartPos/STEP < 140) {
+		chartK = layout.layoutLine(values, data.getStart(), data.getLength(), viewport, chartArray);
+		if (layout.getLastPos()/STEP < 140) {
 			linePaints[index].setStrokeCap(Paint.Cap.ROUND);
 		} else {
 			linePaints[index].setStrokeCap(Paint.Cap.BUTT);
 		}
-		canvas.drawLines(chartArray, chartSkip, chartK-chartSkip, linePaints[index]);
-//		canvas.drawVertices();
+		canvas.drawLines(chartArray, 0, chartK, linePaints[index]);
+		framePoints += chartK/4;
+	}
+
+	/**
+	 * Draw line through values selected by LTTB for current zoom.
+	 */
+	private void drawChartLttb(Canvas canvas, int[] values, int index) {
+		chartK = layout.layoutLineLttb(values, data.getStart(), lttbCache.getIndexes(index, lttbCache.chooseZoom(STEP)),
+				viewport, chartArray);
+		linePaints[index].setStrokeCap(Paint.Cap.ROUND);
+		canvas.drawLines(chartArray, 0, chartK, linePaints[index]);
+		framePoints += chartK/4;
+	}
+
+	/**
+	 * Draw line using pyramid level which bucket width is about one pixel.
+	 */
+	private void drawChartLod(Canvas canvas, MinMaxPyramid pyramid, int index) {
+		chartK = layout.layoutLineLod(pyramid, viewport, chartArray);
+		linePaints[index].setStrokeCap(Paint.Cap.BUTT);
+		canvas.drawLines(chartArray, 0, chartK, linePaints[index]);
+		framePoints += chartK/4;
 	}
 
-	private float barPos;
-	private int barSkip;
-	private int barK;
-	private int barJ;
-	private int barSum;
 	private void drawBars(Canvas canvas, int[] values, int index) {
-//		float pos = -scrollPos;
-		barPos = -scrollPos;
-//		int skip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-		barSkip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-		if (barSkip < 0) {barSkip = 0;}
-		barPos +=barSkip*STEP;
-//		int k = barSkip;
-		barSkip -= barSkip%scale;
-		barK = barSkip;
 		linePaints[index].setStrokeWidth(scale*STEP+1);
 		if (data.isStacked()) {
-//			int j;
-//			int sum=0;
-			barSum = 0;
-			for (int i = barSkip; i < values.length; i+=scale) {
-				if (barK < chartArray.length) {
-					for (barJ = 0; barJ <= index; barJ++) {
-						if (linesCalculated[barJ] && barJ != amnimItemIndex) { //
-							barSum += data.getVal(barJ, i);
-						}
-					}
-					if (isAnimating && amnimItemIndex <= index) {
-						barSum += scaleKoef*data.getVal(amnimItemIndex, i);
-					}
-					if (data.isPercentage()) {
-						chartArray[barK] = barPos; //x1
-						if (index == amnimItemIndex) {
-							chartArray[barK + 1] = H1 - H3*(barSum - values[i] * scaleKoef)/(sumVals[i]);
-						} else {
-							chartArray[barK + 1] = H1 - H3*(barSum - values[i])/(sumVals[i]);
-						}
-						chartArray[barK + 2] = barPos; //x2
-						chartArray[barK + 3] = H1 - H3*barSum/(sumVals[i]); //y2
-					} else {
-						chartArray[barK] = barPos; //x1
-	//					chartArray[k + 1] = H1 - data.getValues(index-1)[i] * valueScale; //y1
-						if (index == amnimItemIndex) {
-							chartArray[barK + 1] = H1 - (barSum - values[i] * scaleKoef) * valueScale; //y1
-						} else {
-							chartArray[barK + 1] = H1 - (barSum - values[i]) * valueScale; //y1
-						}
-						chartArray[barK + 2] = barPos; //x2
-	//					chartArray[k + 3] = H1 - values[i] * valueScale; //y2
-						chartArray[barK + 3] = H1 - barSum * valueScale; //y2
-					}
-					barK += 4;
-					if (barPos - STEP > WIDTH + PADD_NORMAL) {
-						break;
-					}
-					barSum = 0;
-				}
-				barPos += scale*STEP;
-			}
+			chartK = layout.layoutStackedBars(values, data.getStart(), data.getLength(), index, scale, updateStackSums(),
+					data.isPercentage() ? sumVals : null, viewport, chartArray);
 		} else {
-			for (int i = barSkip; i < values.length; i++) {
-				if (barK < chartArray.length) {
-					chartArray[barK] = barPos; //x1
-					chartArray[barK + 1] = H1; //y1
-					chartArray[barK + 2] = barPos; //x2
-					chartArray[barK + 3] = H1 - values[i] * valueScale; //y2
-					barK += 4;
-					if (barPos - STEP > WIDTH + PADD_NORMAL) {
-						break;
-					}
-				}
-				barPos += STEP;
-			}
+			chartK = layout.layoutBars(values, data.getStart(), data.getLength(), 1, viewport, chartArray);
 		}
-		canvas.drawLines(chartArray, barSkip, barK-barSkip, linePaints[index]);
+		canvas.drawLines(chartArray, 0, chartK, linePaints[index]);
+		framePoints += chartK/4;
 	}
 
 	private void drawAreaPercentage(Canvas canvas, int[] values, int index) {
-		float pos = -scrollPos;
-		int skip = (int) scrollStartIndex -(int)(PADD_NORMAL/STEP);
-		if (skip < 0) {skip = 0;}
-		skip -= skip%scale;
-		pos +=skip*STEP;
-		int k = skip;
-		int j;
-		int sum=0;
-		int sum2=0;
-		for (int i = skip; i < values.length; i+=scale) {
-			if (k < chartArray.length) {
-				for (j = 0; j <= index; j++) {
-					if (linesCalculated[j] && j != amnimItemIndex) { //
-						sum += data.getVal(j, i);
-						if (i+scale < values.length) {
-							sum2 += data.getVal(j, i + scale);
-						}
-					}
-				}
-				if (isAnimating && amnimItemIndex <= index) {
-					sum += scaleKoef*data.getVal(amnimItemIndex, i);
-					if (i+scale < values.length) {
-						sum2 += scaleKoef * data.getVal(amnimItemIndex, i+scale);
-					}
-				}
-				chartArray[k] = pos; //x1
-				if (index == amnimItemIndex) {
-					chartArray[k + 1] = H1 - H3*(sum - values[i] * scaleKoef)/(sumVals[i]);
-				} else {
-					chartArray[k + 1] = H1 - H3*(sum - values[i])/(sumVals[i]);
-				}
-				chartArray[k + 2] = pos; //x2
-				chartArray[k + 3] = H1 - H3*sum/(sumVals[i]); //y2
-
-				///Draw lines
-				chartArray2[k] = pos-1; //x1
-				if (index == amnimItemIndex) {
-					chartArray2[k + 1] = H1 - H3*(sum - values[i] * scaleKoef)/(sumVals[i]);
-				} else {
-					chartArray2[k + 1] = H1 - H3*(sum - values[i])/(sumVals[i]);
-				}
-				if (i + scale < values.length) {
-					chartArray2[k + 2] = pos + STEP*scale; //x2
-					if (index == amnimItemIndex) {
-						chartArray2[k + 3] = H1 - H3 * (sum2 - values[i+scale]* scaleKoef) / (sumVals[i + scale]);
-					} else {
-						chartArray2[k + 3] = H1 - H3 * (sum2 - values[i+scale]) / (sumVals[i + scale]);
-					}
-				} else {
-					chartArray2[k + 2] = pos+STEP*scale/2; //x2
-					if (index == amnimItemIndex) {
-						chartArray2[k + 3] = H1 - H3 * (sum - values[i]*scaleKoef) / (sumVals[i]); //y2
-					} else {
-						chartArray2[k + 3] = H1 - H3 * (sum - values[i]) / (sumVals[i]); //y2
-					}
-				}
-				k += 4;
-				if (pos - STEP*scale > WIDTH + PADD_NORMAL) {
-					break;
-				}
-				sum = 0;
-				sum2 = 0;
-			}
-			pos += scale*STEP;
-		}
-
-		linePaints[index].setStrokeWidth(scale*STEP+1);
-		linePaints[index].setTextAlign(Paint.Align.RIGHT);
-		linePaints[index].setStrokeCap(Paint.Cap.BUTT);
-		canvas.drawLines(chartArray, skip, k-skip, linePaints[index]);
-		if (data.isPercentage() && index > 0 && !isBottomLine(index)) {
-			linePaints[index].setStrokeWidth(STEP*scale);
-//			linePaints[index].setStrokeCap(Paint.Cap.BUTT);
-			canvas.drawLines(chartArray2, skip, k - skip, linePaints[index]);
-			linePaints[index].setStrokeCap(Paint.Cap.ROUND);
-			canvas.drawPoints(chartArray2, skip, k - skip-1, linePaints[index]);
-		}
-	}
-
-	private boolean isBottomLine(int index) {
-		for (int i = 0; i < index; i++) {
-			if (linesVisibility[i]) {
-				return false;
-			}
-		}
-		return true;
+		chartK = layout.layoutAreaStrip(values, data.getStart(), data.getLength(), index, scale, updateStackSums(), sumVals,
+				viewport, chartArray);
+		areaRenderer.draw(canvas, chartArray, chartK, linePaints[index]);
+		framePoints += chartK/4;
 	}
 
 	private float timelinePos;
@@ -979,7 +976,12 @@ public class ChartView extends View {
 			timelineCount*=2;
 		}
 
-		for (int i = 0; i < data.getLength()/timelineCount+1; i++) {
+		//Only labels from the left edge minus label width to the right edge.
+		int first = Math.max(0, (int) ((scrollPos - TEXT_SPACE) / STEP));
+		int end = (int) ((scrollPos + WIDTH) / STEP) + 1;
+		int firstLabel = Math.max(0, first/timelineCount - 1);
+		timelinePos = firstLabel*timelineCount*STEP;
+		for (int i = firstLabel; i < data.getLength()/timelineCount+1 && i <= end/timelineCount; i++) {
 			if (i == 0) {
 				timelineTextPaint.setTextAlign(Paint.Align.LEFT);
 			} else {
@@ -994,13 +996,13 @@ public class ChartView extends View {
 				if (isDetailsMode) {
 					int start = (int)(scrollPos/STEP);
 					if (data.getLength() > start+(int)(indexesWidth)
-							&& TimeUtils.isDiffSorterThan2Days(data.getTime()[start], data.getTime()[start+(int)(indexesWidth)])) {
-						canvas.drawText(data.getTimes()[i * timelineCount], timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
+							&& TimeUtils.isDiffSorterThan2Days(data.getTime(start), data.getTime(start+(int)(indexesWidth)))) {
+						canvas.drawText(data.getTimes(i * timelineCount), timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
 					} else {
-						canvas.drawText(data.getTimesShort()[i * timelineCount], timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
+						canvas.drawText(data.getTimesShort(i * timelineCount), timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
 					}
 				} else {
-					canvas.drawText(data.getTimesShort()[i * timelineCount], timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
+					canvas.drawText(data.getTimesShort(i * timelineCount), timelinePos - scrollPos, HEIGHT - PADD_NORMAL, timelineTextPaint);
 				}
 			}
 			timelinePos += timelineCount*STEP;
@@ -1015,7 +1017,6 @@ public class ChartView extends View {
 			linesCalculated[pos] = false;
 			alphaAnimator(linePaints[pos].getAlpha(), 0, pos, false);
 		}
-		calculateMaxValuesLine();
 		calculateMaxValue2(false, true);
 		selectionDrawer.hidePanel();
 		updateGrid();
@@ -1030,66 +1031,109 @@ public class ChartView extends View {
 			linesCalculated[pos] = true;
 			alphaAnimator(linePaints[pos].getAlpha(), 255, pos, true);
 		}
-		calculateMaxValuesLine();
 		calculateMaxValue2(false, true);
 		selectionDrawer.hidePanel();
 		updateGrid();
 	}
 
 	public void setData(ChartData d) {
-		//Recalculate back Y-scaled values.
-		if (isYscaled) {
-			int[] v = data.getValues(yIndex);
-			for (int j = 0; j < v.length; j++) {
-				data.setData((int) (v[j]/yScale), yIndex, j);
-			}
+		if (derived != null) {
+			derived.release();
+			derived = null;
 		}
 		this.data = d;
 		if (data != null) {
 			this.isDetailsMode = data.isDetailsMode();
+			prefetchIndex = -1;
+			removeCallbacks(prefetchTask);
 			selectionDrawer.hidePanel();
 			maxValueCalculated = 0;
 			isYscaled = data.isYscaled();
-			//Init lines visibility state, all visible by default.
-			linesVisibility = new boolean[data.getLinesCount()];
-			linesCalculated = new boolean[data.getLinesCount()];
+			//Init lines visibility state, all visible by default. Arrays and paints are reused when lines count is the same.
+			if (linesVisibility == null || linesVisibility.length != data.getLinesCount()) {
+				linesVisibility = new boolean[data.getLinesCount()];
+				linesCalculated = new boolean[data.getLinesCount()];
+				linePaints = new Paint[data.getLinesCount()];
+			}
 			selectionDrawer.setLinesCount(data.getLinesCount());
-			linePaints = new Paint[data.getLinesCount()];
 			for (int i = 0; i < data.getLinesCount(); i++) {
 				linesVisibility[i] = true;
 				linesCalculated[i] = true;
-				linePaints[i] = createLinePaint(data.getColorsInts()[i], data.getType(i) == ChartData.TYPE_BAR);
+				if (linePaints[i] == null) {
+					linePaints[i] = createLinePaint(data.getColorsInts()[i], data.getType(i) == ChartData.TYPE_BAR);
+				} else {
+					setupLinePaint(linePaints[i], data.getColorsInts()[i], data.getType(i) == ChartData.TYPE_BAR);
+				}
 			}
+			dateRangeStart = -1;
+			dateRangeEnd = -1;
 
-			if (isYscaled) {
-				yScale = 1;
-				yIndex = 0;
-				updateYline();
-			}
-			calculateMaxValuesLine();
+			dataLength = data.getLength();
+			acquireDerived();
 			calculateSumsLine();
 			calculateMaxValue2(false, false);
+		}
+		invalidate();
+	}
 
-			chartArray = new float[data.getLength() * 4];
-			if (data.isPercentage()) {
-				chartArray2 = new float[data.getLength() * 4];
-			} else {
-				chartArray2 = null;
+	/**
+	 * Values were removed from the beginning and then added to the beginning or end of the same data.
+	 * Lines state and scroll position are kept.
+	 * @param prepended Count of values added to the beginning.
+	 * @param removed Count of values removed from the beginning.
+	 */
+	public void onDataChanged(int prepended, int removed) {
+		if (data == null) {
+			return;
+		}
+		if (derived == null) {
+			//Detached view, derived values are calculated when it is attached.
+			dataLength = data.getLength();
+			shiftScroll(prepended, removed);
+			return;
+		}
+		dataLength = data.getLength();
+		//Derived values and sums are shared with other views, they are updated once.
+		derived.onDataChanged(prepended, removed);
+		yIndex = Math.max(0, lineScales.findScaledLine());
+		calculateSumsLine();
+		shiftScroll(prepended, removed);
+		calculateDateRange();
+		calculateMaxValue2(false, true);
+		invalidate();
+	}
+
+	/**
+	 * Keep scroll position on the same points when points were added to or removed from the beginning.
+	 */
+	private void shiftScroll(int prepended, int removed) {
+		if (prepended > 0 || removed > 0) {
+			selectionDrawer.hidePanel();
+			scrollStartIndex += prepended - removed;
+			if (scrollStartIndex < 0) {
+				scrollStartIndex = 0;
 			}
+			scrollPos = scrollStartIndex * STEP;
+			selectionDrawer.setScrollPos(scrollStartIndex, STEP);
+			//Indexes of dates are shifted.
+			dateRangeStart = -1;
+			dateRangeEnd = -1;
 		}
-		invalidate();
 	}
 
 	private int cType;
 	private float prevMax;
 	private float prevMin;
 	private int end;
-	private int calcSum;
-	private int calcJ;
-	private int calcI;
+	private int calcStart;
+	private float calcMax;
+	private float calcMin;
 
-	//TODO: optimize this method. There max val should not use all values to calculate max.
 	private void calculateMaxValue2(boolean linearAnim, boolean animate) {
+		if (derived == null) {
+			//Detached view, max value is calculated when it is attached.
+			return;
+		}
 		//TODO: need better solution for type
 //		int type = data.getType(0);
 		cType = data.getType(0);
@@ -1103,31 +1147,27 @@ public class ChartView extends View {
 		} else {
 			minValueCalculated = 0;
 		}
-//		int end = (int) ((scrollPos + WIDTH) / STEP);
 		end = (int) ((scrollPos + WIDTH) / STEP);
-//		int j;
-//		int sum=0;
-		calcSum=0;
+		calcStart = (int) (scrollPos / STEP);
+		if (calcStart < 0) { calcStart = 0; }
+		if (end > data.getLength()) { end = data.getLength(); }
 
-		for (calcI = (int) (scrollPos / STEP); calcI < end; calcI++) {
+		if (calcStart < end) {
 			if (!data.isStacked()) {
-				if (calcI >= 0 && calcI < maxValuesLine.length && maxValuesLine[calcI] > maxValueCalculated) {
-					maxValueCalculated = maxValuesLine[calcI];
+				calcMax = rangeIndex.getMax(calcStart, end, linesCalculated, lineScales);
+				if (calcMax > maxValueCalculated) {
+					maxValueCalculated = calcMax;
 				}
-				if (cType == ChartData.TYPE_LINE && calcI >= 0 && calcI < minValuesLine.length && minValuesLine[calcI] < minValueCalculated) {
-					minValueCalculated = minValuesLine[calcI];
+				if (cType == ChartData.TYPE_LINE) {
+					calcMin = rangeIndex.getMin(calcStart, end, linesCalculated, lineScales);
+					if (calcMin < minValueCalculated) {
+						minValueCalculated = calcMin;
+					}
 				}
 			} else {
-				if (calcI >= 0 && calcI < maxValuesLine.length) {
-					for (calcJ = 0; calcJ < data.getLinesCount(); calcJ++) {
-						if (linesCalculated[calcJ]) {
-							calcSum += data.getVal(calcJ, calcI);
-						}
-					}
-					if (calcSum > maxValueCalculated) {
-						maxValueCalculated = calcSum;
-					}
-					calcSum = 0;
+				calcMax = derived.getStackedSums(linesCalculated).getSumIndex().getMax(calcStart, end);
+				if (calcMax > maxValueCalculated) {
+					maxValueCalculated = calcMax;
 				}
 			}
 		}
@@ -1135,7 +1175,7 @@ public class ChartView extends View {
 			if (animate) {
 				heightAnimator(maxValueCalculated - maxValueVisible, linearAnim);
 			} else {
-				maxValueCalculated = (int) adjustToGrid(maxValueCalculated, GRID_LINES_COUNT);
+				maxValueCalculated = (int) ChartLayout.adjustToGrid(maxValueCalculated, GRID_LINES_COUNT);
 			}
 		}
 		if (prevMin != minValueCalculated) {
@@ -1162,111 +1202,53 @@ public class ChartView extends View {
 			if (!isMoveAnimation && (moveValY != 0 || moveValX != 0)) {
 				moveAnimation(PADD_NORMAL, 0);
 			}
-			end = (int) ((scrollPos + WIDTH) / STEP);
-			totalAdcSum = 0;
 			if (arcSums == null || arcSums.length == 0) {
 				arcSums = new float[data.getLinesCount()];
 			}
-			for (int i = 0; i < arcSums.length; i++) {
-				arcSums[i] = 0;
-			}
-			for (calcI = (int) (scrollPos / STEP); calcI < end; calcI++) {
-				if (calcI >= 0 && calcI < maxValuesLine.length) {
-					for (calcJ = 0; calcJ < data.getLinesCount(); calcJ++) {
-						if (linesVisibility[calcJ]) {
-							if (isAnimating && calcJ == amnimItemIndex) {
-								totalAdcSum += data.getVal(calcJ, calcI) * scaleKoef;
-								arcSums[calcJ] += data.getVal(calcJ, calcI) * scaleKoef;
-							} else {
-								totalAdcSum += data.getVal(calcJ, calcI);
-								arcSums[calcJ] += data.getVal(calcJ, calcI);
-							}
-						}
-					}
-				}
-			}
-			if (totalAdcSum > 0) {
-				for (int i = 0; i < arcSums.length; i++) {
-					arcSums[i] = 360 * arcSums[i] / totalAdcSum;
-				}
-			}
+			ChartLayout.calculateArcs(data, linesVisibility, amnimItemIndex, scaleKoef,
+					(int) (scrollPos / STEP), (int) ((scrollPos + WIDTH) / STEP), arcSums);
 		}
 	}
 
+	/**
+	 * Take values derived from data which are shared with other views of the same data.
+	 */
+	private void acquireDerived() {
+		derived = data.acquireDerived();
+		rangeIndex = derived.getRangeIndex();
+		lineScales = derived.getLineScales();
+		yIndex = Math.max(0, lineScales.findScaledLine());
+		linePyramids = derived.getLinePyramids();
+		lttbCache = derived.getLttbCache();
+	}
+
 	private void updateValueScale() {
 		if (maxValueVisible - minValueVisible > 0) {
 			valueScale = (HEIGHT - HEIGHT_PADDS) / (maxValueVisible - minValueVisible);
 		}
 	}
 
-	private void calculateSumsLine() {
-		sumVals = new float[data.getLength()];
-		int sum = 0;
-		for (int i = 0; i < data.getLength(); i++) {
-			for (int j = 0; j < data.getLinesCount(); j++) {
-				if (linesVisibility[j]) {
-					if (isAnimating && j == amnimItemIndex) {
-						sum += data.getValues(j)[i]*scaleKoef;
-					} else {
-						sum += data.getValues(j)[i];
-					}
-				}
-			}
-			sumVals[i] = (float)sum/100;
-			sum = 0;
-		}
-	}
-
-	private void calculateMaxValuesLine() {
-		maxValuesLine = new int[data.getLength()];
-		minValuesLine = new int[data.getLength()];
-		int max;
-		int min;
-		for (int i = 0; i < data.getLength(); i++) {
-			max = 0;
-			min = Integer.MAX_VALUE;
-			for (int j = 0; j < data.getLinesCount(); j++) {
-				if (linesCalculated[j]) {
-					if (i < data.getLength() && data.getValues(j)[i] > max) {
-						max = data.getValues(j)[i];
-					}
-					if (i < data.getLength() && data.getValues(j)[i] < min) {
-						min = data.getValues(j)[i];
-					}
-				}
-			}
-			maxValuesLine[i] = max;
-			minValuesLine[i] = min;
-		}
+	/**
+	 * Prefix sums of stacked lines shared by views with the same lines state.
+	 */
+	private StackSums updateStackSums() {
+		return derived.getStackedSums(linesCalculated).getStackSums(amnimItemIndex, scaleKoef);
 	}
 
 	/**
-	 * Rescalse samller line to show it full size on Y axis.
+	 * Take totals of visible lines shared by views with the same lines state,
+	 * totals with animated line are calculated by the view.
 	 */
-	private void updateYline() {
-		int globalMax = 0;
-		int yMax = 0;
-		int lineMax;
-		int prevLineMax = Integer.MAX_VALUE;
-		for (int i = 0; i < data.getLinesCount(); i++) {
-			lineMax = 0;
-			for (int j = 0; j < data.getLength(); j++) {
-				if (j < data.getLength() && data.getValues(i)[j] > lineMax) {
-					lineMax = data.getValues(i)[j];
-				}
-			}
-			if (lineMax > globalMax) { globalMax = lineMax; }
-			if (lineMax < prevLineMax) {
-				yIndex = i;
-				yMax = lineMax;
-				prevLineMax = lineMax;
-			}
+	private void calculateSumsLine() {
+		if (derived == null) {
+			//Detached view, sums are taken when it is attached.
+			return;
 		}
-		yScale = (float)globalMax/(float)yMax;
-		int[] v = data.getValues(yIndex);
-		for (int j = 0; j < v.length; j++) {
-//			v[j] = (int)(v[j]* yScale);
-			data.setData((int)(v[j]* yScale), yIndex, j);
+		if (amnimItemIndex >= 0) {
+			animSumVals = ChartLayout.calculateTotals(data, linesVisibility, amnimItemIndex, scaleKoef, animSumVals, 0);
+			sumVals = animSumVals;
+		} else {
+			sumVals = derived.getStackedSums(linesVisibility).getTotals();
 		}
 	}
 
@@ -1288,19 +1270,6 @@ public class ChartView extends View {
 //		}
 //	}
 
-	private float adjustToGrid(float val, int scale) {
-		int amp = 1;
-		while (val > scale*100) {
-			val = val/(scale*10);
-			amp *=(scale*10);
-		}
-		if (val > (scale*10)) {
-			val = (float) Math.ceil(val/scale);
-			amp *=scale;
-		}
-		return (float) Math.ceil(val)*amp;
-	}
-
 	private int findLinePosition(String name) {
 		for (int i = 0; i < data.getLinesCount(); i++) {
 			if (data.getNames()[i].equalsIgnoreCase(name)) {
@@ -1310,28 +1279,21 @@ public class ChartView extends View {
 		return -1;
 	}
 
+	public void setLttbEnabled(boolean enabled) {
+		this.lttbEnabled = enabled;
+		invalidate();
+	}
+
 	public void setOnMoveEventsListener(OnMoveEventsListener onMoveEventsListener) {
 		this.onMoveEventsListener = onMoveEventsListener;
 	}
 
-	private String formatValue(float f) {
-		if (f < 1000.0f) {
-			return format.format((double) f);
-		}
-		stringBuilder.setLength(0);
-		if (f < 1000000.0f) {
-			stringBuilder.append(format.format((double) (f / 1000.0f)));
-			stringBuilder.append("K");
-			return stringBuilder.toString();
-		} else if (f < 1.0E9f) {
-			stringBuilder.append(format.format((double) (f / 1000000.0f)));
-			stringBuilder.append("M");
-			return stringBuilder.toString();
-		} else {
-			stringBuilder.append(format.format((double) (f / 1.0E9f)));
-			stringBuilder.append("B");
-			return stringBuilder.toString();
-		}
+	/**
+	 * Format value into labelBuffer.
+	 * @return formatted text length.
+	 */
+	private int formatValue(float f) {
+		return formatter.formatAbbreviated(f, labelBuffer);
 	}
 
 	public void setOnDetailsListener(OnDetailsListener onDetailsListener) {
@@ -1354,16 +1316,13 @@ public class ChartView extends View {
 		ss.maxValueCalculated = maxValueCalculated;
 		ss.minValueVisible= minValueVisible;
 		ss.minValueCalculated = minValueCalculated;
-		ss.maxValuesLine = maxValuesLine;
-		ss.minValuesLine = minValuesLine;
 		ss.gridValueStep = gridValueStep;
-		ss.dateRange = dateRange;
+		ss.dateRange = new String(dateRange, 0, dateRangeLength);
 		ss.gridCount = gridCount;
 		ss.gridScale = gridScale;
 		ss.gridStep = gridStep;
 		ss.dateRangeHeight = dateRangeHeight;
 		ss.data = data;
-		ss.yScale = yScale;
 		ss.yIndex = yIndex;
 		ss.scale = scale;
 		ss.isYscaled = isYscaled;
@@ -1388,16 +1347,22 @@ public class ChartView extends View {
 		maxValueCalculated = ss.maxValueCalculated;
 		minValueVisible = ss.minValueVisible;
 		minValueCalculated = ss.minValueCalculated;
-		maxValuesLine = ss.maxValuesLine;
-		minValuesLine = ss.minValuesLine;
 		gridValueStep = ss.gridValueStep;
 		dateRangeHeight = ss.dateRangeHeight;
-		dateRange = ss.dateRange;
+		dateRangeLength = 0;
+		dateRangeStart = -1;
+		dateRangeEnd = -1;
+		if (ss.dateRange != null) {
+			appendDateRange(ss.dateRange);
+		}
 		gridCount = ss.gridCount;
 		gridScale = ss.gridScale;
 		gridStep = ss.gridStep;
+		if (derived != null) {
+			derived.release();
+			derived = null;
+		}
 		data = ss.data;
-		yScale = ss.yScale;
 		yIndex = ss.yIndex;
 		scale = ss.scale;
 		isYscaled = ss.isYscaled;
@@ -1405,13 +1370,13 @@ public class ChartView extends View {
 		sumVals = ss.sumVals;
 
 		if (data != null) {
+			dataLength = data.getLength();
+			acquireDerived();
 			selectionDrawer.setLinesCount(data.getLinesCount());
 			linePaints = new Paint[data.getLinesCount()];
 			for (int i = 0; i < data.getLinesCount(); i++) {
 				linePaints[i] = createLinePaint(data.getColorsInts()[i], data.getType(i) == ChartData.TYPE_BAR);
 			}
-			chartArray = new float[data.getLength() * 4];
-			chartArray2 = new float[data.getLength() * 4];
 		}
 		selectionDrawer.hidePanel();
 	}
@@ -1434,7 +1399,7 @@ public class ChartView extends View {
 			in.readBooleanArray(bools);
 			isYscaled = bools[0];
 			isDetailsMode = bools[1];
-			float[] floats = new float[14];
+			float[] floats = new float[13];
 			in.readFloatArray(floats);
 			scrollPos = floats[0];
 			scrollIndex = floats[1];
@@ -1447,14 +1412,11 @@ public class ChartView extends View {
 			dateRangeHeight = floats[8];
 			gridScale = floats[9];
 			gridStep = floats[10];
-			yScale = floats[11];
-			minValueCalculated = floats[12];
-			minValueVisible = floats[13];
+			minValueCalculated = floats[11];
+			minValueVisible = floats[12];
 			gridCount = in.readInt();
 			yIndex = in.readInt();
 			scale = in.readInt();
-			in.readIntArray(maxValuesLine);
-			in.readIntArray(minValuesLine);
 			in.readFloatArray(sumVals);
 			dateRange = in.readString();
 			data = in.readParcelable(ChartData.class.getClassLoader());
@@ -1468,12 +1430,10 @@ public class ChartView extends View {
 			out.writeBooleanArray(new boolean[] {isYscaled, isDetailsMode});
 			out.writeFloatArray(new float[] {scrollPos, scrollIndex, selectionX,
 					valueScale, STEP, maxValueVisible, maxValueCalculated, gridValueStep,
-					dateRangeHeight, gridScale, gridStep, yScale, minValueCalculated, minValueVisible});
+					dateRangeHeight, gridScale, gridStep, minValueCalculated, minValueVisible});
 			out.writeInt(gridCount);
 			out.writeInt(yIndex);
 			out.writeInt(scale);
-			out.writeIntArray(maxValuesLine);
-			out.writeIntArray(minValuesLine);
 			out.writeFloatArray(sumVals);
 			out.writeString(dateRange);
 			out.writeParcelable(data, Parcelable.PARCELABLE_WRITE_RETURN_VALUE);
@@ -1491,8 +1451,6 @@ public class ChartView extends View {
 		float maxValueCalculated;
 		float minValueVisible = 0;
 		float minValueCalculated = 0;
-		int[] maxValuesLine;
-		int[] minValuesLine;
 		float[] sumVals;
 		float gridValueStep;
 		String dateRange;
@@ -1500,7 +1458,6 @@ public class ChartView extends View {
 		float gridScale;
 		float gridStep;
 		int gridCount;
-		float yScale;
 		int yIndex;
 		boolean isYscaled;
 		boolean isDetailsMode;
@@ -1523,5 +1480,15 @@ public class ChartView extends View {
 	public interface OnDetailsListener {
 		void showDetails(int num, long time);
 		void hideDetails(int num);
+		/**
+		 * Scroll reached the edge of details data.
+		 * @param atStart Beginning of the data is reached, the end otherwise.
+		 */
+		void extendDetails(int num, boolean atStart);
+		/**
+		 * Selection settled on a day in overview mode.
+		 * @param times Selected day and its neighbours, 0 when there is no such day. Array is reused.
+		 */
+		void prefetchDetails(int num, long[] times);
 	}
 }
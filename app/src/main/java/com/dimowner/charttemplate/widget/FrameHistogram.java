@@ -0,0 +1,137 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative long values, safe to record from any thread.
+ * Values below 16 have own buckets, bigger values are grouped into 8 buckets per power of two,
+ * so percentiles are accurate to 12.5%.
+ */
+public class FrameHistogram {
+
+	private static final int LINEAR_BUCKETS = 16;
+	private static final int SUB_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	/** Exponent of the first not linear bucket, 2^4 = 16. */
+	private static final int MIN_EXPONENT = 4;
+	private static final int BUCKETS_COUNT = LINEAR_BUCKETS + (63 - MIN_EXPONENT) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long prev = max.get();
+		while (value > prev && !max.compareAndSet(prev, value)) {
+			prev = max.get();
+		}
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	public double getMean() {
+		long c = count.get();
+		return c > 0 ? (double) sum.get() / c : 0;
+	}
+
+	/**
+	 * Upper bound of the bucket containing the percentile.
+	 * @param percentile Value in range [0, 100].
+	 */
+	public long getPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(getUpperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public int getBucketsCount() {
+		return BUCKETS_COUNT;
+	}
+
+	public long getBucketCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * Smallest value of the bucket.
+	 */
+	public long getLowerBound(int bucket) {
+		if (bucket < LINEAR_BUCKETS) {
+			return bucket;
+		}
+		int exponent = MIN_EXPONENT + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+		long sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+		return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * Biggest value of the bucket.
+	 */
+	public long getUpperBound(int bucket) {
+		return bucket + 1 < BUCKETS_COUNT ? getLowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Counts recorded concurrently with reset may be lost.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS_COUNT; i++) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	private static int bucketOf(long value) {
+		if (value < LINEAR_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return LINEAR_BUCKETS + (exponent - MIN_EXPONENT) * SUB_BUCKETS + sub;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.widget;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in frame timing of chart views: onDraw duration, latency from input changing the view
+ * (scroll position, data or lines change) to the end of the next frame, points laid out per frame
+ * and count of frames drawn while animations run.
+ * Views of the same kind share stats. Recording is disabled by default and costs nothing then.
+ * Stats can be dumped or exported from any thread.
+ */
+public class FrameStats {
+
+	/** Frame of a view which does not lay out chart points. */
+	public static final int NO_POINTS = -1;
+
+	private static volatile boolean enabled = false;
+	private static final List<FrameStats> all = new ArrayList<>();
+
+	private final String name;
+	private final FrameHistogram drawTime = new FrameHistogram();
+	private final FrameHistogram latency = new FrameHistogram();
+	private final FrameHistogram points = new FrameHistogram();
+	private final AtomicLong frames = new AtomicLong();
+	private final AtomicLong animationFrames = new AtomicLong();
+
+	private FrameStats(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Stats shared by views with the same name.
+	 */
+	public static FrameStats get(String name) {
+		synchronized (all) {
+			for (int i = 0; i < all.size(); i++) {
+				if (all.get(i).name.equals(name)) {
+					return all.get(i);
+				}
+			}
+			FrameStats stats = new FrameStats(name);
+			all.add(stats);
+			return stats;
+		}
+	}
+
+	public static void setEnabled(boolean enabled) {
+		FrameStats.enabled = enabled;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Current time in nanoseconds or 0 when stats are disabled, start of a frame or an update.
+	 */
+	public static long now() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Record frame which has just been drawn.
+	 * @param frameStart Time returned by {@link #now()} at the beginning of onDraw, frame is ignored when 0.
+	 * @param updateTime Time of the first input since the previous frame or 0.
+	 * @param count Count of points laid out or {@link #NO_POINTS}.
+	 * @param animating Frame is drawn by a running animation.
+	 */
+	public void onFrame(long frameStart, long updateTime, int count, boolean animating) {
+		if (frameStart == 0) {
+			return;
+		}
+		long end = System.nanoTime();
+		drawTime.record(end - frameStart);
+		if (updateTime != 0) {
+			latency.record(end - updateTime);
+		}
+		if (count != NO_POINTS) {
+			points.record(count);
+		}
+		frames.incrementAndGet();
+		if (animating) {
+			animationFrames.incrementAndGet();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Duration of onDraw in nanoseconds. */
+	public FrameHistogram getDrawTime() {
+		return drawTime;
+	}
+
+	/** Time from input to the end of the frame showing it in nanoseconds. */
+	public FrameHistogram getLatency() {
+		return latency;
+	}
+
+	/** Points laid out per frame. */
+	public FrameHistogram getPoints() {
+		return points;
+	}
+
+	public long getFrames() {
+		return frames.get();
+	}
+
+	public long getAnimationFrames() {
+		return animationFrames.get();
+	}
+
+	public void reset() {
+		drawTime.reset();
+		latency.reset();
+		points.reset();
+		frames.set(0);
+		animationFrames.set(0);
+	}
+
+	/**
+	 * Human readable summary, times are in milliseconds.
+	 */
+	public String dump() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(name).append(": frames=").append(frames.get())
+				.append(" animationFrames=").append(animationFrames.get()).append('\n');
+		appendSummary(sb, "  draw ms", drawTime, true);
+		appendSummary(sb, "  latency ms", latency, true);
+		appendSummary(sb, "  points", points, false);
+		return sb.toString();
+	}
+
+	/**
+	 * Stats as JSON object with not empty histogram buckets as [lower bound, count] pairs.
+	 */
+	public String export() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"name\":\"").append(name).append('"')
+				.append(",\"frames\":").append(frames.get())
+				.append(",\"animationFrames\":").append(animationFrames.get());
+		appendJson(sb, "drawTimeNs", drawTime);
+		appendJson(sb, "latencyNs", latency);
+		appendJson(sb, "points", points);
+		return sb.append('}').toString();
+	}
+
+	public static String dumpAll() {
+		StringBuilder sb = new StringBuilder();
+		for (FrameStats stats : copyAll()) {
+			sb.append(stats.dump());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Stats of all views as JSON array.
+	 */
+	public static String exportAll() {
+		StringBuilder sb = new StringBuilder("[");
+		List<FrameStats> list = copyAll();
+		for (int i = 0; i < list.size(); i++) {
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append(list.get(i).export());
+		}
+		return sb.append(']').toString();
+	}
+
+	public static void resetAll() {
+		for (FrameStats stats : copyAll()) {
+			stats.reset();
+		}
+	}
+
+	private static List<FrameStats> copyAll() {
+		synchronized (all) {
+			return new ArrayList<>(all);
+		}
+	}
+
+	private static void appendSummary(StringBuilder sb, String title, FrameHistogram h, boolean nanos) {
+		sb.append(title).append(": count=").append(h.getCount())
+				.append(" mean=").append(format(h.getMean(), nanos))
+				.append(" p50=").append(format(h.getPercentile(50), nanos))
+				.append(" p90=").append(format(h.getPercentile(90), nanos))
+				.append(" p99=").append(format(h.getPercentile(99), nanos))
+				.append(" max=").append(format(h.getMax(), nanos)).append('\n');
+	}
+
+	private static String format(double value, boolean nanos) {
+		if (nanos) {
+			return String.format(Locale.US, "%.2f", value / TimeUnit.MILLISECONDS.toNanos(1));
+		}
+		return String.format(Locale.US, "%.0f", value);
+	}
+
+	private static void appendJson(StringBuilder sb, String key, FrameHistogram h) {
+		sb.append(",\"").append(key).append("\":{\"count\":").append(h.getCount())
+				.append(",\"max\":").append(h.getMax())
+				.append(",\"buckets\":[");
+		boolean first = true;
+		for (int i = 0; i < h.getBucketsCount(); i++) {
+			long c = h.getBucketCount(i);
+			if (c > 0) {
+				if (!first) {
+					sb.append(',');
+				}
+				sb.append('[').append(h.getLowerBound(i)).append(',').append(c).append(']');
+				first = false;
+			}
+		}
+		sb.append("]}");
+	}
+}
@@ -170,6 +170,36 @@ public class ItemView extends LinearLayout implements
 		}
 	}
 
+	/**
+	 * Values were removed from the beginning and then added to the beginning or end of the shown data.
+	 * @param prepended Count of values added to the beginning.
+	 * @param removed Count of values removed from the beginning, see {@link ChartData#setWindow(int, long, int)}.
+	 */
+	public void onDataChanged(ChartData d, int prepended, int removed) {
+		chartView.onDataChanged(prepended, removed);
+		chartScrollView.onDataChanged(prepended, removed);
+		chartScrollOverlayView.onDataChanged(d.getLength(), prepended, removed);
+	}
+
+	/**
+	 * Keep the end of data shown when points are appended while the end is shown.
+	 */
+	public void setFollowTail(boolean followTail) {
+		chartScrollOverlayView.setFollowTail(followTail);
+	}
+
+	/**
+	 * Use LTTB downsampling instead of min/max pyramid for line charts. Disabled by default.
+	 */
+	public void setLttbEnabled(boolean enabled) {
+		chartView.setLttbEnabled(enabled);
+		chartScrollView.setLttbEnabled(enabled);
+	}
+
+	public void setOverviewBitmapCacheEnabled(boolean enabled) {
+		chartScrollView.setBitmapCacheEnabled(enabled);
+	}
+
 	public void setOnDetailsListener(ChartView.OnDetailsListener listener) {
 		chartView.setOnDetailsListener(listener);
 	}
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.model;
+
+import com.dimowner.charttemplate.core.MinMaxPyramid;
+import com.dimowner.charttemplate.core.RangeIndex;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ChartDataTest {
+
+	private static final int MAX_POINTS = 50;
+	private static final int EVICT_BATCH = 8;
+
+	@Test
+	public void windowKeepsLastPoints() {
+		ChartData data = createData(10);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		long[] time = data.getTime();
+		int[] values = new int[2];
+		for (int t = 10; t < 500; t++) {
+			values[0] = t;
+			values[1] = -t;
+			data.append(t, values);
+			int length = data.getLength();
+			assertTrue(length >= Math.min(t + 1, MAX_POINTS) && length < MAX_POINTS + EVICT_BATCH);
+			for (int i = 0; i < length; i++) {
+				assertEquals(t - length + 1 + i, data.getTime(i));
+				assertEquals(t - length + 1 + i, data.getVal(0, i));
+				assertEquals(-(t - length + 1 + i), data.getVal(1, i));
+			}
+		}
+		//Arrays are allocated for the window once.
+		assertSame(time, data.getTime());
+	}
+
+	@Test
+	public void windowRemovesOldPoints() {
+		ChartData data = createData(10);
+		data.setWindow(0, 100, EVICT_BATCH);
+		int[] values = new int[2];
+		for (int t = 10; t < 500; t++) {
+			data.append(t * 10, values);
+			//Points older than 100 ms are removed by batches.
+			assertTrue(data.getTime(0) >= t * 10 - 100 - EVICT_BATCH * 10);
+			assertTrue(data.getTime(0) <= t * 10 - 100 || t < 20);
+		}
+	}
+
+	@Test
+	public void defaultWindowMovesValuesOncePerMaxPoints() {
+		ChartData data = createData(10);
+		data.setWindow(MAX_POINTS, 0);
+		int[] values = new int[2];
+		int moves = 0;
+		int removed = 0;
+		int prevStart = data.getStart();
+		for (int t = 10; t < 10000; t++) {
+			removed += data.append(t, values);
+			if (data.getStart() < prevStart) {
+				moves++;
+			}
+			prevStart = data.getStart();
+			assertTrue(data.getLength() < MAX_POINTS + MAX_POINTS / 2);
+			assertEquals(t, data.getTime(data.getLength() - 1));
+		}
+		//Points are removed by batches of half of the window.
+		assertTrue(removed > 10000 - 2 * MAX_POINTS);
+		assertTrue(moves <= 10000 / MAX_POINTS);
+	}
+
+	@Test
+	public void labelsStayCachedWhenWindowSlides() {
+		ChartData data = createData(10);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		int[] values = new int[2];
+		for (int t = 10; t < MAX_POINTS; t++) {
+			data.append(t, values);
+		}
+		String label = data.getTimesShort(data.getLength() - 1);
+		long time = data.getTime(data.getLength() - 1);
+		int removed = 0;
+		for (int t = MAX_POINTS; removed == 0; t++) {
+			removed = data.append(t, values);
+		}
+		assertSame(label, data.getTimesShort((int) (time - data.getTime(0))));
+	}
+
+	@Test
+	public void derivedValuesMatchScanAfterEvictions() {
+		ChartData data = createData(10);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		ChartDerivedData derived = data.acquireDerived();
+		Random random = new Random(1);
+		int[] values = new int[2];
+		boolean[] lines = {true, true};
+		for (int t = 10; t < 500; t++) {
+			int removed = 0;
+			for (int k = random.nextInt(5); k >= 0; k--) {
+				values[0] = random.nextInt(1000);
+				values[1] = random.nextInt(1000) - 500;
+				removed += data.append(t, values);
+			}
+			derived.onDataChanged(0, removed);
+
+			int length = data.getLength();
+			RangeIndex index = derived.getRangeIndex();
+			for (int from = 0; from < length; from += 7) {
+				assertEquals(scanMax(data, from, length), index.getMax(from, length, lines));
+				assertEquals(scanMin(data, from, length), index.getMin(from, length, lines));
+			}
+			MinMaxPyramid pyramid = derived.getLinePyramids()[0];
+			int level = pyramid.getLevelsCount() - 1;
+			int max = Integer.MIN_VALUE;
+			for (int b = 0; b < pyramid.getBucketsCount(level); b++) {
+				max = Math.max(max, pyramid.getMax(level, b));
+			}
+			assertEquals(index.getLineMax(0, 0, length), max);
+		}
+		derived.release();
+	}
+
+	@Test
+	public void prependReusesFreeSpace() {
+		ChartData data = createData(10);
+		ChartDerivedData derived = data.acquireDerived();
+		long[] t = new long[1];
+		int[][] cols = new int[2][1];
+		int reallocations = 0;
+		for (int i = -1; i >= -1000; i--) {
+			long[] time = data.getTime();
+			t[0] = i;
+			cols[0][0] = i * 7 % 100;
+			cols[1][0] = -i;
+			data.prepend(t, cols, 0, 1);
+			derived.onDataChanged(1, 0);
+			if (time != data.getTime()) {
+				reallocations++;
+			}
+			assertEquals(i, data.getTime(0));
+			assertEquals(i * 7 % 100, data.getVal(0, 0));
+			assertEquals(9, data.getVal(0, data.getLength() - 1));
+		}
+		//Free space before values grows with data.
+		assertTrue(reallocations < 10);
+		boolean[] lines = {true, true};
+		RangeIndex index = derived.getRangeIndex();
+		for (int from = 0; from < data.getLength(); from += 37) {
+			assertEquals(scanMax(data, from, data.getLength()), index.getMax(from, data.getLength(), lines));
+			assertEquals(scanMin(data, 0, from + 1), index.getMin(0, from + 1, lines));
+		}
+		derived.release();
+	}
+
+	/**
+	 * Render thread reads a snapshot of data while appends remove points and make room for new ones.
+	 */
+	@Test
+	public void snapshotIsNotChangedByAppendsWhileRead() throws Exception {
+		ChartData data = createData(MAX_POINTS);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		final ChartData copy = data.snapshot();
+		final boolean[] lines = {true, true};
+		final int[] failures = new int[1];
+		Thread render = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int k = 0; k < 200; k++) {
+					RangeIndex index = new RangeIndex(copy.getColumns(), copy.getStart(), copy.getLength(), null);
+					if (index.getMax(0, copy.getLength(), lines) != MAX_POINTS - 1
+							|| index.getMin(0, copy.getLength(), lines) != -(MAX_POINTS - 1)
+							|| copy.getTime(0) != 0) {
+						failures[0]++;
+					}
+				}
+			}
+		});
+		render.start();
+		int[] values = new int[2];
+		for (int t = MAX_POINTS; t < 5000; t++) {
+			values[0] = t * 2;
+			values[1] = -t * 2;
+			data.append(t, values);
+		}
+		render.join();
+		assertEquals(0, failures[0]);
+		assertEquals(MAX_POINTS, copy.getLength());
+		for (int i = 0; i < MAX_POINTS; i++) {
+			assertEquals(i, copy.getTime(i));
+			assertEquals(i, copy.getVal(0, i));
+		}
+	}
+
+	@Test
+	public void derivedIsDroppedWhenAllViewsReleaseIt() {
+		ChartData data = createData(100);
+		ChartDerivedData first = data.acquireDerived();
+		assertSame(first, data.acquireDerived());
+		assertEquals(2, first.getRefCount());
+		first.release();
+		first.release();
+		assertEquals(0, first.getRefCount());
+		ChartDerivedData second = data.acquireDerived();
+		assertNotSame(first, second);
+		assertEquals(1, second.getRefCount());
+		second.release();
+	}
+
+	@Test
+	public void stackedSumsAreSharedByLinesState() {
+		ChartData data = createStackedData(100);
+		ChartDerivedData derived = data.acquireDerived();
+		StackedSums all = derived.getStackedSums(new boolean[] {true, true});
+		assertSame(all, derived.getStackedSums(new boolean[] {true, true}));
+		StackedSums first = derived.getStackedSums(new boolean[] {true, false});
+		assertNotSame(all, first);
+		assertSame(all, derived.getStackedSums(new boolean[] {true, true}));
+		assertEquals(99, first.getSumIndex().getMax(0, 100));
+		assertEquals(99 + 2 * 99, all.getSumIndex().getMax(0, 100));
+		derived.release();
+	}
+
+	@Test
+	public void stackedSumsMatchScanAfterEvictions() {
+		ChartData data = createStackedData(10);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		ChartDerivedData derived = data.acquireDerived();
+		boolean[] lines = {true, false};
+		boolean[] all = {true, true};
+		//Sums are taken before appends, so they are updated incrementally.
+		derived.getStackedSums(all).getTotals();
+		derived.getStackedSums(lines).getTotals();
+		Random random = new Random(1);
+		int[] values = new int[2];
+		for (int t = 10; t < 500; t++) {
+			int removed = 0;
+			for (int k = random.nextInt(5); k >= 0; k--) {
+				values[0] = random.nextInt(1000);
+				values[1] = random.nextInt(1000);
+				removed += data.append(t, values);
+			}
+			derived.onDataChanged(0, removed);
+
+			int length = data.getLength();
+			StackedSums sums = derived.getStackedSums(t % 2 == 0 ? all : lines);
+			boolean both = t % 2 == 0;
+			float[] totals = sums.getTotals();
+			int max = Integer.MIN_VALUE;
+			for (int i = 0; i < length; i++) {
+				int sum = data.getVal(0, i) + (both ? data.getVal(1, i) : 0);
+				max = Math.max(max, sum);
+				assertEquals(sum / 100f, totals[i], 0.0001f);
+				assertEquals(sum, sums.getStackSums(-1, 1).get(1, i));
+			}
+			assertEquals(max, sums.getSumIndex().getMax(0, length));
+		}
+		derived.release();
+	}
+
+	@Test
+	public void snapshotTellsRemovedPoints() {
+		ChartData data = createData(MAX_POINTS);
+		data.setWindow(MAX_POINTS, 0, EVICT_BATCH);
+		ChartData first = data.snapshot();
+		assertSame(data.getTime(), first.getTime());
+		int[] values = new int[2];
+		int removed = 0;
+		for (int t = MAX_POINTS; t < 3 * MAX_POINTS; t++) {
+			removed += data.append(t, values);
+			ChartData next = data.snapshot();
+			//Nothing is left of the first snapshot when all its points are removed.
+			assertEquals(removed < MAX_POINTS ? removed : -1, next.getRemovedSince(first));
+			assertEquals(0, next.getRemovedSince(data.snapshot()));
+			for (int i = 0; i < MAX_POINTS - removed; i++) {
+				assertEquals(first.getTime(i + removed), next.getTime(i));
+			}
+		}
+		assertEquals(-1, data.getRemovedSince(createData(10).snapshot()));
+		ChartData last = data.snapshot();
+		data.prepend(new long[] {-1}, new int[][] {{0}, {0}}, 0, 1);
+		assertEquals(-1, data.getRemovedSince(last));
+	}
+
+	private static ChartData createData(int length) {
+		long[] time = new long[length];
+		int[][] columns = new int[2][length];
+		for (int i = 0; i < length; i++) {
+			time[i] = i;
+			columns[0][i] = i;
+			columns[1][i] = -i;
+		}
+		return new ChartData(false, 0, time, columns, new String[] {"y0", "y1"},
+				new String[] {"line", "line"}, new String[] {"#3DC23F", "#F34C44"}, false, false, false);
+	}
+
+	private static ChartData createStackedData(int length) {
+		long[] time = new long[length];
+		int[][] columns = new int[2][length];
+		for (int i = 0; i < length; i++) {
+			time[i] = i;
+			columns[0][i] = i;
+			columns[1][i] = 2 * i;
+		}
+		return new ChartData(false, 0, time, columns, new String[] {"y0", "y1"},
+				new String[] {"bar", "bar"}, new String[] {"#3DC23F", "#F34C44"}, false, false, true);
+	}
+
+	private static int scanMax(ChartData data, int from, int to) {
+		int max = Integer.MIN_VALUE;
+		for (int j = 0; j < data.getLinesCount(); j++) {
+			for (int i = from; i < to; i++) {
+				max = Math.max(max, data.getVal(j, i));
+			}
+		}
+		return max;
+	}
+
+	private static int scanMin(ChartData data, int from, int to) {
+		int min = Integer.MAX_VALUE;
+		for (int j = 0; j < data.getLinesCount(); j++) {
+			for (int i = from; i < to; i++) {
+				min = Math.min(min, data.getVal(j, i));
+			}
+		}
+		return min;
+	}
+}
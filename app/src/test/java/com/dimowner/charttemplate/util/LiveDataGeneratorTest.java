@@ -0,0 +1,82 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.util;
+
+import com.dimowner.charttemplate.core.LttbCache;
+import com.dimowner.charttemplate.model.ChartData;
+import com.dimowner.charttemplate.model.ChartDerivedData;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LiveDataGeneratorTest {
+
+	private static final int MAX_POINTS = 400;
+
+	@Test
+	public void generatedPointsContinueData() {
+		ChartData data = createData(10);
+		LiveDataGenerator generator = new LiveDataGenerator(data, 5, 1);
+		generator.generate(20);
+		assertEquals(30, data.getLength());
+		for (int i = 10; i < data.getLength(); i++) {
+			assertEquals(data.getTime(i - 1) + 5, data.getTime(i));
+		}
+	}
+
+	/**
+	 * Derived data updated after each append selects the same LTTB points as a cache built from scratch.
+	 */
+	@Test
+	public void appendedLttbMatchesFullSelection() {
+		final ChartData data = createData(10);
+		data.setWindow(MAX_POINTS, 0, 50);
+		final ChartDerivedData derived = data.acquireDerived();
+		LiveDataGenerator generator = new LiveDataGenerator(data, 1000, 2);
+		generator.setOnAppendListener(new LiveDataGenerator.OnAppendListener() {
+			@Override
+			public void onAppend(ChartData d, int count, int removed) {
+				derived.onDataChanged(0, removed);
+			}
+		});
+		for (int step = 0; step < 200; step++) {
+			generator.generate(1 + step % 7);
+			LttbCache cache = derived.getLttbCache();
+			LttbCache full = new LttbCache(data.getColumns(), data.getStart(), data.getLength());
+			for (int zoom = 0; zoom <= full.chooseZoom(0); zoom++) {
+				for (int line = 0; line < data.getLinesCount(); line++) {
+					assertArrayEquals(full.getIndexes(line, zoom), cache.getIndexes(line, zoom));
+				}
+			}
+		}
+		derived.release();
+	}
+
+	private static ChartData createData(int length) {
+		long[] time = new long[length];
+		int[][] columns = new int[2][length];
+		for (int i = 0; i < length; i++) {
+			time[i] = i;
+			columns[0][i] = 100 + i;
+			columns[1][i] = 200 - i;
+		}
+		return new ChartData(false, 0, time, columns, new String[] {"y0", "y1"},
+				new String[] {"line", "line"}, new String[] {"#3DC23F", "#F34C44"}, false, false, false);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartBinaryFormat;
+import com.dimowner.charttemplate.core.ChartDataParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of a chart: streaming JSON parsing versus reading of {@link ChartBinaryFormat} file.
+ * Binary file is read either with values copied into arrays or as mapped column views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChartFormatBenchmark {
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private ArrayChartModel chart;
+	private String[] names;
+	private String[] types;
+	private String[] colors;
+	private byte[] json;
+	private File file;
+
+	@Setup
+	public void setup() throws IOException {
+		chart = Charts.create(source, Charts.LINES, points);
+		json = Charts.toJson(chart);
+		names = new String[chart.getLinesCount()];
+		types = new String[chart.getLinesCount()];
+		colors = new String[chart.getLinesCount()];
+		for (int j = 0; j < names.length; j++) {
+			names[j] = "Line " + j;
+			types[j] = "line";
+			colors[j] = "#3DC23F";
+		}
+		file = File.createTempFile("chart", ".bin");
+		ChartBinaryFormat.write(chart, names, types, colors, new FileOutputStream(file));
+	}
+
+	@TearDown
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Benchmark
+	public ArrayChartModel parseJson() throws IOException {
+		return ChartDataParser.parse(new ByteArrayInputStream(json), Charts.FACTORY);
+	}
+
+	@Benchmark
+	public ArrayChartModel readBinary() throws IOException {
+		return ChartBinaryFormat.read(file, Charts.FACTORY);
+	}
+
+	/**
+	 * Max value of the first line read through mapped view without copying values.
+	 */
+	@Benchmark
+	public int mapBinary() throws IOException {
+		IntBuffer column = ChartBinaryFormat.map(file).getColumn(0);
+		int max = Integer.MIN_VALUE;
+		for (int i = 0; i < column.limit(); i++) {
+			max = Math.max(max, column.get(i));
+		}
+		return max;
+	}
+
+	@Benchmark
+	public int writeBinary() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(points * 4 * (chart.getLinesCount() + 1));
+		ChartBinaryFormat.write(chart, names, types, colors, out);
+		return out.size();
+	}
+}
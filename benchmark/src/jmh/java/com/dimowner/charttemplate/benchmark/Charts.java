@@ -0,0 +1,197 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartDataParser;
+import com.dimowner.charttemplate.core.ChartModel;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Random;
+
+/**
+ * Charts of benchmarks, either synthetic random walk or bundled contest chart repeated to the required size.
+ */
+public class Charts {
+
+	public static final String SYNTHETIC = "synthetic";
+	public static final String CONTEST = "contest";
+
+	/** Two lines, contest chart 1. */
+	public static final int LINES = 1;
+	/** Seven stacked bars, contest chart 3. */
+	public static final int STACKED_BARS = 3;
+	/** Six stacked percentage areas, contest chart 5. */
+	public static final int PERCENTAGE_AREA = 5;
+
+	/** Directory of contest charts, set by benchmark build script. */
+	private static final String ASSETS_PROPERTY = "chart.assets";
+	private static final String OVERVIEW = "overview.json";
+	private static final long TIME_STEP = 24 * 60 * 60 * 1000L;
+	private static final long START_TIME = 1522540800000L;
+	private static final int START_VALUE = 100;
+	private static final long SEED = 42;
+
+	public static final ChartDataParser.ChartFactory<ArrayChartModel> FACTORY =
+			new ChartDataParser.ChartFactory<ArrayChartModel>() {
+				@Override
+				public ArrayChartModel create(long[] time, int[][] columns, String[] names, String[] types,
+														String[] colors, boolean yScaled, boolean percentage, boolean stacked) {
+					return new ArrayChartModel(time, columns, ArrayChartModel.parseTypes(types),
+							yScaled, percentage, stacked);
+				}
+			};
+
+	private Charts() {}
+
+	/**
+	 * @param source {@link #SYNTHETIC} or {@link #CONTEST}.
+	 * @param kind {@link #LINES}, {@link #STACKED_BARS} or {@link #PERCENTAGE_AREA}.
+	 */
+	public static ArrayChartModel create(String source, int kind, int points) throws IOException {
+		if (CONTEST.equals(source)) {
+			return repeat(loadContest(kind), points);
+		}
+		switch (kind) {
+			case STACKED_BARS:
+				return generate(points, 7, ChartModel.TYPE_BAR, true, false);
+			case PERCENTAGE_AREA:
+				return generate(points, 6, ChartModel.TYPE_AREA, true, true);
+			default:
+				return generate(points, 2, ChartModel.TYPE_LINE, false, false);
+		}
+	}
+
+	/**
+	 * Lines values make a random walk, the same values are generated on each call.
+	 */
+	public static ArrayChartModel generate(int points, int lines, int type, boolean stacked, boolean percentage) {
+		Random random = new Random(SEED);
+		long[] time = new long[points];
+		int[][] columns = new int[lines][points];
+		int[] types = new int[lines];
+		for (int j = 0; j < lines; j++) {
+			types[j] = type;
+			int value = START_VALUE;
+			for (int i = 0; i < points; i++) {
+				int step = Math.max(1, value / 10);
+				value = Math.max(0, value + random.nextInt(2 * step + 1) - step);
+				columns[j][i] = value;
+			}
+		}
+		for (int i = 0; i < points; i++) {
+			time[i] = START_TIME + i * TIME_STEP;
+		}
+		return new ArrayChartModel(time, columns, types, false, percentage, stacked);
+	}
+
+	/**
+	 * Load overview of the contest chart from directory set by "chart.assets" system property.
+	 */
+	public static ArrayChartModel loadContest(int chartNum) throws IOException {
+		String dir = System.getProperty(ASSETS_PROPERTY);
+		if (dir == null) {
+			throw new IOException("System property " + ASSETS_PROPERTY + " is not set");
+		}
+		File file = new File(new File(dir, String.valueOf(chartNum)), OVERVIEW);
+		return ChartDataParser.parse(new FileInputStream(file), FACTORY);
+	}
+
+	/**
+	 * Repeat chart values until count of points is reached, time keeps the chart time step.
+	 */
+	public static ArrayChartModel repeat(ArrayChartModel chart, int points) {
+		int length = chart.getLength();
+		long step = length > 1 ? chart.getTime()[1] - chart.getTime()[0] : TIME_STEP;
+		long[] time = new long[points];
+		int[][] columns = new int[chart.getLinesCount()][points];
+		int[] types = new int[chart.getLinesCount()];
+		for (int i = 0; i < points; i++) {
+			time[i] = chart.getTime()[0] + i * step;
+		}
+		for (int j = 0; j < columns.length; j++) {
+			types[j] = chart.getType(j);
+			int[] values = chart.getValues(j);
+			for (int i = 0; i < points; i++) {
+				columns[j][i] = values[i % length];
+			}
+		}
+		return new ArrayChartModel(time, columns, types, chart.isYscaled(), chart.isPercentage(), chart.isStacked());
+	}
+
+	/**
+	 * Write chart in the contest JSON format.
+	 */
+	public static byte[] toJson(ChartModel chart) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, "UTF-8"));
+		writer.beginObject();
+		writer.name("columns").beginArray();
+		writer.beginArray().value("x");
+		for (int i = 0; i < chart.getLength(); i++) {
+			writer.value(chart.getTime()[i]);
+		}
+		writer.endArray();
+		for (int j = 0; j < chart.getLinesCount(); j++) {
+			writer.beginArray().value("y" + j);
+			int[] values = chart.getValues(j);
+			for (int i = 0; i < chart.getLength(); i++) {
+				writer.value(values[i]);
+			}
+			writer.endArray();
+		}
+		writer.endArray();
+		writer.name("types").beginObject();
+		for (int j = 0; j < chart.getLinesCount(); j++) {
+			writer.name("y" + j).value(typeName(chart.getType(j)));
+		}
+		writer.name("x").value("x");
+		writer.endObject();
+		writer.name("names").beginObject();
+		for (int j = 0; j < chart.getLinesCount(); j++) {
+			writer.name("y" + j).value("Line " + j);
+		}
+		writer.endObject();
+		writer.name("colors").beginObject();
+		for (int j = 0; j < chart.getLinesCount(); j++) {
+			writer.name("y" + j).value("#3DC23F");
+		}
+		writer.endObject();
+		writer.name("y_scaled").value(chart.isYscaled());
+		writer.name("percentage").value(chart.isPercentage());
+		writer.name("stacked").value(chart.isStacked());
+		writer.endObject();
+		writer.close();
+		return out.toByteArray();
+	}
+
+	private static String typeName(int type) {
+		switch (type) {
+			case ChartModel.TYPE_BAR:
+				return "bar";
+			case ChartModel.TYPE_AREA:
+				return "area";
+			default:
+				return "line";
+		}
+	}
+}
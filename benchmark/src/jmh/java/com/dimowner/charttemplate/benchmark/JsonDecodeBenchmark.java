@@ -0,0 +1,81 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartDataParser;
+import com.dimowner.charttemplate.core.Data;
+import com.google.gson.Gson;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of contest JSON: Gson object mapping into {@link Data} and conversion into primitive arrays
+ * versus streaming {@link ChartDataParser}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonDecodeBenchmark {
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private byte[] json;
+	private final Gson gson = new Gson();
+
+	@Setup
+	public void setup() throws IOException {
+		json = Charts.toJson(Charts.create(source, Charts.LINES, points));
+	}
+
+	@Benchmark
+	public ArrayChartModel gsonData() throws IOException {
+		InputStreamReader reader = new InputStreamReader(new ByteArrayInputStream(json), "UTF-8");
+		Data data = gson.fromJson(reader, Data.class);
+		reader.close();
+		String[] keys = data.getColumnsKeys();
+		int[][] columns = new int[keys.length][];
+		String[] types = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			columns[i] = data.getValues(keys[i]);
+			types[i] = data.getType(keys[i]);
+		}
+		return new ArrayChartModel(data.getTimeArray(), columns, ArrayChartModel.parseTypes(types),
+				data.isYscaled(), data.isPercentage(), data.isStacked());
+	}
+
+	@Benchmark
+	public ArrayChartModel streamingParser() throws IOException {
+		return ChartDataParser.parse(new ByteArrayInputStream(json), Charts.FACTORY);
+	}
+}
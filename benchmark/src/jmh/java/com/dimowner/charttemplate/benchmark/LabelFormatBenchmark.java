@@ -0,0 +1,91 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.NumberFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting of values labels: {@link NumberFormatter} into reused buffer versus DecimalFormat strings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LabelFormatBenchmark {
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private int[] values;
+	private NumberFormatter formatter;
+	private DecimalFormat decimalFormat;
+	private final char[] buffer = new char[NumberFormatter.MAX_LENGTH];
+
+	@Setup
+	public void setup() throws IOException {
+		ArrayChartModel chart = Charts.create(source, Charts.LINES, points);
+		values = chart.getValues(0);
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.US);
+		formatter = new NumberFormatter(symbols.getGroupingSeparator(), symbols.getDecimalSeparator());
+		decimalFormat = new DecimalFormat("#,##0.#", symbols);
+	}
+
+	@Benchmark
+	public int numberFormatter() {
+		int length = 0;
+		for (int i = 0; i < points; i++) {
+			length += formatter.format(values[i], buffer, 0);
+		}
+		return length;
+	}
+
+	@Benchmark
+	public int numberFormatterAbbreviated() {
+		int length = 0;
+		for (int i = 0; i < points; i++) {
+			length += formatter.formatAbbreviated(values[i], buffer);
+		}
+		return length;
+	}
+
+	@Benchmark
+	public int decimalFormat() {
+		int length = 0;
+		for (int i = 0; i < points; i++) {
+			length += decimalFormat.format(values[i]).length();
+		}
+		return length;
+	}
+}
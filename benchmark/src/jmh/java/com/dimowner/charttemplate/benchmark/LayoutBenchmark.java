@@ -0,0 +1,148 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartLayout;
+import com.dimowner.charttemplate.core.LttbCache;
+import com.dimowner.charttemplate.core.MinMaxPyramid;
+import com.dimowner.charttemplate.core.StackSums;
+import com.dimowner.charttemplate.core.Viewport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates generation of drawChart and drawBars for one frame showing the whole chart
+ * on a phone wide view, the worst case of both views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LayoutBenchmark {
+
+	private static final float WIDTH = 1080;
+	private static final float HEIGHT = 800;
+	private static final float PADDING = 42;
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private ArrayChartModel lines;
+	private ArrayChartModel stacked;
+	private ArrayChartModel area;
+	private MinMaxPyramid pyramid;
+	private LttbCache lttbCache;
+	private StackSums stackSums;
+	private StackSums areaSums;
+	private float[] totals;
+	private final Viewport viewport = new Viewport();
+	private final ChartLayout layout = new ChartLayout();
+	private float[] buffer;
+
+	@Setup
+	public void setup() throws IOException {
+		lines = Charts.create(source, Charts.LINES, points);
+		stacked = Charts.create(source, Charts.STACKED_BARS, points);
+		area = Charts.create(source, Charts.PERCENTAGE_AREA, points);
+		pyramid = new MinMaxPyramid(lines.getValues(0), points);
+		lttbCache = new LttbCache(lines.getColumns(), points);
+		boolean[] stackedCalculated = new boolean[stacked.getLinesCount()];
+		Arrays.fill(stackedCalculated, true);
+		stackSums = new StackSums();
+		stackSums.update(stacked, stackedCalculated, -1, 1);
+		boolean[] areaVisible = new boolean[area.getLinesCount()];
+		Arrays.fill(areaVisible, true);
+		areaSums = new StackSums();
+		areaSums.update(area, areaVisible, -1, 1);
+		totals = ChartLayout.calculateTotals(area, areaVisible, -1, 1, null, 0);
+		viewport.setScroll(0, 0, WIDTH / points);
+		viewport.setSize(WIDTH, PADDING);
+		viewport.setValues(HEIGHT, HEIGHT / 100000f, 0);
+		viewport.setPercentScale(HEIGHT / 100);
+		buffer = new float[points * 4];
+		//Select LTTB values of the zoom outside of measurement.
+		lttbCache.getIndexes(0, lttbCache.chooseZoom(viewport.getStep()));
+	}
+
+	/**
+	 * drawChart with raw values.
+	 */
+	@Benchmark
+	public int line() {
+		return layout.layoutLine(lines.getValues(0), 0, points, viewport, buffer);
+	}
+
+	/**
+	 * drawChart with min/max pyramid level of about one pixel bucket.
+	 */
+	@Benchmark
+	public int lineLod() {
+		return layout.layoutLineLod(pyramid, viewport, buffer);
+	}
+
+	@Benchmark
+	public int lineLttb() {
+		return layout.layoutLineLttb(lines.getValues(0), 0,
+				lttbCache.getIndexes(0, lttbCache.chooseZoom(viewport.getStep())), viewport, buffer);
+	}
+
+	/**
+	 * drawBars of not stacked chart.
+	 */
+	@Benchmark
+	public int bars() {
+		return layout.layoutBars(lines.getValues(0), 0, points, 1, viewport, buffer);
+	}
+
+	/**
+	 * drawBars of all lines of stacked chart.
+	 */
+	@Benchmark
+	public int stackedBars() {
+		int count = 0;
+		for (int i = 0; i < stacked.getLinesCount(); i++) {
+			count += layout.layoutStackedBars(stacked.getValues(i), 0, points, i, 1, stackSums, null, viewport, buffer);
+		}
+		return count;
+	}
+
+	/**
+	 * drawAreaPercentage of all lines.
+	 */
+	@Benchmark
+	public int percentageArea() {
+		int count = 0;
+		for (int i = 0; i < area.getLinesCount(); i++) {
+			count += layout.layoutAreaStrip(area.getValues(i), 0, points, i, 1, areaSums, totals, viewport, buffer);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.RangeIndex;
+import com.dimowner.charttemplate.core.SumIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Max value of visible range: linear scan of values as done by the former calculateMaxValuesLine
+ * versus {@link RangeIndex} and {@link SumIndex} queries. Visible range is the middle half of the chart.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MaxValueBenchmark {
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private ArrayChartModel lines;
+	private ArrayChartModel stacked;
+	private boolean[] linesCalculated;
+	private boolean[] stackedCalculated;
+	private RangeIndex linesIndex;
+	private SumIndex stackedIndex;
+	private int from;
+	private int to;
+	private ForkJoinPool pool;
+
+	@Setup
+	public void setup() throws IOException {
+		lines = Charts.create(source, Charts.LINES, points);
+		stacked = Charts.create(source, Charts.STACKED_BARS, points);
+		linesCalculated = new boolean[lines.getLinesCount()];
+		Arrays.fill(linesCalculated, true);
+		stackedCalculated = new boolean[stacked.getLinesCount()];
+		Arrays.fill(stackedCalculated, true);
+		linesIndex = new RangeIndex(lines.getColumns(), points);
+		stackedIndex = new SumIndex(stacked.getColumns(), 0, points, stackedCalculated);
+		pool = new ForkJoinPool();
+		from = points / 4;
+		to = points - points / 4;
+	}
+
+	@Benchmark
+	public int scanMax() {
+		int max = 0;
+		for (int j = 0; j < lines.getLinesCount(); j++) {
+			if (linesCalculated[j]) {
+				int[] values = lines.getValues(j);
+				for (int i = from; i < to; i++) {
+					if (values[i] > max) {
+						max = values[i];
+					}
+				}
+			}
+		}
+		return max;
+	}
+
+	@Benchmark
+	public int rangeIndexMax() {
+		return linesIndex.getMax(from, to, linesCalculated);
+	}
+
+	@Benchmark
+	public int scanSumMax() {
+		int max = 0;
+		for (int i = from; i < to; i++) {
+			int sum = 0;
+			for (int j = 0; j < stacked.getLinesCount(); j++) {
+				if (stackedCalculated[j]) {
+					sum += stacked.getVal(j, i);
+				}
+			}
+			if (sum > max) {
+				max = sum;
+			}
+		}
+		return max;
+	}
+
+	@Benchmark
+	public int rangeIndexSumMax() {
+		return stackedIndex.getMax(from, to);
+	}
+
+	@Benchmark
+	public RangeIndex rangeIndexBuild() {
+		return new RangeIndex(lines.getColumns(), points);
+	}
+
+	@Benchmark
+	public RangeIndex rangeIndexBuildParallel() {
+		return new RangeIndex(lines.getColumns(), 0, points, pool);
+	}
+
+	@Benchmark
+	public SumIndex sumIndexBuild() {
+		return new SumIndex(stacked.getColumns(), 0, points, stackedCalculated);
+	}
+
+	@TearDown
+	public void tearDown() {
+		pool.shutdown();
+	}
+}
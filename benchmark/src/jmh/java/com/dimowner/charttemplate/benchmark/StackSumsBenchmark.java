@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.benchmark;
+
+import com.dimowner.charttemplate.core.ArrayChartModel;
+import com.dimowner.charttemplate.core.ChartLayout;
+import com.dimowner.charttemplate.core.StackSums;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stacked sums: prefix sums of {@link StackSums} versus summing lines below each point,
+ * and totals of percentage charts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StackSumsBenchmark {
+
+	@Param({"1000", "100000", "10000000"})
+	public int points;
+
+	@Param({Charts.SYNTHETIC, Charts.CONTEST})
+	public String source;
+
+	private ArrayChartModel stacked;
+	private ArrayChartModel area;
+	private boolean[] stackedCalculated;
+	private boolean[] areaVisible;
+	private StackSums sums;
+	private int[] top;
+	private float[] totals;
+
+	@Setup
+	public void setup() throws IOException {
+		stacked = Charts.create(source, Charts.STACKED_BARS, points);
+		area = Charts.create(source, Charts.PERCENTAGE_AREA, points);
+		stackedCalculated = new boolean[stacked.getLinesCount()];
+		Arrays.fill(stackedCalculated, true);
+		areaVisible = new boolean[area.getLinesCount()];
+		Arrays.fill(areaVisible, true);
+		sums = new StackSums();
+		top = new int[points];
+		totals = new float[points];
+	}
+
+	/**
+	 * Sums of all lines after lines state change.
+	 */
+	@Benchmark
+	public int stackSums() {
+		sums.invalidate();
+		sums.update(stacked, stackedCalculated, -1, 1);
+		return sums.get(stacked.getLinesCount() - 1, points - 1);
+	}
+
+	/**
+	 * Sums of lines below each point of every line, as drawing did before prefix sums.
+	 */
+	@Benchmark
+	public int[] perPointSums() {
+		for (int line = 0; line < stacked.getLinesCount(); line++) {
+			for (int i = 0; i < points; i++) {
+				int sum = 0;
+				for (int j = 0; j <= line; j++) {
+					if (stackedCalculated[j]) {
+						sum += stacked.getVal(j, i);
+					}
+				}
+				top[i] = sum;
+			}
+		}
+		return top;
+	}
+
+	@Benchmark
+	public float[] percentageTotals() {
+		return ChartLayout.calculateTotals(area, areaVisible, -1, 1, totals, 0);
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Chart values held in plain arrays, used where Android chart data is not available.
+ */
+public class ArrayChartModel implements ChartModel {
+
+	private final long[] time;
+	private final int[][] columns;
+	private final int[] types;
+	private final int length;
+	private final boolean yScaled;
+	private final boolean percentage;
+	private final boolean stacked;
+
+	public ArrayChartModel(long[] time, int[][] columns, int[] types,
+								  boolean yScaled, boolean percentage, boolean stacked) {
+		this.time = time;
+		this.columns = columns;
+		this.types = types;
+		this.length = time.length;
+		this.yScaled = yScaled;
+		this.percentage = percentage;
+		this.stacked = stacked;
+	}
+
+	/**
+	 * Convert contest type names into type constants, unknown types are 0.
+	 */
+	public static int[] parseTypes(String[] types) {
+		int[] typesInt = new int[types.length];
+		for (int i = 0; i < types.length; i++) {
+			if (types[i].equalsIgnoreCase("line")) {
+				typesInt[i] = TYPE_LINE;
+			} else if (types[i].equalsIgnoreCase("bar")) {
+				typesInt[i] = TYPE_BAR;
+			} else if (types[i].equalsIgnoreCase("area")) {
+				typesInt[i] = TYPE_AREA;
+			}
+		}
+		return typesInt;
+	}
+
+	@Override
+	public long[] getTime() {
+		return time;
+	}
+
+	public int[][] getColumns() {
+		return columns;
+	}
+
+	@Override
+	public int[] getValues(int line) {
+		return columns[line];
+	}
+
+	@Override
+	public int getVal(int line, int index) {
+		return columns[line][index];
+	}
+
+	@Override
+	public int getType(int line) {
+		return types[line];
+	}
+
+	@Override
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public int getStart() {
+		return 0;
+	}
+
+	@Override
+	public int getLinesCount() {
+		return columns.length;
+	}
+
+	@Override
+	public boolean isYscaled() {
+		return yScaled;
+	}
+
+	@Override
+	public boolean isPercentage() {
+		return percentage;
+	}
+
+	@Override
+	public boolean isStacked() {
+		return stacked;
+	}
+}
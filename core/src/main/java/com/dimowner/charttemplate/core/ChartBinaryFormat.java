@@ -0,0 +1,266 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Columnar binary format of charts, it is read by memory mapping instead of parsing.
+ *
+ * Layout (big-endian):
+ * <pre>
+ * int    magic "CTB1"
+ * int    flags
+ * int    points count
+ * int    lines count
+ * for each line: name, type, color as (short bytes count, UTF-8 bytes)
+ * long   first timestamp
+ * int[]  timestamp deltas, or long[] timestamps when FLAG_TIME_RAW is set (points count - 1)
+ * 0..3   bytes of padding to align columns by 4 bytes
+ * int[]  columns values, lines count * points count
+ * </pre>
+ */
+public class ChartBinaryFormat {
+
+	public static final int MAGIC = 0x43544231; //CTB1
+
+	public static final int FLAG_Y_SCALED = 1;
+	public static final int FLAG_PERCENTAGE = 1 << 1;
+	public static final int FLAG_STACKED = 1 << 2;
+	/** Timestamps stored as full long values because deltas do not fit into int. */
+	public static final int FLAG_TIME_RAW = 1 << 3;
+
+	private static final String CHARSET = "UTF-8";
+
+	private ChartBinaryFormat() {}
+
+	/**
+	 * @param names Names, types and colors of lines in the same order as lines of data.
+	 */
+	public static void write(ChartModel data, String[] names, String[] types, String[] colors,
+									 OutputStream out) throws IOException {
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+		try {
+			long[] time = data.getTime();
+			int start = data.getStart();
+			int length = data.getLength();
+			int flags = 0;
+			if (data.isYscaled()) { flags |= FLAG_Y_SCALED; }
+			if (data.isPercentage()) { flags |= FLAG_PERCENTAGE; }
+			if (data.isStacked()) { flags |= FLAG_STACKED; }
+			for (int i = start + 1; i < start + length; i++) {
+				long delta = time[i] - time[i - 1];
+				if (delta > Integer.MAX_VALUE || delta < Integer.MIN_VALUE) {
+					flags |= FLAG_TIME_RAW;
+					break;
+				}
+			}
+			dos.writeInt(MAGIC);
+			dos.writeInt(flags);
+			dos.writeInt(length);
+			dos.writeInt(data.getLinesCount());
+			for (int i = 0; i < data.getLinesCount(); i++) {
+				writeString(dos, names[i]);
+				writeString(dos, types[i]);
+				writeString(dos, colors[i]);
+			}
+			if (length > 0) {
+				dos.writeLong(time[start]);
+				for (int i = start + 1; i < start + length; i++) {
+					if ((flags & FLAG_TIME_RAW) != 0) {
+						dos.writeLong(time[i]);
+					} else {
+						dos.writeInt((int) (time[i] - time[i - 1]));
+					}
+				}
+			}
+			while (dos.size() % 4 != 0) {
+				dos.writeByte(0);
+			}
+			for (int j = 0; j < data.getLinesCount(); j++) {
+				int[] vals = data.getValues(j);
+				for (int i = start; i < start + length; i++) {
+					dos.writeInt(vals[i]);
+				}
+			}
+		} finally {
+			dos.close();
+		}
+	}
+
+	/**
+	 * Memory-map binary chart file.
+	 */
+	public static MappedChart map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new MappedChart(buffer);
+		} finally {
+			raf.close();
+		}
+	}
+
+	public static <T> T read(File file, ChartDataParser.ChartFactory<T> factory) throws IOException {
+		return map(file).create(factory);
+	}
+
+	private static void writeString(DataOutputStream dos, String s) throws IOException {
+		byte[] bytes = (s != null ? s : "").getBytes(CHARSET);
+		dos.writeShort(bytes.length);
+		dos.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) throws IOException {
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, CHARSET);
+	}
+
+	/**
+	 * Read-only view of the memory-mapped chart file.
+	 * Columns are exposed as {@link IntBuffer} views over the mapped file without copying.
+	 */
+	public static class MappedChart {
+
+		private final ByteBuffer buffer;
+		private final int flags;
+		private final int length;
+		private final String[] names;
+		private final String[] types;
+		private final String[] colors;
+		private final int timeOffset;
+		private final int columnsOffset;
+
+		MappedChart(ByteBuffer buffer) throws IOException {
+			this.buffer = buffer;
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("Not a chart binary file");
+			}
+			flags = buffer.getInt();
+			length = buffer.getInt();
+			int count = buffer.getInt();
+			names = new String[count];
+			types = new String[count];
+			colors = new String[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = readString(buffer);
+				types[i] = readString(buffer);
+				colors[i] = readString(buffer);
+			}
+			timeOffset = buffer.position();
+			int timeSize = 0;
+			if (length > 0) {
+				timeSize = 8 + (length - 1) * ((flags & FLAG_TIME_RAW) != 0 ? 8 : 4);
+			}
+			int offset = timeOffset + timeSize;
+			columnsOffset = offset + (4 - offset % 4) % 4;
+			if (columnsOffset + (long) count * length * 4 > buffer.capacity()) {
+				throw new IOException("Chart binary file is truncated");
+			}
+		}
+
+		public int getLength() {
+			return length;
+		}
+
+		public int getLinesCount() {
+			return names.length;
+		}
+
+		public String[] getNames() {
+			return names;
+		}
+
+		public String[] getTypes() {
+			return types;
+		}
+
+		public String[] getColors() {
+			return colors;
+		}
+
+		public boolean isYscaled() {
+			return (flags & FLAG_Y_SCALED) != 0;
+		}
+
+		public boolean isPercentage() {
+			return (flags & FLAG_PERCENTAGE) != 0;
+		}
+
+		public boolean isStacked() {
+			return (flags & FLAG_STACKED) != 0;
+		}
+
+		/**
+		 * Decode timestamps.
+		 */
+		public long[] getTime() {
+			long[] time = new long[length];
+			ByteBuffer b = buffer.duplicate();
+			b.position(timeOffset);
+			if (length > 0) {
+				time[0] = b.getLong();
+				for (int i = 1; i < length; i++) {
+					if ((flags & FLAG_TIME_RAW) != 0) {
+						time[i] = b.getLong();
+					} else {
+						time[i] = time[i - 1] + b.getInt();
+					}
+				}
+			}
+			return time;
+		}
+
+		/**
+		 * Values of the line as view over mapped file.
+		 */
+		public IntBuffer getColumn(int line) {
+			ByteBuffer b = buffer.duplicate();
+			b.position(columnsOffset + line * length * 4);
+			b.limit(columnsOffset + (line + 1) * length * 4);
+			return b.slice().asIntBuffer();
+		}
+
+		/** Count of bytes in mapped file. */
+		public int getSize() {
+			return buffer.capacity();
+		}
+
+		/**
+		 * Copy mapped values into the chart created by factory.
+		 */
+		public <T> T create(ChartDataParser.ChartFactory<T> factory) {
+			int[][] columns = new int[names.length][length];
+			for (int i = 0; i < names.length; i++) {
+				getColumn(i).get(columns[i]);
+			}
+			return factory.create(getTime(), columns, names, types, colors,
+					isYscaled(), isPercentage(), isStacked());
+		}
+	}
+}
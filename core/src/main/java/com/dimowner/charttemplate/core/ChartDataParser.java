@@ -0,0 +1,195 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming parser of the contest chart JSON format.
+ * Reads values token by token directly into primitive arrays
+ * without intermediate {@link Data} object and boxed numbers, the chart is created by {@link ChartFactory}.
+ */
+public class ChartDataParser {
+
+	private static final String COLUMNS = "columns";
+	private static final String TYPES = "types";
+	private static final String NAMES = "names";
+	private static final String COLORS = "colors";
+	private static final String Y_SCALED = "y_scaled";
+	private static final String PERCENTAGE = "percentage";
+	private static final String STACKED = "stacked";
+
+	private static final int INITIAL_CAPACITY = 128;
+
+	private ChartDataParser() {}
+
+	/**
+	 * Parse chart from stream. Stream is closed after reading.
+	 */
+	public static <T> T parse(InputStream in, ChartFactory<T> factory) throws IOException {
+		JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+		try {
+			return read(reader, factory);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static <T> T read(JsonReader reader, ChartFactory<T> factory) throws IOException {
+		List<String> columnKeys = new ArrayList<>();
+		List<int[]> columnValues = new ArrayList<>();
+		long[] time = new long[0];
+		Map<String, String> types = null;
+		Map<String, String> names = null;
+		Map<String, String> colors = null;
+		boolean yScaled = false;
+		boolean percentage = false;
+		boolean stacked = false;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String field = reader.nextName();
+			switch (field) {
+				case COLUMNS:
+					int capacity = INITIAL_CAPACITY;
+					reader.beginArray();
+					while (reader.hasNext()) {
+						reader.beginArray();
+						String key = reader.nextString();
+						if (Data.TIME_ARRAY_NAME.equals(key)) {
+							time = readLongs(reader, capacity);
+							capacity = time.length;
+						} else {
+							int[] vals = readInts(reader, capacity);
+							columnKeys.add(key);
+							columnValues.add(vals);
+							capacity = vals.length;
+						}
+						reader.endArray();
+					}
+					reader.endArray();
+					break;
+				case TYPES:
+					types = readMap(reader);
+					break;
+				case NAMES:
+					names = readMap(reader);
+					break;
+				case COLORS:
+					colors = readMap(reader);
+					break;
+				case Y_SCALED:
+					yScaled = reader.nextBoolean();
+					break;
+				case PERCENTAGE:
+					percentage = reader.nextBoolean();
+					break;
+				case STACKED:
+					stacked = reader.nextBoolean();
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		//Lines order is defined by names order.
+		int count = names != null ? names.size() : 0;
+		int[][] vals = new int[count][];
+		String[] namesArr = new String[count];
+		String[] typesArr = new String[count];
+		String[] colorsArr = new String[count];
+		int i = 0;
+		if (names != null) {
+			for (Map.Entry<String, String> entry : names.entrySet()) {
+				String key = entry.getKey();
+				int pos = columnKeys.lastIndexOf(key);
+				vals[i] = pos >= 0 ? columnValues.get(pos) : new int[0];
+				namesArr[i] = entry.getValue();
+				typesArr[i] = types != null ? types.get(key) : "";
+				colorsArr[i] = colors != null ? colors.get(key) : "";
+				i++;
+			}
+		}
+		return factory.create(time, vals, namesArr, typesArr, colorsArr, yScaled, percentage, stacked);
+	}
+
+	/**
+	 * Read rest of the array into long values.
+	 * Numbers read as double to keep same rounding as Gson does for Object arrays.
+	 */
+	private static long[] readLongs(JsonReader reader, int capacity) throws IOException {
+		long[] array = new long[capacity];
+		int size = 0;
+		while (reader.hasNext()) {
+			if (size == array.length) {
+				array = Arrays.copyOf(array, array.length * 2);
+			}
+			array[size++] = (long) reader.nextDouble();
+		}
+		return size == array.length ? array : Arrays.copyOf(array, size);
+	}
+
+	/**
+	 * Read rest of the array into int values.
+	 */
+	private static int[] readInts(JsonReader reader, int capacity) throws IOException {
+		int[] array = new int[capacity];
+		int size = 0;
+		while (reader.hasNext()) {
+			if (size == array.length) {
+				array = Arrays.copyOf(array, array.length * 2);
+			}
+			array[size++] = (int) reader.nextDouble();
+		}
+		return size == array.length ? array : Arrays.copyOf(array, size);
+	}
+
+	private static Map<String, String> readMap(JsonReader reader) throws IOException {
+		Map<String, String> map = new LinkedHashMap<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String key = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				map.put(key, null);
+			} else {
+				map.put(key, reader.nextString());
+			}
+		}
+		reader.endObject();
+		return map;
+	}
+
+	/**
+	 * Creates chart of parsed values, lines are ordered by names order.
+	 */
+	public interface ChartFactory<T> {
+		T create(long[] time, int[][] columns, String[] names, String[] types, String[] colors,
+					boolean yScaled, boolean percentage, boolean stacked);
+	}
+}
@@ -0,0 +1,373 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import java.util.Arrays;
+
+/**
+ * Calculates coordinates of chart segments without drawing them.
+ * Each layout method fills a buffer with segments as x1, y1, x2, y2 quadruples
+ * starting from index 0 and returns count of filled floats, so the buffer can be passed to Canvas.drawLines.
+ * Only points around the viewport are laid out, the buffer of data length * 4 floats is always enough.
+ */
+public class ChartLayout {
+
+	/** X of the last laid out point. */
+	private float lastPos;
+
+	public float getLastPos() {
+		return lastPos;
+	}
+
+	/**
+	 * Line through all values.
+	 * @param start Index of the first value in the array, see {@link ChartModel#getStart()}.
+	 */
+	public int layoutLine(int[] values, int start, int length, Viewport vp, float[] out) {
+		float step = vp.getStep();
+		int end = Math.min(length, vp.getEndIndex());
+		int i = vp.getFirstIndex();
+		float pos = vp.getX(i);
+		int k = 0;
+		for (; i < end && k + 4 <= out.length; i++) {
+			out[k] = pos; //x1
+			out[k + 1] = vp.getY(values[start + i]); //y1
+			if (i + 1 < length) {
+				out[k + 2] = pos + step; //x2
+				out[k + 3] = vp.getY(values[start + i + 1]); //y2
+			} else {
+				out[k + 2] = pos; //x2
+				out[k + 3] = vp.getY(values[start + i]); //y2
+			}
+			k += 4;
+			if (vp.isAfterEnd(pos, step)) {
+				break;
+			}
+			pos += step;
+		}
+		lastPos = pos;
+		return k;
+	}
+
+	/**
+	 * Line through values selected by LTTB.
+	 * @param start Index of the first value in the array.
+	 * @param indexes Ascending indexes of selected values.
+	 */
+	public int layoutLineLttb(int[] values, int start, int[] indexes, Viewport vp, float[] out) {
+		//Start from the last selected index before visible area.
+		int p = Arrays.binarySearch(indexes, vp.getFirstIndex());
+		if (p < 0) {
+			p = -p - 2;
+			if (p < 0) {p = 0;}
+		}
+		int end = vp.getEndIndex();
+		int k = 0;
+		float pos = 0;
+		for (; p + 1 < indexes.length && indexes[p] < end && k + 4 <= out.length; p++) {
+			pos = vp.getX(indexes[p]);
+			out[k] = pos; //x1
+			out[k + 1] = vp.getY(values[start + indexes[p]]); //y1
+			out[k + 2] = vp.getX(indexes[p + 1]); //x2
+			out[k + 3] = vp.getY(values[start + indexes[p + 1]]); //y2
+			k += 4;
+			if (vp.isAfterEnd(pos, 0)) {
+				break;
+			}
+		}
+		lastPos = pos;
+		return k;
+	}
+
+	/**
+	 * Line using pyramid level which bucket width is about one pixel.
+	 * Each bucket is laid out as vertical segment between its min and max values
+	 * plus segment connecting it with the next bucket. Level 0 is laid out as plain line.
+	 */
+	public int layoutLineLod(MinMaxPyramid pyramid, Viewport vp, float[] out) {
+		int level = pyramid.chooseLevel(vp.getStep());
+		int count = pyramid.getBucketsCount(level);
+		float step = vp.getStep() * (1 << level);
+		int b = pyramid.getBucket(level, vp.getFirstIndex());
+		int end = vp.getEndIndex();
+		float pos = vp.getX(pyramid.getBucketStart(level, b));
+		int k = 0;
+		for (; b < count && pyramid.getBucketStart(level, b) < end && k + 8 <= out.length; b++) {
+			if (level > 0) {
+				out[k] = pos; //x1
+				out[k + 1] = vp.getY(pyramid.getMin(level, b)); //y1
+				out[k + 2] = pos; //x2
+				out[k + 3] = vp.getY(pyramid.getMax(level, b)); //y2
+				k += 4;
+			}
+			if (b + 1 < count) {
+				out[k] = pos; //x1
+				out[k + 1] = vp.getY(pyramid.getLast(level, b)); //y1
+				out[k + 2] = vp.getX(pyramid.getBucketStart(level, b + 1)); //x2
+				out[k + 3] = vp.getY(pyramid.getFirst(level, b + 1)); //y2
+				k += 4;
+			}
+			if (vp.isAfterEnd(pos, step)) {
+				break;
+			}
+			//The first bucket may be shorter than others.
+			pos = vp.getX(pyramid.getBucketStart(level, b + 1));
+		}
+		lastPos = pos;
+		return k;
+	}
+
+	/**
+	 * Bars from the baseline, one vertical segment per bar.
+	 * @param start Index of the first value in the array.
+	 * @param stride Lay out every stride-th value, bar width is stride steps.
+	 */
+	public int layoutBars(int[] values, int start, int length, int stride, Viewport vp, float[] out) {
+		float step = vp.getStep() * stride;
+		float baseline = vp.getBaseline();
+		float scale = vp.getValueScale();
+		int end = alignedEndIndex(vp, length, stride);
+		int i = alignedFirstIndex(vp, stride);
+		float pos = vp.getX(i);
+		int k = 0;
+		for (; i < end && k + 4 <= out.length; i += stride) {
+			out[k] = pos; //x1
+			out[k + 1] = baseline; //y1
+			out[k + 2] = pos; //x2
+			out[k + 3] = baseline - values[start + i] * scale; //y2
+			k += 4;
+			if (vp.isAfterEnd(pos, vp.getStep())) {
+				break;
+			}
+			pos += step;
+		}
+		lastPos = pos;
+		return k;
+	}
+
+	/**
+	 * Bars of a stacked line, each bar is placed on top of bars of previous lines.
+	 * @param start Index of the first value in the array.
+	 * @param totals Sums of values of percentage chart divided by 100, see {@link #calculateTotals},
+	 * null for not percentage chart.
+	 */
+	public int layoutStackedBars(int[] values, int start, int length, int line, int stride, StackSums sums,
+			float[] totals, Viewport vp, float[] out) {
+		float step = vp.getStep() * stride;
+		float koef = sums.getKoef(line);
+		int end = alignedEndIndex(vp, length, stride);
+		int i = alignedFirstIndex(vp, stride);
+		float pos = vp.getX(i);
+		int k = 0;
+		int sum;
+		for (; i < end && k + 4 <= out.length; i += stride) {
+			sum = sums.get(line, i);
+			out[k] = pos; //x1
+			out[k + 1] = getStackedY(sum - values[start + i] * koef, i, totals, vp); //y1
+			out[k + 2] = pos; //x2
+			out[k + 3] = getStackedY(sum, i, totals, vp); //y2
+			k += 4;
+			if (vp.isAfterEnd(pos, vp.getStep())) {
+				break;
+			}
+			pos += step;
+		}
+		lastPos = pos;
+		return k;
+	}
+
+	/**
+	 * Filled area of a stacked line as triangle strip. Each point adds bottom and top vertices
+	 * as x, y pairs, so the area between neighbour points is covered by two triangles.
+	 * The last point of data is added when stride skips it, so the area reaches the chart end.
+	 * @param start Index of the first value in the array.
+	 * @return count of filled floats, twice the count of vertices.
+	 */
+	public int layoutAreaStrip(int[] values, int start, int length, int line, int stride, StackSums sums,
+			float[] totals, Viewport vp, float[] out) {
+		float step = vp.getStep() * stride;
+		float koef = sums.getKoef(line);
+		int end = alignedEndIndex(vp, length, stride);
+		int i = alignedFirstIndex(vp, stride);
+		int last = -1;
+		int k = 0;
+		for (; i < end && k + 4 <= out.length; i += stride) {
+			k = putAreaVertices(values, start, i, line, sums, totals, vp, koef, out, k);
+			last = i;
+			if (vp.isAfterEnd(vp.getX(i), step)) {
+				break;
+			}
+		}
+		if (last >= 0 && last < length - 1 && i >= length && k + 4 <= out.length) {
+			k = putAreaVertices(values, start, length - 1, line, sums, totals, vp, koef, out, k);
+			last = length - 1;
+		}
+		lastPos = last >= 0 ? vp.getX(last) : 0;
+		return k;
+	}
+
+	private static int putAreaVertices(int[] values, int start, int i, int line, StackSums sums, float[] totals,
+			Viewport vp, float koef, float[] out, int k) {
+		int sum = sums.get(line, i);
+		float x = vp.getX(i);
+		out[k] = x; //bottom x
+		out[k + 1] = getStackedY(sum - values[start + i] * koef, i, totals, vp); //bottom y
+		out[k + 2] = x; //top x
+		out[k + 3] = getStackedY(sum, i, totals, vp); //top y
+		return k + 4;
+	}
+
+	private static float getStackedY(float sum, int i, float[] totals, Viewport vp) {
+		if (totals != null) {
+			return vp.getBaseline() - vp.getPercentScale() * sum / totals[i];
+		}
+		return vp.getBaseline() - sum * vp.getValueScale();
+	}
+
+	/**
+	 * First index rounded down to stride, so the same points are laid out while scrolling.
+	 */
+	private static int alignedFirstIndex(Viewport vp, int stride) {
+		int first = vp.getFirstIndex();
+		return first - first % stride;
+	}
+
+	/**
+	 * End index extended to the next multiple of stride, so the last resolved point is covered by a stride.
+	 */
+	private static int alignedEndIndex(Viewport vp, int length, int stride) {
+		int end = vp.getEndIndex();
+		return end > length - stride ? length : end + stride - 1;
+	}
+
+	/**
+	 * Sums of visible lines values divided by 100 for percentage charts.
+	 * Values starting from index from are calculated.
+	 * @param totals Array to fill, reallocated with capacity of model time array when it is too small.
+	 * @return Filled array.
+	 */
+	public static float[] calculateTotals(ChartModel model, boolean[] visible, int animIndex, float animKoef,
+			float[] totals, int from) {
+		int length = model.getLength();
+		if (totals == null || totals.length < length) {
+			float[] vals = new float[model.getTime().length];
+			if (totals != null && from > 0) {
+				System.arraycopy(totals, 0, vals, 0, from);
+			}
+			totals = vals;
+		}
+		int sum = 0;
+		int start = model.getStart();
+		for (int i = from; i < length; i++) {
+			for (int j = 0; j < model.getLinesCount(); j++) {
+				if (visible[j]) {
+					if (j == animIndex) {
+						sum += model.getValues(j)[start + i]*animKoef;
+					} else {
+						sum += model.getValues(j)[start + i];
+					}
+				}
+			}
+			totals[i] = (float)sum/100;
+			sum = 0;
+		}
+		return totals;
+	}
+
+	/**
+	 * Arc angles in degrees of visible lines values sum in range [from, to) for pie chart.
+	 * @param arcs Array to fill, one angle per line.
+	 */
+	public static void calculateArcs(ChartModel model, boolean[] visible, int animIndex, float animKoef,
+			int from, int to, float[] arcs) {
+		int total = 0;
+		for (int i = 0; i < arcs.length; i++) {
+			arcs[i] = 0;
+		}
+		for (int i = from; i < to; i++) {
+			if (i >= 0 && i < model.getLength()) {
+				for (int j = 0; j < model.getLinesCount(); j++) {
+					if (visible[j]) {
+						if (j == animIndex) {
+							total += model.getVal(j, i) * animKoef;
+							arcs[j] += model.getVal(j, i) * animKoef;
+						} else {
+							total += model.getVal(j, i);
+							arcs[j] += model.getVal(j, i);
+						}
+					}
+				}
+			}
+		}
+		if (total > 0) {
+			for (int i = 0; i < arcs.length; i++) {
+				arcs[i] = 360 * arcs[i] / total;
+			}
+		}
+	}
+
+	/**
+	 * Index of the pie chart arc under the point or -1.
+	 * @param startAngle Angle in degrees where the first arc starts.
+	 * @param arcs Arc angles in degrees.
+	 */
+	public static int arcIndexAt(float x, float y, float centerX, float centerY, float startAngle, float[] arcs) {
+		float angle = (float) Math.atan2(y - centerY, x - centerX);
+		float degrees = (float) (angle * 180/Math.PI);
+		if (degrees < 0) {
+			degrees = 360 + degrees;
+		}
+		float angleToStart = degrees - startAngle;
+		if (angleToStart < 0) {
+			angleToStart = 360 + angleToStart;
+		}
+		float prev = 0;
+		if (arcs != null) {
+			for (int i = 0; i < arcs.length; i++) {
+				prev += arcs[i];
+				if (angleToStart - prev < 0) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Round value up to a number with few significant digits, so grid labels look even.
+	 * @param scale Count of grid lines.
+	 */
+	public static float adjustToGrid(float val, int scale) {
+		int amp = 1;
+		while (val > scale*100) {
+			val = val/(scale*10);
+			amp *=(scale*10);
+		}
+		if (val > (scale*10)) {
+			val = (float) Math.ceil(val/scale);
+			amp *=scale;
+		}
+		return (float) Math.ceil(val)*amp;
+	}
+
+	/**
+	 * Count of grid lines with step gridStep which fit into height.
+	 */
+	public static int getGridCount(float height, float gridStep) {
+		return (int)(height/gridStep);
+	}
+}
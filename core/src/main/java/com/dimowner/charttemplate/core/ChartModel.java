@@ -0,0 +1,52 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Primitive chart values read by layout calculations.
+ * Arrays may have free space before and after values, values are placed in
+ * [{@link #getStart()}, getStart() + {@link #getLength()}) of arrays. Indexes of other methods start from 0.
+ */
+public interface ChartModel {
+
+	int TYPE_LINE = 1;
+	int TYPE_BAR = 2;
+	int TYPE_AREA = 3;
+
+	long[] getTime();
+
+	int[] getValues(int line);
+
+	int getVal(int line, int index);
+
+	int getType(int line);
+
+	int getLength();
+
+	/**
+	 * Index of the first value in time and values arrays.
+	 */
+	int getStart();
+
+	int getLinesCount();
+
+	boolean isYscaled();
+
+	boolean isPercentage();
+
+	boolean isStacked();
+}
@@ -14,7 +14,7 @@
  * limitations under the License.
  */
 
-package com.dimowner.charttemplate.model;
+package com.dimowner.charttemplate.core;
 
 import java.util.Arrays;
 
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import java.util.Arrays;
+
+/**
+ * Transform value*scale+offset of each line applied when values are laid out and compared,
+ * so source values stay unchanged and may be shared between views and threads.
+ * Identity for all lines by default.
+ */
+public class LineScales {
+
+	private final float[] scales;
+	private final float[] offsets;
+
+	public LineScales(int linesCount) {
+		scales = new float[linesCount];
+		offsets = new float[linesCount];
+		Arrays.fill(scales, 1);
+	}
+
+	/**
+	 * Copy of scales, for example for a drawer on another thread.
+	 */
+	public LineScales(LineScales source) {
+		scales = source.scales.clone();
+		offsets = source.offsets.clone();
+	}
+
+	/**
+	 * Scales of the model, see {@link #update(ChartModel, RangeIndex)}.
+	 */
+	public static LineScales create(ChartModel model) {
+		LineScales lineScales = new LineScales(model.getLinesCount());
+		lineScales.update(model, null);
+		return lineScales;
+	}
+
+	/**
+	 * Calculate scales for current values of the model. On charts with two Y axes the line with
+	 * the smallest max value is scaled to max value of other lines, other lines are not transformed.
+	 * @param index Index of the model values to find max values of lines, null to scan values.
+	 */
+	public void update(ChartModel model, RangeIndex index) {
+		Arrays.fill(scales, 1);
+		Arrays.fill(offsets, 0);
+		if (!model.isYscaled() || scales.length == 0) {
+			return;
+		}
+		int line = 0;
+		int lineMax = Integer.MAX_VALUE;
+		int globalMax = 0;
+		for (int i = 0; i < scales.length; i++) {
+			int max = getLineMax(model, index, i);
+			if (max < lineMax) {
+				line = i;
+				lineMax = max;
+			}
+			if (max > globalMax) {
+				globalMax = max;
+			}
+		}
+		if (lineMax > 0) {
+			scales[line] = (float) globalMax / lineMax;
+		}
+	}
+
+	/**
+	 * Max value of the line, not less than 0.
+	 */
+	private static int getLineMax(ChartModel model, RangeIndex index, int line) {
+		if (index != null) {
+			return Math.max(0, index.getLineMax(line, 0, model.getLength()));
+		}
+		int[] values = model.getValues(line);
+		int max = 0;
+		for (int j = model.getStart(); j < model.getStart() + model.getLength(); j++) {
+			if (values[j] > max) {
+				max = values[j];
+			}
+		}
+		return max;
+	}
+
+	public void set(int line, float scale, float offset) {
+		scales[line] = scale;
+		offsets[line] = offset;
+	}
+
+	public float getScale(int line) {
+		return scales[line];
+	}
+
+	public float getOffset(int line) {
+		return offsets[line];
+	}
+
+	/**
+	 * First line which transform is not identity or -1.
+	 */
+	public int findScaledLine() {
+		for (int i = 0; i < scales.length; i++) {
+			if (scales[i] != 1 || offsets[i] != 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Transformed value of the line.
+	 */
+	public float apply(int line, float value) {
+		return value * scales[line] + offsets[line];
+	}
+
+	/**
+	 * Source value of the line for transformed value, for example for labels of the line axis.
+	 */
+	public float invert(int line, float value) {
+		return (value - offsets[line]) / scales[line];
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of line values.
+ * X coordinate of a value is its index.
+ */
+public class Lttb {
+
+	private Lttb() {}
+
+	/**
+	 * Downsample n values starting from index start with buckets of the same width.
+	 * Buckets do not depend on values count, so they do not move when values are appended and selection
+	 * made for fewer values is reused for buckets which end before appended values affect them.
+	 * @param previous Result of the previous call for the same beginning of values or null.
+	 * @param previousN Values count of the previous call.
+	 * @return sorted indexes of selected values relative to start, first and last values are always selected.
+	 */
+	public static int[] downsampleBuckets(int[] values, int start, int n, int width,
+			int[] previous, int previousN) {
+		int buckets = n > 2 ? (n - 2 + width - 1) / width : 0;
+		int[] sampled = new int[n > 2 ? buckets + 2 : n];
+		if (n <= 2) {
+			for (int i = 0; i < n; i++) {
+				sampled[i] = i;
+			}
+			return sampled;
+		}
+		//Bucket selection depends on the previous selected value and average of the next bucket,
+		//so it is valid while the next bucket was complete.
+		int kept = 0;
+		if (previous != null && previousN > 2 && previousN <= n) {
+			kept = Math.min(buckets, Math.max(0, (previousN - 2) / width - 1));
+		}
+		if (kept > 0) {
+			System.arraycopy(previous, 0, sampled, 0, kept + 1);
+		}
+		int a = sampled[kept];
+		for (int i = kept; i < buckets; i++) {
+			int rangeStart = 1 + i * width;
+			int rangeEnd = Math.min(rangeStart + width, n - 1);
+			int avgStart = i + 1 < buckets ? rangeEnd : n - 1;
+			int avgEnd = i + 1 < buckets ? Math.min(avgStart + width, n - 1) : n;
+			double avgX = 0;
+			double avgY = 0;
+			for (int j = avgStart; j < avgEnd; j++) {
+				avgX += j;
+				avgY += values[start + j];
+			}
+			avgX /= avgEnd - avgStart;
+			avgY /= avgEnd - avgStart;
+
+			double maxArea = -1;
+			int next = rangeStart;
+			for (int j = rangeStart; j < rangeEnd; j++) {
+				double area = Math.abs((a - avgX) * (values[start + j] - values[start + a])
+						- (a - j) * (avgY - values[start + a]));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			sampled[i + 1] = next;
+			a = next;
+		}
+		sampled[buckets + 1] = n - 1;
+		return sampled;
+	}
+
+	/**
+	 * Max absolute vertical difference between raw values and line drawn through selected indexes.
+	 * @param start Index of the first value, selected indexes are relative to it.
+	 */
+	public static double maxError(int[] values, int start, int[] indexes) {
+		double max = 0;
+		for (int k = 0; k + 1 < indexes.length; k++) {
+			for (int i = indexes[k]; i <= indexes[k + 1]; i++) {
+				double err = Math.abs(values[start + i] - interpolate(values, start, indexes[k], indexes[k + 1], i));
+				if (err > max) {
+					max = err;
+				}
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Mean absolute vertical difference between raw values and line drawn through selected indexes.
+	 * Every value between the first and the last selected index is counted once.
+	 * @param start Index of the first value, selected indexes are relative to it.
+	 */
+	public static double meanError(int[] values, int start, int[] indexes) {
+		if (indexes.length < 2) {
+			return 0;
+		}
+		double sum = 0;
+		for (int k = 0; k + 1 < indexes.length; k++) {
+			//Last index of the segment is the first index of the next one.
+			int end = k + 2 < indexes.length ? indexes[k + 1] : indexes[k + 1] + 1;
+			for (int i = indexes[k]; i < end; i++) {
+				sum += Math.abs(values[start + i] - interpolate(values, start, indexes[k], indexes[k + 1], i));
+			}
+		}
+		return sum / (indexes[indexes.length - 1] - indexes[0] + 1);
+	}
+
+	private static double interpolate(int[] values, int start, int i1, int i2, int i) {
+		if (i1 == i2) {
+			return values[start + i1];
+		}
+		return values[start + i1] + (double) (values[start + i2] - values[start + i1]) * (i - i1) / (i2 - i1);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import java.util.Arrays;
+
+/**
+ * Cache of {@link Lttb} results per line and zoom bucket.
+ * Zoom bucket z means that every selected point represents 2^z values,
+ * so scrolling with constant zoom reuses the same result. Appending values keeps
+ * selection of buckets which do not depend on appended values, see {@link Lttb#downsampleBuckets}.
+ */
+public class LttbCache {
+
+	/** Zoom bucket widths in range [MIN_BUCKET_WIDTH, 2*MIN_BUCKET_WIDTH) pixels are closest to one pixel. */
+	private static final float MIN_BUCKET_WIDTH = 0.70710677f; //1/sqrt(2)
+
+	private int[][] columns;
+	private int start;
+	private int length;
+	private int[][][] cache;
+	/** Values count which cached result was selected for. */
+	private int[][] cacheLengths;
+	private int maxZoom;
+
+	public LttbCache(int[][] columns) {
+		this(columns, columns.length > 0 ? columns[0].length : 0);
+	}
+
+	/**
+	 * @param length Count of values used from the beginning of each column.
+	 */
+	public LttbCache(int[][] columns, int length) {
+		this(columns, 0, length);
+	}
+
+	/**
+	 * @param start Index of the first value in columns.
+	 * @param length Count of values used starting from start.
+	 */
+	public LttbCache(int[][] columns, int start, int length) {
+		update(columns, start, length);
+	}
+
+	/**
+	 * Clear results for changed values. Cache arrays are reused when zoom buckets count does not grow.
+	 * @param start Index of the first value in columns.
+	 */
+	public void update(int[][] columns, int start, int length) {
+		setData(columns, start, length);
+		if (cache == null || cache.length != columns.length
+				|| (columns.length > 0 && cache[0].length < maxZoom + 1)) {
+			cache = new int[columns.length][maxZoom + 1][];
+			cacheLengths = new int[columns.length][maxZoom + 1];
+		} else {
+			clear();
+		}
+	}
+
+	/**
+	 * Values were appended to the same columns, nothing was removed from the beginning.
+	 * Cached results are extended when requested, only buckets which depend on appended values are selected again.
+	 * @param start Index of the first value in columns, values may be moved inside of columns.
+	 */
+	public void append(int[][] columns, int start, int length) {
+		if (cache == null || cache.length != columns.length || length < this.length) {
+			update(columns, start, length);
+			return;
+		}
+		setData(columns, start, length);
+		if (columns.length > 0 && cache[0].length < maxZoom + 1) {
+			for (int i = 0; i < cache.length; i++) {
+				cache[i] = Arrays.copyOf(cache[i], maxZoom + 1);
+				cacheLengths[i] = Arrays.copyOf(cacheLengths[i], maxZoom + 1);
+			}
+		}
+	}
+
+	private void setData(int[][] columns, int start, int length) {
+		this.columns = columns;
+		this.start = start;
+		this.length = length;
+		int zoom = 0;
+		while ((length >> (zoom + 1)) >= 3) {
+			zoom++;
+		}
+		maxZoom = zoom;
+	}
+
+	/**
+	 * Find zoom bucket for the distance in pixels between two neighbour values.
+	 */
+	public int chooseZoom(float step) {
+		int zoom = 0;
+		while (zoom < maxZoom && step * (1 << zoom) < MIN_BUCKET_WIDTH) {
+			zoom++;
+		}
+		return zoom;
+	}
+
+	/**
+	 * Sorted indexes of values selected for the line on zoom bucket.
+	 */
+	public int[] getIndexes(int line, int zoom) {
+		int[] indexes = cache[line][zoom];
+		if (indexes == null || cacheLengths[line][zoom] != length) {
+			indexes = Lttb.downsampleBuckets(columns[line], start, length, 1 << zoom,
+					indexes, cacheLengths[line][zoom]);
+			cache[line][zoom] = indexes;
+			cacheLengths[line][zoom] = length;
+		}
+		return indexes;
+	}
+
+	public void clear() {
+		for (int i = 0; i < cache.length; i++) {
+			for (int j = 0; j < cache[i].length; j++) {
+				cache[i][j] = null;
+			}
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Min/max decimation pyramid of a line values (level of detail).
+ * Level 0 is raw values, each next level merges two buckets of the previous level,
+ * so a bucket of level k covers 2^k values. Min and max of each bucket are kept,
+ * that is why peaks and troughs stay visible on any level.
+ * Buckets are aligned to positions starting from head, so values removed from or inserted to the beginning
+ * update only first buckets of each level, and the first bucket may cover less values.
+ */
+public class MinMaxPyramid {
+
+	/** Bucket widths in range [MIN_BUCKET_WIDTH, 2*MIN_BUCKET_WIDTH) pixels are closest to one pixel. */
+	private static final float MIN_BUCKET_WIDTH = 0.70710677f; //1/sqrt(2)
+
+	private int[] values;
+	/** Index of the first value in the array. */
+	private int start;
+	private int length;
+	/** Power of two not less than values array size, level k rings have 2*capacity >> k buckets. */
+	private int capacity;
+	/** Position of the first value, less than 2*capacity. */
+	private int head;
+	/** Rings of min and max values of buckets for levels starting from 1, bucket b is kept at b mod ring size. */
+	private int[][] min;
+	private int[][] max;
+
+	public MinMaxPyramid(int[] values) {
+		this(values, values.length);
+	}
+
+	/**
+	 * @param length Count of values used from the beginning of the array.
+	 */
+	public MinMaxPyramid(int[] values, int length) {
+		this(values, 0, length);
+	}
+
+	/**
+	 * @param start Index of the first value in the array.
+	 * @param length Count of values used starting from start.
+	 */
+	public MinMaxPyramid(int[] values, int start, int length) {
+		build(values, start, length);
+	}
+
+	/**
+	 * Rebuild all levels for changed values. Level arrays are reused when the capacity is not changed.
+	 */
+	public void reset(int[] values, int start, int length) {
+		build(values, start, length);
+	}
+
+	private void build(int[] values, int start, int length) {
+		this.values = values;
+		this.start = start;
+		this.length = length;
+		head = 0;
+		int levels = 1;
+		while ((1 << levels) < Math.max(length, values.length)) {
+			levels++;
+		}
+		if (min == null || capacity != 1 << levels) {
+			capacity = 1 << levels;
+			min = new int[levels][];
+			max = new int[levels][];
+			for (int k = 1; k < levels; k++) {
+				min[k] = new int[(2 * capacity) >> k];
+				max[k] = new int[(2 * capacity) >> k];
+			}
+		}
+		updateBuckets(0, length);
+	}
+
+	/**
+	 * Add values appended to the end of the array. Only last buckets of each level are updated,
+	 * all levels are rebuilt when capacity is exceeded.
+	 * @param values Array with the same values before the new ones, may be reallocated.
+	 * @param start Index of the first value in the array.
+	 */
+	public void append(int[] values, int start, int newLength) {
+		if (newLength > capacity) {
+			build(values, start, newLength);
+			return;
+		}
+		int from = length;
+		this.values = values;
+		this.start = start;
+		this.length = newLength;
+		updateBuckets(from, newLength);
+	}
+
+	/**
+	 * Add count values inserted to the beginning of the array. Only first buckets of each level are updated,
+	 * all levels are rebuilt when capacity is exceeded.
+	 * @param values Array with the same values after the new ones, may be reallocated.
+	 * @param start Index of the first inserted value in the array.
+	 */
+	public void prepend(int[] values, int start, int count) {
+		if (length + count > capacity) {
+			build(values, start, length + count);
+			return;
+		}
+		this.values = values;
+		this.start = start;
+		head = (head - count) & (2 * capacity - 1);
+		length += count;
+		//Bucket of the previous first value may contain inserted values.
+		updateBuckets(0, Math.min(count + 1, length));
+	}
+
+	/**
+	 * Drop count values removed from the beginning of the array, only the first bucket of each level is updated.
+	 * @param values Array with remaining values, may be the same array.
+	 * @param start Index of the first remaining value in the array.
+	 */
+	public void removeFirst(int[] values, int start, int count) {
+		count = Math.min(count, length);
+		this.values = values;
+		this.start = start;
+		length -= count;
+		//Positions are reduced by a multiple of each ring size, so buckets stay in the same places of rings.
+		head = (head + count) & (2 * capacity - 1);
+		if (length > 0) {
+			for (int k = 1; k < min.length; k++) {
+				updateBucket(k, head >> k);
+			}
+		}
+	}
+
+	/**
+	 * Calculate buckets of all levels which contain values in range [from, to).
+	 */
+	private void updateBuckets(int from, int to) {
+		for (int k = 1; k < min.length; k++) {
+			int last = (head + to - 1) >> k;
+			for (int b = (head + from) >> k; b <= last; b++) {
+				updateBucket(k, b);
+			}
+		}
+	}
+
+	/**
+	 * Merge buckets of the previous level which are covered by bucket at position b of level k and contain values.
+	 */
+	private void updateBucket(int k, int b) {
+		int first = Math.max(2 * b, head >> (k - 1));
+		int last = Math.min(2 * b + 1, (head + length - 1) >> (k - 1));
+		int lo = positionMin(k - 1, first);
+		int hi = positionMax(k - 1, first);
+		if (last > first) {
+			lo = Math.min(lo, positionMin(k - 1, last));
+			hi = Math.max(hi, positionMax(k - 1, last));
+		}
+		int mask = min[k].length - 1;
+		min[k][b & mask] = lo;
+		max[k][b & mask] = hi;
+	}
+
+	private int positionMin(int level, int b) {
+		return level == 0 ? values[start + b - head] : min[level][b & (min[level].length - 1)];
+	}
+
+	private int positionMax(int level, int b) {
+		return level == 0 ? values[start + b - head] : max[level][b & (max[level].length - 1)];
+	}
+
+	public int getLevelsCount() {
+		return min.length;
+	}
+
+	/**
+	 * Find level which bucket width is closest to one pixel.
+	 * @param step Distance in pixels between two neighbour values.
+	 */
+	public int chooseLevel(float step) {
+		int level = 0;
+		while (level < min.length - 1 && step * (1 << level) < MIN_BUCKET_WIDTH) {
+			level++;
+		}
+		return level;
+	}
+
+	public int getBucketsCount(int level) {
+		return (offset(level) + length + (1 << level) - 1) >> level;
+	}
+
+	/** Bucket of the level which contains value at index. */
+	public int getBucket(int level, int index) {
+		return (offset(level) + index) >> level;
+	}
+
+	/** Index of the first value of the bucket. */
+	public int getBucketStart(int level, int bucket) {
+		return Math.max(0, (bucket << level) - offset(level));
+	}
+
+	public int getMin(int level, int bucket) {
+		return level == 0 ? values[start + bucket] : min[level][((head >> level) + bucket) & (min[level].length - 1)];
+	}
+
+	public int getMax(int level, int bucket) {
+		return level == 0 ? values[start + bucket] : max[level][((head >> level) + bucket) & (max[level].length - 1)];
+	}
+
+	/** First raw value of the bucket. */
+	public int getFirst(int level, int bucket) {
+		return values[start + getBucketStart(level, bucket)];
+	}
+
+	/** Last raw value of the bucket. */
+	public int getLast(int level, int bucket) {
+		int i = ((bucket + 1) << level) - offset(level) - 1;
+		return values[start + (i < length ? i : length - 1)];
+	}
+
+	/** Count of positions of the first bucket of the level before the first value. */
+	private int offset(int level) {
+		return head & ((1 << level) - 1);
+	}
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Formats numbers like DecimalFormat("#,##0.#") into char arrays without allocations.
+ * Values are rounded half even by their exact binary value as DecimalFormat does.
+ * Recently formatted values are kept in a small LRU cache, so that labels which are
+ * redrawn on every frame are copied instead of formatted again.
+ * Not thread safe.
+ */
+public class NumberFormatter {
+
+	/** Max length of formatted value. */
+	public static final int MAX_LENGTH = 32;
+
+	/** Values bigger than this are clamped, tenths of them do not fit into long. */
+	private static final double MAX_VALUE = Long.MAX_VALUE / 10;
+
+	/** Cache is split into sets of WAYS entries, least recently used entry of a set is replaced. */
+	private static final int SETS_BITS = 5;
+	private static final int WAYS = 4;
+	private static final int CACHE_SIZE = WAYS << SETS_BITS;
+
+	private final char groupingSeparator;
+	private final char decimalSeparator;
+	private final char[] digits = new char[MAX_LENGTH];
+
+	private final long[] cacheKeys = new long[CACHE_SIZE];
+	private final boolean[] cacheAbbreviated = new boolean[CACHE_SIZE];
+	private final char[][] cacheTexts = new char[CACHE_SIZE][MAX_LENGTH];
+	/** Text lengths, 0 for empty entries. */
+	private final int[] cacheLengths = new int[CACHE_SIZE];
+	private final long[] cacheUsed = new long[CACHE_SIZE];
+	private long useCounter = 0;
+
+	public NumberFormatter(char groupingSeparator, char decimalSeparator) {
+		this.groupingSeparator = groupingSeparator;
+		this.decimalSeparator = decimalSeparator;
+	}
+
+	/**
+	 * Format value shortened with K, M or B suffix, 1500 is formatted as 1.5K.
+	 * @return length of the text written into out starting from 0.
+	 */
+	public int formatAbbreviated(float f, char[] out) {
+		int entry = findCached(f, true);
+		if (entry >= 0) {
+			return copyCached(entry, out, 0);
+		}
+		int length = writeAbbreviated(f, out);
+		putCached(f, true, out, 0, length);
+		return length;
+	}
+
+	/**
+	 * Format value with grouping and at most one fraction digit rounded half even.
+	 * @return length of the text written into out starting from offset.
+	 */
+	public int format(double value, char[] out, int offset) {
+		int entry = findCached(value, false);
+		if (entry >= 0) {
+			return copyCached(entry, out, offset);
+		}
+		int length = write(value, out, offset);
+		putCached(value, false, out, offset, length);
+		return length;
+	}
+
+	public void clearCache() {
+		for (int i = 0; i < CACHE_SIZE; i++) {
+			cacheLengths[i] = 0;
+		}
+	}
+
+	private int findCached(double value, boolean abbreviated) {
+		long key = Double.doubleToLongBits(value);
+		int first = setIndex(key) * WAYS;
+		for (int i = first; i < first + WAYS; i++) {
+			if (cacheLengths[i] > 0 && cacheKeys[i] == key && cacheAbbreviated[i] == abbreviated) {
+				cacheUsed[i] = ++useCounter;
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int copyCached(int entry, char[] out, int offset) {
+		System.arraycopy(cacheTexts[entry], 0, out, offset, cacheLengths[entry]);
+		return cacheLengths[entry];
+	}
+
+	private void putCached(double value, boolean abbreviated, char[] text, int offset, int length) {
+		long key = Double.doubleToLongBits(value);
+		int first = setIndex(key) * WAYS;
+		int entry = first;
+		for (int i = first; i < first + WAYS; i++) {
+			if (cacheLengths[i] == 0) {
+				entry = i;
+				break;
+			}
+			if (cacheUsed[i] < cacheUsed[entry]) {
+				entry = i;
+			}
+		}
+		cacheKeys[entry] = key;
+		cacheAbbreviated[entry] = abbreviated;
+		cacheLengths[entry] = length;
+		cacheUsed[entry] = ++useCounter;
+		System.arraycopy(text, offset, cacheTexts[entry], 0, length);
+	}
+
+	private static int setIndex(long key) {
+		int hash = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+		return hash >>> (32 - SETS_BITS);
+	}
+
+	private int writeAbbreviated(float f, char[] out) {
+		if (f < 1000.0f) {
+			return write(f, out, 0);
+		}
+		int length;
+		if (f < 1000000.0f) {
+			length = write(f / 1000.0f, out, 0);
+			out[length] = 'K';
+		} else if (f < 1.0E9f) {
+			length = write(f / 1000000.0f, out, 0);
+			out[length] = 'M';
+		} else {
+			length = write(f / 1.0E9f, out, 0);
+			out[length] = 'B';
+		}
+		return length + 1;
+	}
+
+	private int write(double value, char[] out, int offset) {
+		int pos = offset;
+		if (Double.isNaN(value)) {
+			out[pos++] = 'N';
+			out[pos++] = 'a';
+			out[pos++] = 'N';
+			return pos - offset;
+		}
+		//Sign bit, negative values rounded to 0 and -0.0 are written as "-0" like DecimalFormat does.
+		boolean negative = Double.doubleToRawLongBits(value) < 0;
+		if (negative) {
+			value = -value;
+		}
+		if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		//Rounding of the exact binary value: value * 10 is the sum of exact value * 8 and value * 2,
+		//error is the part of the sum lost by rounding. So 0.15 which is slightly less is rounded down.
+		double value8 = value * 8;
+		double value2 = value * 2;
+		double tenthsValue = value8 + value2;
+		double added = tenthsValue - value8;
+		double error = (value8 - (tenthsValue - added)) + (value2 - added);
+		long tenths = (long) Math.floor(tenthsValue);
+		double rest = (tenthsValue - tenths - 0.5) + error;
+		if (rest > 0 || (rest == 0 && (tenths & 1) == 1)) {
+			tenths++;
+		}
+		if (negative) {
+			out[pos++] = '-';
+		}
+		long integer = tenths / 10;
+		int fraction = (int) (tenths % 10);
+
+		//Write integer digits in reverse order.
+		int count = 0;
+		int groupCount = 0;
+		do {
+			if (groupCount == 3) {
+				digits[count++] = groupingSeparator;
+				groupCount = 0;
+			}
+			digits[count++] = (char) ('0' + integer % 10);
+			groupCount++;
+			integer /= 10;
+		} while (integer > 0);
+		while (count > 0) {
+			out[pos++] = digits[--count];
+		}
+		if (fraction > 0) {
+			out[pos++] = decimalSeparator;
+			out[pos++] = (char) ('0' + fraction);
+		}
+		return pos - offset;
+	}
+}
@@ -0,0 +1,363 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Range index over chart columns.
+ * Answers max and min of lines for an index range in O(log n), lines are selected by each query,
+ * so views with different lines state share one index. Stacked sums depend on lines state, see {@link SumIndex}.
+ * Each tree is stored as an array of size 2*capacity where leaves are placed in [capacity, 2*capacity),
+ * capacity is a power of two, so values appended to the end update only paths to the root.
+ * Leaves are used as a ring starting from head, so values removed from or inserted to the beginning
+ * do not rebuild trees.
+ * Capacity is not less than columns arrays size, the index is reallocated only when columns are reallocated.
+ * Large columns may be indexed in parallel on a background pool.
+ */
+public class RangeIndex {
+
+	/** Leaves count of subtrees built as one task. */
+	private static final int CHUNK_SIZE = 1 << 14;
+	/** Smaller columns are built on the calling thread, tasks overhead is bigger than the gain. */
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	private int length;
+	private int capacity;
+	/** Leaf of the first value. */
+	private int head;
+	/** Index of the first value in columns. */
+	private int start;
+	private int[][] columns;
+
+	/** Max values tree for each line. */
+	private final int[][] maxTree;
+	/** Min values tree for each line. */
+	private final int[][] minTree;
+
+	public RangeIndex(int[][] columns) {
+		this(columns, columns.length > 0 ? columns[0].length : 0);
+	}
+
+	/**
+	 * @param length Count of values used from the beginning of each column.
+	 */
+	public RangeIndex(int[][] columns, int length) {
+		this(columns, 0, length, null);
+	}
+
+	/**
+	 * @param start Index of the first value in columns.
+	 * @param length Count of values used starting from start.
+	 * @param pool Pool to build trees of large columns in parallel by chunks of values, null to build on
+	 * the calling thread.
+	 */
+	public RangeIndex(int[][] columns, int start, int length, ForkJoinPool pool) {
+		maxTree = new int[columns.length][];
+		minTree = new int[columns.length][];
+		build(columns, start, length, pool);
+	}
+
+	/**
+	 * Rebuild index for changed values. Trees are reused when the capacity is not changed.
+	 */
+	public void reset(int[][] columns, int start, int length) {
+		build(columns, start, length, null);
+	}
+
+	private void build(int[][] columns, int start, int length, ForkJoinPool pool) {
+		this.columns = columns;
+		this.start = start;
+		this.length = length;
+		head = 0;
+		int cap = 1;
+		while (cap < Math.max(length, columns.length > 0 ? columns[0].length : 0)) {
+			cap <<= 1;
+		}
+		if (maxTree.length > 0 && (maxTree[0] == null || cap != capacity)) {
+			for (int j = 0; j < columns.length; j++) {
+				maxTree[j] = new int[2 * cap];
+				minTree[j] = new int[2 * cap];
+			}
+		}
+		capacity = cap;
+		int chunk = Math.min(capacity, CHUNK_SIZE);
+		if (pool != null && length >= PARALLEL_THRESHOLD) {
+			pool.invoke(new BuildTask(0, capacity));
+		} else {
+			for (int from = 0; from < capacity; from += chunk) {
+				buildChunk(from, from + chunk);
+			}
+		}
+		//Nodes above chunks.
+		for (int i = capacity / chunk - 1; i > 0; i--) {
+			for (int j = 0; j < columns.length; j++) {
+				maxTree[j][i] = Math.max(maxTree[j][2 * i], maxTree[j][2 * i + 1]);
+				minTree[j][i] = Math.min(minTree[j][2 * i], minTree[j][2 * i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Fill leaves of range [from, to) and nodes of its subtree, the range is aligned to its size.
+	 * Chunks do not share nodes, so they are built in parallel.
+	 */
+	private void buildChunk(int from, int to) {
+		if (from >= length) {
+			//Not used nodes are never queried.
+			return;
+		}
+		int end = Math.min(to, length);
+		for (int j = 0; j < columns.length; j++) {
+			System.arraycopy(columns[j], start + from, maxTree[j], capacity + from, end - from);
+			System.arraycopy(columns[j], start + from, minTree[j], capacity + from, end - from);
+			for (int size = (to - from) >> 1, lo = (capacity + from) >> 1; size > 0; size >>= 1, lo >>= 1) {
+				for (int i = lo; i < lo + size; i++) {
+					maxTree[j][i] = Math.max(maxTree[j][2 * i], maxTree[j][2 * i + 1]);
+					minTree[j][i] = Math.min(minTree[j][2 * i], minTree[j][2 * i + 1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Add values appended to the end of columns. Trees are rebuilt only when capacity is exceeded.
+	 * @param columns Columns with the same values before the new ones, arrays may be reallocated.
+	 * @param start Index of the first value in columns.
+	 * @param newLength Count of values used starting from start.
+	 */
+	public void append(int[][] columns, int start, int newLength) {
+		if (newLength > capacity) {
+			build(columns, start, newLength, null);
+			return;
+		}
+		this.columns = columns;
+		this.start = start;
+		int from = length;
+		length = newLength;
+		updateLeaves(from, newLength);
+	}
+
+	/**
+	 * Add count values inserted to the beginning of columns. Trees are rebuilt only when capacity is exceeded.
+	 * @param columns Columns with the same values after the new ones, arrays may be reallocated.
+	 * @param start Index of the first inserted value in columns.
+	 */
+	public void prepend(int[][] columns, int start, int count) {
+		if (length + count > capacity) {
+			build(columns, start, length + count, null);
+			return;
+		}
+		this.columns = columns;
+		this.start = start;
+		head = (head - count) & (capacity - 1);
+		length += count;
+		updateLeaves(0, count);
+	}
+
+	/**
+	 * Copy values [from, to) into leaves and update their paths to the root.
+	 */
+	private void updateLeaves(int from, int to) {
+		for (int i = from; i < to; i++) {
+			for (int j = 0; j < columns.length; j++) {
+				int val = columns[j][start + i];
+				int pos = capacity + ((head + i) & (capacity - 1));
+				maxTree[j][pos] = val;
+				minTree[j][pos] = val;
+				for (pos >>= 1; pos > 0; pos >>= 1) {
+					maxTree[j][pos] = Math.max(maxTree[j][2 * pos], maxTree[j][2 * pos + 1]);
+					minTree[j][pos] = Math.min(minTree[j][2 * pos], minTree[j][2 * pos + 1]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Drop count values removed from the beginning, remaining values are not changed.
+	 */
+	public void removeFirst(int count) {
+		count = Math.min(count, length);
+		head = (head + count) & (capacity - 1);
+		length -= count;
+	}
+
+	/**
+	 * Max value of lines in range [from, to).
+	 * @param lines Lines included into calculation.
+	 * @return max value or Integer.MIN_VALUE when range is empty or there is no included lines.
+	 */
+	public int getMax(int from, int to, boolean[] lines) {
+		int max = Integer.MIN_VALUE;
+		for (int j = 0; j < maxTree.length; j++) {
+			if (lines[j]) {
+				max = Math.max(max, queryMax(maxTree[j], from, to));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Min value of lines in range [from, to).
+	 * @param lines Lines included into calculation.
+	 * @return min value or Integer.MAX_VALUE when range is empty or there is no included lines.
+	 */
+	public int getMin(int from, int to, boolean[] lines) {
+		int min = Integer.MAX_VALUE;
+		for (int j = 0; j < minTree.length; j++) {
+			if (lines[j]) {
+				min = Math.min(min, queryMin(minTree[j], from, to));
+			}
+		}
+		return min;
+	}
+
+	/**
+	 * Max value of the line in range [from, to).
+	 * @return max value or Integer.MIN_VALUE when range is empty.
+	 */
+	public int getLineMax(int line, int from, int to) {
+		return queryMax(maxTree[line], from, to);
+	}
+
+	/**
+	 * Max of values of lines transformed by line scales in range [from, to).
+	 * @param lines Lines included into calculation.
+	 * @return max value or negative infinity when range is empty or there is no included lines.
+	 */
+	public float getMax(int from, int to, boolean[] lines, LineScales scales) {
+		float max = Float.NEGATIVE_INFINITY;
+		if (Math.max(from, 0) >= Math.min(to, length)) {
+			return max;
+		}
+		for (int j = 0; j < maxTree.length; j++) {
+			if (lines[j]) {
+				int val = scales.getScale(j) >= 0 ? queryMax(maxTree[j], from, to) : queryMin(minTree[j], from, to);
+				max = Math.max(max, scales.apply(j, val));
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Min of values of lines transformed by line scales in range [from, to).
+	 * @param lines Lines included into calculation.
+	 * @return min value or positive infinity when range is empty or there is no included lines.
+	 */
+	public float getMin(int from, int to, boolean[] lines, LineScales scales) {
+		float min = Float.POSITIVE_INFINITY;
+		if (Math.max(from, 0) >= Math.min(to, length)) {
+			return min;
+		}
+		for (int j = 0; j < minTree.length; j++) {
+			if (lines[j]) {
+				int val = scales.getScale(j) >= 0 ? queryMin(minTree[j], from, to) : queryMax(maxTree[j], from, to);
+				min = Math.min(min, scales.apply(j, val));
+			}
+		}
+		return min;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	private int queryMax(int[] tree, int from, int to) {
+		if (from < 0) { from = 0; }
+		if (to > length) { to = length; }
+		if (from >= to) {
+			return Integer.MIN_VALUE;
+		}
+		//Leaves range is split in two where the ring wraps.
+		int lo = (head + from) & (capacity - 1);
+		int hi = lo + to - from;
+		if (hi <= capacity) {
+			return maxOfLeaves(tree, lo, hi);
+		}
+		return Math.max(maxOfLeaves(tree, lo, capacity), maxOfLeaves(tree, 0, hi - capacity));
+	}
+
+	private int queryMin(int[] tree, int from, int to) {
+		if (from < 0) { from = 0; }
+		if (to > length) { to = length; }
+		if (from >= to) {
+			return Integer.MAX_VALUE;
+		}
+		int lo = (head + from) & (capacity - 1);
+		int hi = lo + to - from;
+		if (hi <= capacity) {
+			return minOfLeaves(tree, lo, hi);
+		}
+		return Math.min(minOfLeaves(tree, lo, capacity), minOfLeaves(tree, 0, hi - capacity));
+	}
+
+	/**
+	 * Max of leaves [from, to) of the tree, the range does not wrap.
+	 */
+	private int maxOfLeaves(int[] tree, int from, int to) {
+		int res = Integer.MIN_VALUE;
+		for (from += capacity, to += capacity; from < to; from >>= 1, to >>= 1) {
+			if ((from & 1) == 1) {
+				res = Math.max(res, tree[from++]);
+			}
+			if ((to & 1) == 1) {
+				res = Math.max(res, tree[--to]);
+			}
+		}
+		return res;
+	}
+
+	private int minOfLeaves(int[] tree, int from, int to) {
+		int res = Integer.MAX_VALUE;
+		for (from += capacity, to += capacity; from < to; from >>= 1, to >>= 1) {
+			if ((from & 1) == 1) {
+				res = Math.min(res, tree[from++]);
+			}
+			if ((to & 1) == 1) {
+				res = Math.min(res, tree[--to]);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Splits the leaves range in halves until chunk size, so each task builds one subtree.
+	 */
+	private class BuildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+
+		BuildTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= CHUNK_SIZE) {
+				buildChunk(from, to);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(new BuildTask(from, mid), new BuildTask(mid, to));
+			}
+		}
+	}
+}
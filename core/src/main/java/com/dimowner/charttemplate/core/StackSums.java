@@ -0,0 +1,97 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Prefix sums of stacked lines. Row index holds sum of calculated lines 0..index except animated line,
+ * animated line is added in {@link #get(int, int)} so alpha animation does not invalidate sums.
+ * Rows have the same free space as data, so appended points are calculated without reallocation.
+ */
+public class StackSums {
+
+	private ChartModel model;
+	private int[][] sums;
+	private int length = 0;
+	private int animIndex = -1;
+	private float animKoef = 1;
+	private boolean valid = false;
+
+	/**
+	 * Calculate all sums on the next update, lines state changed or points were removed.
+	 */
+	public void invalidate() {
+		valid = false;
+	}
+
+	/**
+	 * Update sums if lines state changed since last update, only appended points are calculated otherwise.
+	 * @param calculated Lines included into sums.
+	 * @param animIndex Animated line index or -1.
+	 * @param animKoef Animated line values multiplier.
+	 */
+	public void update(ChartModel model, boolean[] calculated, int animIndex, float animKoef) {
+		this.animKoef = animKoef;
+		int length = model.getLength();
+		boolean valid = this.valid && this.model == model && this.animIndex == animIndex;
+		if (valid && this.length == length) {
+			return;
+		}
+		int from = valid ? this.length : 0;
+		int lines = model.getLinesCount();
+		if (sums == null || sums.length != lines || (lines > 0 && sums[0].length < length)) {
+			int capacity = model.getTime().length;
+			int[][] s = new int[lines][capacity];
+			if (from > 0) {
+				for (int j = 0; j < lines; j++) {
+					System.arraycopy(sums[j], 0, s[j], 0, from);
+				}
+			}
+			sums = s;
+		}
+		for (int j = 0; j < lines; j++) {
+			int[] row = sums[j];
+			int[] prev = j > 0 ? sums[j-1] : null;
+			int[] values = model.getValues(j);
+			int start = model.getStart();
+			boolean add = calculated[j] && j != animIndex;
+			for (int i = from; i < length; i++) {
+				row[i] = (prev != null ? prev[i] : 0) + (add ? values[start + i] : 0);
+			}
+		}
+		this.model = model;
+		this.animIndex = animIndex;
+		this.length = length;
+		this.valid = true;
+	}
+
+	/**
+	 * Sum of lines 0..line at point i including animated line.
+	 */
+	public int get(int line, int i) {
+		if (animIndex >= 0 && animIndex <= line) {
+			return sums[line][i] + (int)(animKoef*model.getVal(animIndex, i));
+		}
+		return sums[line][i];
+	}
+
+	/**
+	 * Multiplier of the line values, less than 1 for animated line.
+	 */
+	public float getKoef(int line) {
+		return line == animIndex ? animKoef : 1;
+	}
+}
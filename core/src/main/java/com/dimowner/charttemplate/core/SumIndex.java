@@ -0,0 +1,201 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Max of stacked sums of calculated lines for an index range in O(log n).
+ * Sums depend on lines state, so an index is built for each lines state used by views,
+ * max and min of lines do not depend on it and are queried from one {@link RangeIndex}.
+ * Tree is stored as an array of size 2*capacity where leaves contain sums and are placed in [capacity, 2*capacity).
+ * Leaves are used as a ring like in {@link RangeIndex}, so values removed from or inserted to the beginning
+ * do not rebuild the tree.
+ */
+public class SumIndex {
+
+	private int length;
+	private int capacity;
+	/** Leaf of the first sum. */
+	private int head;
+	/** Index of the first value in columns. */
+	private int start;
+	private int[][] columns;
+	private final boolean[] calculated;
+	private int[] tree;
+
+	/**
+	 * @param start Index of the first value in columns.
+	 * @param length Count of values used starting from start.
+	 * @param linesCalculated Lines included into sums, the array is copied.
+	 */
+	public SumIndex(int[][] columns, int start, int length, boolean[] linesCalculated) {
+		calculated = linesCalculated.clone();
+		build(columns, start, length);
+	}
+
+	/**
+	 * Rebuild index for changed values. Tree is reused when the capacity is not changed.
+	 */
+	public void reset(int[][] columns, int start, int length) {
+		build(columns, start, length);
+	}
+
+	private void build(int[][] columns, int start, int length) {
+		this.columns = columns;
+		this.start = start;
+		this.length = length;
+		head = 0;
+		int cap = 1;
+		while (cap < Math.max(length, columns.length > 0 ? columns[0].length : 0)) {
+			cap <<= 1;
+		}
+		if (tree == null || cap != capacity) {
+			tree = new int[2 * cap];
+		}
+		capacity = cap;
+		for (int i = 0; i < length; i++) {
+			tree[capacity + i] = sum(i);
+		}
+		for (int i = capacity - 1; i > 0; i--) {
+			tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Add values appended to the end of columns. Tree is rebuilt only when capacity is exceeded.
+	 * @param columns Columns with the same values before the new ones, arrays may be reallocated.
+	 * @param start Index of the first value in columns.
+	 * @param newLength Count of values used starting from start.
+	 */
+	public void append(int[][] columns, int start, int newLength) {
+		if (newLength > capacity) {
+			build(columns, start, newLength);
+			return;
+		}
+		this.columns = columns;
+		this.start = start;
+		int from = length;
+		length = newLength;
+		updateLeaves(from, newLength);
+	}
+
+	/**
+	 * Add count values inserted to the beginning of columns. Tree is rebuilt only when capacity is exceeded.
+	 * @param columns Columns with the same values after the new ones, arrays may be reallocated.
+	 * @param start Index of the first inserted value in columns.
+	 */
+	public void prepend(int[][] columns, int start, int count) {
+		if (length + count > capacity) {
+			build(columns, start, length + count);
+			return;
+		}
+		this.columns = columns;
+		this.start = start;
+		head = (head - count) & (capacity - 1);
+		length += count;
+		updateLeaves(0, count);
+	}
+
+	private void updateLeaves(int from, int to) {
+		for (int i = from; i < to; i++) {
+			int pos = capacity + ((head + i) & (capacity - 1));
+			tree[pos] = sum(i);
+			for (pos >>= 1; pos > 0; pos >>= 1) {
+				tree[pos] = Math.max(tree[2 * pos], tree[2 * pos + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Drop count sums of values removed from the beginning, remaining values are not changed.
+	 */
+	public void removeFirst(int count) {
+		count = Math.min(count, length);
+		head = (head + count) & (capacity - 1);
+		length -= count;
+	}
+
+	/**
+	 * Include or exclude line from sums, by adding or subtracting values of the line.
+	 */
+	public void setLineCalculated(int line, boolean calc) {
+		if (line < 0 || line >= calculated.length || calculated[line] == calc) {
+			return;
+		}
+		calculated[line] = calc;
+		int[] vals = columns[line];
+		int mask = capacity - 1;
+		if (calc) {
+			for (int i = 0; i < length; i++) {
+				tree[capacity + ((head + i) & mask)] += vals[start + i];
+			}
+		} else {
+			for (int i = 0; i < length; i++) {
+				tree[capacity + ((head + i) & mask)] -= vals[start + i];
+			}
+		}
+		for (int i = capacity - 1; i > 0; i--) {
+			tree[i] = Math.max(tree[2 * i], tree[2 * i + 1]);
+		}
+	}
+
+	/**
+	 * Max sum of calculated lines values in range [from, to).
+	 * @return max sum or Integer.MIN_VALUE when range is empty.
+	 */
+	public int getMax(int from, int to) {
+		if (from < 0) { from = 0; }
+		if (to > length) { to = length; }
+		if (from >= to) {
+			return Integer.MIN_VALUE;
+		}
+		//Leaves range is split in two where the ring wraps.
+		int lo = (head + from) & (capacity - 1);
+		int hi = lo + to - from;
+		if (hi <= capacity) {
+			return maxOfLeaves(lo, hi);
+		}
+		return Math.max(maxOfLeaves(lo, capacity), maxOfLeaves(0, hi - capacity));
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	private int maxOfLeaves(int from, int to) {
+		int res = Integer.MIN_VALUE;
+		for (from += capacity, to += capacity; from < to; from >>= 1, to >>= 1) {
+			if ((from & 1) == 1) {
+				res = Math.max(res, tree[from++]);
+			}
+			if ((to & 1) == 1) {
+				res = Math.max(res, tree[--to]);
+			}
+		}
+		return res;
+	}
+
+	private int sum(int i) {
+		int sum = 0;
+		for (int j = 0; j < columns.length; j++) {
+			if (calculated[j]) {
+				sum += columns[j][start + i];
+			}
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+/**
+ * Visible part of a chart and mapping of its values to screen coordinates.
+ * Mutable so that a view updates it before each frame without allocations.
+ */
+public class Viewport {
+
+	/** Index of the first visible point, may be fractional. */
+	private float scrollIndex = 0;
+	/** X distance of the first point from the left edge. */
+	private float scrollPos = 0;
+	/** Distance between neighbour points in pixels. */
+	private float step = 1;
+	private float width = 1;
+	/** Points are laid out this far beyond the visible edges. */
+	private float padding = 0;
+	/** Y coordinate of value 0 or of min value for line charts. */
+	private float baseline = 0;
+	private float valueScale = 0;
+	private float minValue = 0;
+	/** Transform of values of the laid out line, see {@link LineScales}. */
+	private float lineScale = 1;
+	private float lineOffset = 0;
+	/** Pixels of one percent for percentage charts. */
+	private float percentScale = 0;
+	/** Range of points laid out by {@link #resolveRange}, valid until scroll or size is changed. */
+	private boolean resolved = false;
+	private int firstIndex = 0;
+	private int endIndex = 0;
+
+	public void setScroll(float scrollIndex, float scrollPos, float step) {
+		this.scrollIndex = scrollIndex;
+		this.scrollPos = scrollPos;
+		this.step = step;
+		resolved = false;
+	}
+
+	public void setSize(float width, float padding) {
+		this.width = width;
+		this.padding = padding;
+		resolved = false;
+	}
+
+	public void setValues(float baseline, float valueScale, float minValue) {
+		this.baseline = baseline;
+		this.valueScale = valueScale;
+		this.minValue = minValue;
+		lineScale = 1;
+		lineOffset = 0;
+	}
+
+	/**
+	 * Transform of line values applied by {@link #getY}, reset to identity by {@link #setValues}.
+	 */
+	public void setLineTransform(float scale, float offset) {
+		lineScale = scale;
+		lineOffset = offset;
+	}
+
+	public void setPercentScale(float percentScale) {
+		this.percentScale = percentScale;
+	}
+
+	/**
+	 * Find range of points laid out. Points are placed by index, so the range is calculated from scroll
+	 * position for any time between points. One more point is included on each side so that lines reach the edges.
+	 * Call after scroll and size are set.
+	 */
+	public void resolveRange(int length) {
+		int first = (int) Math.floor((scrollPos - padding) / step);
+		int end = (int) Math.floor((scrollPos + width + padding) / step) + 2;
+		firstIndex = Math.max(0, Math.min(first, length));
+		endIndex = Math.max(firstIndex, Math.min(end, length));
+		resolved = true;
+	}
+
+	/**
+	 * Index of the first point laid out, it is a little to the left of the visible area.
+	 */
+	public int getFirstIndex() {
+		if (resolved) {
+			return firstIndex;
+		}
+		int first = (int) scrollIndex - (int) (padding / step);
+		return first < 0 ? 0 : first;
+	}
+
+	/**
+	 * Index after the last point laid out, unlimited until {@link #resolveRange} is called.
+	 */
+	public int getEndIndex() {
+		return resolved ? endIndex : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * X coordinate of a point.
+	 */
+	public float getX(int index) {
+		return index * step - scrollPos;
+	}
+
+	/**
+	 * Y coordinate of a line chart value, line transform is applied to the value.
+	 */
+	public float getY(float value) {
+		return baseline - (value * lineScale + lineOffset - minValue) * valueScale;
+	}
+
+	/**
+	 * Points after x are not visible, x is the coordinate of previous point plus distance to the next one.
+	 */
+	public boolean isAfterEnd(float x, float distance) {
+		return x - distance > width + padding;
+	}
+
+	public float getScrollPos() {
+		return scrollPos;
+	}
+
+	public float getScrollIndex() {
+		return scrollIndex;
+	}
+
+	public float getStep() {
+		return step;
+	}
+
+	public float getWidth() {
+		return width;
+	}
+
+	public float getPadding() {
+		return padding;
+	}
+
+	public float getBaseline() {
+		return baseline;
+	}
+
+	public float getValueScale() {
+		return valueScale;
+	}
+
+	public float getMinValue() {
+		return minValue;
+	}
+
+	public float getPercentScale() {
+		return percentScale;
+	}
+}
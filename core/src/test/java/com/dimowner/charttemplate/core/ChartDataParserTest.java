@@ -0,0 +1,185 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import com.google.gson.Gson;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChartDataParserTest {
+
+	/** Charts of the contest format, assets are shared with the app module. */
+	private static final String[] ASSETS_DIRS = {"../app/src/main/assets/contest", "app/src/main/assets/contest"};
+
+	private static final ChartDataParser.ChartFactory<Chart> FACTORY = new ChartDataParser.ChartFactory<Chart>() {
+		@Override
+		public Chart create(long[] time, int[][] columns, String[] names, String[] types, String[] colors,
+								  boolean yScaled, boolean percentage, boolean stacked) {
+			return new Chart(time, columns, names, types, colors, yScaled, percentage, stacked);
+		}
+	};
+
+	@Test
+	public void assetsMatchGson() throws IOException {
+		List<File> files = new ArrayList<>();
+		listJson(findAssets(), files);
+		assertTrue(files.size() > 0);
+		Gson gson = new Gson();
+		for (File file : files) {
+			Chart parsed = ChartDataParser.parse(new FileInputStream(file), FACTORY);
+			Chart expected;
+			Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				expected = fromData(gson.fromJson(reader, Data.class));
+			} finally {
+				reader.close();
+			}
+			expected.assertEquals(file.getPath(), parsed);
+		}
+	}
+
+	@Test
+	public void missingLinesAreEmpty() throws IOException {
+		Chart chart = parse("{\"columns\":[[\"x\",1,2]],\"names\":{\"y0\":\"A\"},\"unknown\":[1,{}]}");
+		assertArrayEquals(new long[] {1, 2}, chart.time);
+		assertEquals(1, chart.columns.length);
+		assertEquals(0, chart.columns[0].length);
+		assertEquals("A", chart.names[0]);
+	}
+
+	@Test
+	public void truncatedInputFails() throws IOException {
+		String json = "{\"columns\":[[\"x\",1,2,3],[\"y0\",4,5,6]],\"names\":{\"y0\":\"A\"},\"types\":{\"y0\":\"line\"}}";
+		assertEquals(3, parse(json).time.length);
+		for (int length = 0; length < json.length() - 1; length += 5) {
+			assertParseFails(json.substring(0, length));
+		}
+	}
+
+	@Test
+	public void malformedInputFails() {
+		assertParseFails("not json");
+		assertParseFails("[]");
+		assertParseFails("{\"columns\":{}}");
+		assertParseFails("{\"columns\":[[]]}");
+		assertParseFails("{\"columns\":[[\"y0\",1,\"a\"]]}");
+		assertParseFails("{\"names\":[\"y0\"]}");
+		assertParseFails("{\"stacked\":\"yes\"}");
+	}
+
+	/**
+	 * Errors are the ones handled by chart loader.
+	 */
+	private static void assertParseFails(String json) {
+		try {
+			parse(json);
+			fail("Parsed: " + json);
+		} catch (IOException | IllegalStateException | NumberFormatException ex) {
+			//Expected.
+		}
+	}
+
+	private static Chart parse(String json) throws IOException {
+		return ChartDataParser.parse(new ByteArrayInputStream(json.getBytes("UTF-8")), FACTORY);
+	}
+
+	private static Chart fromData(Data data) {
+		String[] keys = data.getColumnsKeys();
+		int[][] columns = new int[keys.length][];
+		String[] names = new String[keys.length];
+		String[] types = new String[keys.length];
+		String[] colors = new String[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			columns[i] = data.getValues(keys[i]);
+			names[i] = data.getName(keys[i]);
+			types[i] = data.getType(keys[i]);
+			colors[i] = data.getColor(keys[i]);
+		}
+		return new Chart(data.getTimeArray(), columns, names, types, colors,
+				data.isYscaled(), data.isPercentage(), data.isStacked());
+	}
+
+	private static File findAssets() {
+		for (String path : ASSETS_DIRS) {
+			File dir = new File(path);
+			if (dir.isDirectory()) {
+				return dir;
+			}
+		}
+		throw new AssertionError("Assets not found: " + Arrays.toString(ASSETS_DIRS));
+	}
+
+	private static void listJson(File dir, List<File> out) {
+		File[] files = dir.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					listJson(file, out);
+				} else if (file.getName().endsWith(".json")) {
+					out.add(file);
+				}
+			}
+		}
+	}
+
+	private static class Chart {
+		final long[] time;
+		final int[][] columns;
+		final String[] names;
+		final String[] types;
+		final String[] colors;
+		final boolean[] flags;
+
+		Chart(long[] time, int[][] columns, String[] names, String[] types, String[] colors,
+				boolean yScaled, boolean percentage, boolean stacked) {
+			this.time = time;
+			this.columns = columns;
+			this.names = names;
+			this.types = types;
+			this.colors = colors;
+			this.flags = new boolean[] {yScaled, percentage, stacked};
+		}
+
+		void assertEquals(String message, Chart actual) {
+			assertArrayEquals(message, time, actual.time);
+			assertArrayEquals(message, names, actual.names);
+			assertArrayEquals(message, types, actual.types);
+			assertArrayEquals(message, colors, actual.colors);
+			assertArrayEquals(message, flags, actual.flags);
+			org.junit.Assert.assertEquals(message, columns.length, actual.columns.length);
+			for (int i = 0; i < columns.length; i++) {
+				assertArrayEquals(message, columns[i], actual.columns[i]);
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChartLayoutTest {
+
+	private static final float STEP = 10;
+	private static final float WIDTH = 100;
+	private static final float BASELINE = 200;
+	private static final int LINES = 3;
+
+	/**
+	 * Each layer has bottom and top vertex per point, so a strip of n points is n * 2 vertices and n * 2 - 2 triangles.
+	 * Layers share edges: bottom of a layer is the top of the previous one.
+	 */
+	@Test
+	public void areaStripVertexCounts() {
+		ArrayChartModel model = createModel(10);
+		Viewport vp = viewport(0, model.getLength());
+		float[] totals = ChartLayout.calculateTotals(model, new boolean[] {true, true, true}, -1, 1, null, 0);
+		float[][] strips = layoutAreas(model, 1, totals, vp, new float[model.getLength() * 4]);
+		for (int j = 0; j < LINES; j++) {
+			assertEquals(10 * 4, strips[j].length);
+			assertEquals(20, strips[j].length / 2);
+			assertEquals(18, strips[j].length / 2 - 2);
+			for (int k = 0, i = 0; k < strips[j].length; k += 4, i++) {
+				assertEquals(vp.getX(i), strips[j][k], 0);
+				assertEquals(vp.getX(i), strips[j][k + 2], 0);
+				float bottom = j > 0 ? strips[j - 1][k + 3] : BASELINE;
+				assertEquals(bottom, strips[j][k + 1], 0.001f);
+			}
+		}
+		//Percentage layers fill the whole height.
+		for (int k = 0; k < strips[LINES - 1].length; k += 4) {
+			assertEquals(BASELINE - 100 * vp.getPercentScale(), strips[LINES - 1][k + 3], 0.001f);
+		}
+	}
+
+	/**
+	 * Points are taken with stride, the last point is added when stride skips it.
+	 */
+	@Test
+	public void areaStripWithStrideEndsAtLastPoint() {
+		assertEquals(4 * 4, layoutAreas(createModel(10), 3, null, viewport(0, 10), new float[400])[0].length);
+		float[][] strips = layoutAreas(createModel(11), 3, null, viewport(0, 11), new float[400]);
+		for (float[] strip : strips) {
+			assertEquals(5 * 4, strip.length);
+			assertEquals(90, strip[strip.length - 8], 0);
+			assertEquals(100, strip[strip.length - 4], 0);
+		}
+	}
+
+	/**
+	 * Only points of resolved range are laid out, and no more than fit into out array.
+	 */
+	@Test
+	public void areaStripOfScrolledRange() {
+		ArrayChartModel model = createModel(100);
+		Viewport vp = viewport(205, model.getLength());
+		assertEquals(20, vp.getFirstIndex());
+		assertEquals(32, vp.getEndIndex());
+		float[][] strips = layoutAreas(model, 1, null, vp, new float[400]);
+		for (float[] strip : strips) {
+			assertEquals(12 * 4, strip.length);
+			assertEquals(vp.getX(20), strip[0], 0);
+		}
+		strips = layoutAreas(model, 1, null, vp, new float[30]);
+		assertEquals(7 * 4, strips[0].length);
+	}
+
+	private static float[][] layoutAreas(ArrayChartModel model, int stride, float[] totals, Viewport vp, float[] out) {
+		StackSums sums = new StackSums();
+		sums.update(model, new boolean[] {true, true, true}, -1, 1);
+		ChartLayout layout = new ChartLayout();
+		float[][] strips = new float[LINES][];
+		for (int j = 0; j < LINES; j++) {
+			int count = layout.layoutAreaStrip(model.getValues(j), model.getStart(), model.getLength(), j, stride,
+					sums, totals, vp, out);
+			strips[j] = new float[count];
+			System.arraycopy(out, 0, strips[j], 0, count);
+		}
+		return strips;
+	}
+
+	private static ArrayChartModel createModel(int length) {
+		long[] time = new long[length];
+		int[][] columns = new int[LINES][length];
+		for (int i = 0; i < length; i++) {
+			time[i] = i;
+			for (int j = 0; j < LINES; j++) {
+				columns[j][i] = 1 + (i * (j + 3)) % 7;
+			}
+		}
+		return new ArrayChartModel(time, columns,
+				new int[] {ChartModel.TYPE_AREA, ChartModel.TYPE_AREA, ChartModel.TYPE_AREA}, false, true, true);
+	}
+
+	private static Viewport viewport(float scrollPos, int length) {
+		Viewport vp = new Viewport();
+		vp.setScroll(scrollPos / STEP, scrollPos, STEP);
+		vp.setSize(WIDTH, 0);
+		vp.setValues(BASELINE, 1, 0);
+		vp.setPercentScale(BASELINE / 100);
+		vp.resolveRange(length);
+		return vp;
+	}
+}
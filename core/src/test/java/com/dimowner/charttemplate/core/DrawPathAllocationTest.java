@@ -0,0 +1,130 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Layout and label formatting called by chart views on each frame of a scroll sweep do not allocate.
+ * Views themselves are checked by the instrumentation test of the app module.
+ */
+public class DrawPathAllocationTest {
+
+	private static final int POINTS = 5000;
+	private static final float WIDTH = 1080;
+	private static final float HEIGHT = 800;
+	/** Points visible at once. */
+	private static final float SIZE = 300;
+
+	private final ArrayChartModel lines = chart(ChartModel.TYPE_LINE, false, false);
+	private final ArrayChartModel bars = chart(ChartModel.TYPE_BAR, true, false);
+	private final ArrayChartModel areas = chart(ChartModel.TYPE_AREA, true, true);
+	private final boolean[] visible = {true, true, true};
+	private final ChartLayout layout = new ChartLayout();
+	private final Viewport vp = new Viewport();
+	private final MinMaxPyramid pyramid = new MinMaxPyramid(lines.getValues(0), 0, POINTS);
+	private final LttbCache lttbCache = new LttbCache(lines.getColumns(), 0, POINTS);
+	private final RangeIndex rangeIndex = new RangeIndex(lines.getColumns(), POINTS);
+	private final StackSums barSums = new StackSums();
+	private final StackSums areaSums = new StackSums();
+	private final NumberFormatter formatter = new NumberFormatter(',', '.');
+	private final float[] out = new float[POINTS * 4];
+	private final char[] label = new char[NumberFormatter.MAX_LENGTH];
+	private float[] totals;
+	private int sink;
+
+	@Test
+	public void scrollSweepDoesNotAllocate() {
+		com.sun.management.ThreadMXBean bean = threadBean();
+		long thread = Thread.currentThread().getId();
+		//First sweeps fill caches and let JIT compile the path.
+		for (int i = 0; i < 3; i++) {
+			sweep();
+		}
+		long calibration = bean.getThreadAllocatedBytes(thread);
+		calibration = bean.getThreadAllocatedBytes(thread) - calibration;
+		//JIT may allocate while recompiling the path during a sweep, allocating path allocates in every sweep.
+		long allocated = Long.MAX_VALUE;
+		for (int i = 0; i < 5 && allocated > 0; i++) {
+			long before = bean.getThreadAllocatedBytes(thread);
+			sweep();
+			allocated = Math.min(allocated, bean.getThreadAllocatedBytes(thread) - before - calibration);
+		}
+		assertEquals(0, allocated);
+	}
+
+	/**
+	 * Lay out every chart type and grid labels for each scroll position as views do on draw.
+	 */
+	private void sweep() {
+		for (float x = 0; x + SIZE < POINTS; x += 7.5f) {
+			float step = WIDTH / SIZE;
+			vp.setScroll(x, x * step, step);
+			vp.setSize(WIDTH, 20);
+			vp.resolveRange(POINTS);
+			int max = rangeIndex.getMax(vp.getFirstIndex(), vp.getEndIndex(), visible);
+			vp.setValues(HEIGHT, HEIGHT / Math.max(1, max), 0);
+			vp.setPercentScale(HEIGHT / 100);
+
+			sink += layout.layoutLine(lines.getValues(0), 0, POINTS, vp, out);
+			sink += layout.layoutLineLod(pyramid, vp, out);
+			sink += layout.layoutLineLttb(lines.getValues(1), 0,
+					lttbCache.getIndexes(1, lttbCache.chooseZoom(step)), vp, out);
+			barSums.update(bars, visible, -1, 1);
+			areaSums.update(areas, visible, -1, 1);
+			totals = ChartLayout.calculateTotals(areas, visible, -1, 1, totals, 0);
+			for (int j = 0; j < visible.length; j++) {
+				sink += layout.layoutBars(bars.getValues(j), 0, POINTS, 2, vp, out);
+				sink += layout.layoutStackedBars(bars.getValues(j), 0, POINTS, j, 2, barSums, null, vp, out);
+				sink += layout.layoutAreaStrip(areas.getValues(j), 0, POINTS, j, 3, areaSums, totals, vp, out);
+			}
+			for (int i = 0; i < ChartLayout.getGridCount(HEIGHT, 50); i++) {
+				sink += formatter.format(ChartLayout.adjustToGrid(max * i / 6f, 1), label, 0);
+				sink += formatter.formatAbbreviated(max * 1000f * i / 6f, label);
+			}
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean threadBean() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(bean.isThreadAllocatedMemorySupported());
+		bean.setThreadAllocatedMemoryEnabled(true);
+		return bean;
+	}
+
+	private static ArrayChartModel chart(int type, boolean stacked, boolean percentage) {
+		int[][] columns = RangeIndexTest.randomColumns(POINTS, type);
+		long[] time = new long[POINTS];
+		int[] types = new int[columns.length];
+		for (int i = 0; i < POINTS; i++) {
+			time[i] = i * 86400000L;
+			for (int j = 0; j < columns.length; j++) {
+				columns[j][i] = Math.abs(columns[j][i]);
+			}
+		}
+		for (int j = 0; j < types.length; j++) {
+			types[j] = type;
+		}
+		return new ArrayChartModel(time, columns, types, false, percentage, stacked);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineScalesTest {
+
+	@Test
+	public void smallestLineIsScaledToGlobalMax() {
+		TestModel model = new TestModel(new int[][] {{10, 50, 100}, {1, 5, 10}}, 3);
+		LineScales scales = LineScales.create(model);
+		assertEquals(1, scales.findScaledLine());
+		assertEquals(10f, scales.getScale(1), 0f);
+		assertEquals(1f, scales.getScale(0), 0f);
+	}
+
+	@Test
+	public void scalesFollowAppendedValues() {
+		TestModel model = new TestModel(new int[][] {{10, 50, 100, 0}, {1, 5, 10, 0}}, 3);
+		RangeIndex index = new RangeIndex(model.columns, model.length);
+		LineScales scales = LineScales.create(model);
+
+		//Appended value of the scaled line is above the initial max of all lines.
+		model.columns[0][3] = 20;
+		model.columns[1][3] = 400;
+		model.length = 4;
+		index.append(model.columns, 0, model.length);
+		scales.update(model, index);
+
+		assertEquals(0, scales.findScaledLine());
+		assertEquals(1f, scales.getScale(1), 0f);
+		assertEquals(4f, scales.getScale(0), 0f);
+		boolean[] lines = {true, true};
+		assertEquals(400f, index.getMax(0, model.length, lines, scales), 0f);
+		assertEquals(scales.getScale(0), LineScales.create(model).getScale(0), 0f);
+	}
+
+	@Test
+	public void notScaledChartHasIdentityScales() {
+		TestModel model = new TestModel(new int[][] {{10, 50, 100}, {1, 5, 10}}, 3);
+		model.yScaled = false;
+		LineScales scales = LineScales.create(model);
+		assertEquals(-1, scales.findScaledLine());
+	}
+
+	@Test
+	public void copyIsNotChangedWithSource() {
+		TestModel model = new TestModel(new int[][] {{10, 50, 100}, {1, 5, 10}}, 3);
+		LineScales scales = LineScales.create(model);
+		LineScales copy = new LineScales(scales);
+		model.yScaled = false;
+		scales.update(model, null);
+		assertEquals(10f, copy.getScale(1), 0f);
+		assertEquals(1f, scales.getScale(1), 0f);
+	}
+
+	static class TestModel implements ChartModel {
+
+		final int[][] columns;
+		int length;
+		boolean yScaled = true;
+
+		TestModel(int[][] columns, int length) {
+			this.columns = columns;
+			this.length = length;
+		}
+
+		@Override
+		public long[] getTime() {
+			long[] time = new long[columns[0].length];
+			for (int i = 0; i < time.length; i++) {
+				time[i] = i;
+			}
+			return time;
+		}
+
+		@Override
+		public int[] getValues(int line) {
+			return columns[line];
+		}
+
+		@Override
+		public int getVal(int line, int index) {
+			return columns[line][index];
+		}
+
+		@Override
+		public int getType(int line) {
+			return TYPE_LINE;
+		}
+
+		@Override
+		public int getLength() {
+			return length;
+		}
+
+		@Override
+		public int getStart() {
+			return 0;
+		}
+
+		@Override
+		public int getLinesCount() {
+			return columns.length;
+		}
+
+		@Override
+		public boolean isYscaled() {
+			return yScaled;
+		}
+
+		@Override
+		public boolean isPercentage() {
+			return false;
+		}
+
+		@Override
+		public boolean isStacked() {
+			return false;
+		}
+	}
+}
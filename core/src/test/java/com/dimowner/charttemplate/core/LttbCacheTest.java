@@ -0,0 +1,85 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LttbCacheTest {
+
+	@Test
+	public void bucketsKeepFirstAndLastValues() {
+		int[] values = RangeIndexTest.randomColumns(301, 1)[0];
+		for (int width = 1; width <= 64; width *= 2) {
+			int[] indexes = Lttb.downsampleBuckets(values, 0, 301, width, null, 0);
+			assertEquals(0, indexes[0]);
+			assertEquals(300, indexes[indexes.length - 1]);
+			assertEquals(2 + (299 + width - 1) / width, indexes.length);
+			for (int i = 1; i < indexes.length - 1; i++) {
+				//One value of each bucket.
+				assertEquals(i - 1, (indexes[i] - 1) / width);
+				assertTrue(indexes[i] > indexes[i - 1]);
+			}
+		}
+	}
+
+	/**
+	 * Results extended after appends are the same as results selected for all values at once.
+	 */
+	@Test
+	public void appendMatchesFullSelection() {
+		RangeIndexTest.Window window = new RangeIndexTest.Window(2000, 0);
+		Random random = new Random(11);
+		window.append(5, random);
+		LttbCache cache = new LttbCache(window.columns, window.start, window.length);
+		while (window.length < 1500) {
+			window.append(1 + random.nextInt(40), random);
+			cache.append(window.columns, window.start, window.length);
+			LttbCache full = new LttbCache(window.columns, window.start, window.length);
+			for (int zoom = 0; zoom <= full.chooseZoom(0); zoom++) {
+				for (int line = 0; line < window.columns.length; line++) {
+					assertArrayEquals(full.getIndexes(line, zoom), cache.getIndexes(line, zoom));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void updateAfterEvictionMatchesFullSelection() {
+		RangeIndexTest.Window window = new RangeIndexTest.Window(500, 0);
+		Random random = new Random(12);
+		window.append(100, random);
+		LttbCache cache = new LttbCache(window.columns, window.start, window.length);
+		for (int step = 0; step < 100; step++) {
+			window.append(1 + random.nextInt(9), random);
+			int removed = window.evict(300, 1 + random.nextInt(20));
+			if (removed == 0) {
+				cache.append(window.columns, window.start, window.length);
+			} else {
+				cache.update(window.columns, window.start, window.length);
+			}
+			int zoom = cache.chooseZoom(0.1f);
+			assertArrayEquals(Lttb.downsampleBuckets(window.columns[0], window.start, window.length, 1 << zoom, null, 0),
+					cache.getIndexes(0, zoom));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LttbTest {
+
+	@Test
+	public void errorOfSawAgainstStraightLine() {
+		int[] values = {0, 10, 0, 10, 0};
+		int[] indexes = {0, 4};
+		assertEquals(10, Lttb.maxError(values, 0, indexes), 0);
+		assertEquals(4, Lttb.meanError(values, 0, indexes), 1e-9);
+	}
+
+	@Test
+	public void errorIsInterpolatedBetweenSelectedValues() {
+		//Line from 0 to 40 passes 10, 20, 30, raw values differ from it by 5, 0 and 15.
+		int[] values = {0, 15, 20, 15, 40};
+		int[] indexes = {0, 4};
+		assertEquals(15, Lttb.maxError(values, 0, indexes), 1e-9);
+		assertEquals(20.0 / 5, Lttb.meanError(values, 0, indexes), 1e-9);
+		//Segment 0..15 passes 5 and 10 where raw values are 15 and 20, the last segment has no values between.
+		indexes = new int[] {0, 3, 4};
+		assertEquals(10, Lttb.maxError(values, 0, indexes), 1e-9);
+		assertEquals(20.0 / 5, Lttb.meanError(values, 0, indexes), 1e-9);
+	}
+
+	@Test
+	public void errorUsesStart() {
+		int[] values = {99, 99, 0, 10, 0, 10, 0, 99};
+		assertEquals(10, Lttb.maxError(values, 2, new int[] {0, 4}), 0);
+		assertEquals(4, Lttb.meanError(values, 2, new int[] {0, 4}), 1e-9);
+	}
+
+	@Test
+	public void noErrorWhenAllOrLinearValuesSelected() {
+		int[] values = RangeIndexTest.randomColumns(100, 9)[0];
+		int[] all = Lttb.downsampleBuckets(values, 0, 100, 1, null, 0);
+		assertEquals(100, all.length);
+		assertEquals(0, Lttb.maxError(values, 0, all), 0);
+		assertEquals(0, Lttb.meanError(values, 0, all), 0);
+
+		int[] linear = new int[100];
+		for (int i = 0; i < linear.length; i++) {
+			linear[i] = 3 * i - 50;
+		}
+		int[] indexes = Lttb.downsampleBuckets(linear, 0, 100, 16, null, 0);
+		assertEquals(0, Lttb.maxError(linear, 0, indexes), 1e-9);
+	}
+
+	/**
+	 * Spike of a bucket is selected, so it stays in the reduced line.
+	 */
+	@Test
+	public void spikesAreKept() {
+		int[] values = new int[65];
+		values[21] = 1000;
+		values[50] = -1000;
+		int[] indexes = Lttb.downsampleBuckets(values, 0, values.length, 8, null, 0);
+		assertArrayEquals(new int[] {0, 21}, new int[] {indexes[0], indexes[3]});
+		assertEquals(50, indexes[7]);
+	}
+
+	/**
+	 * Error of the bucket selection is not worse than of evenly spaced points of the same count.
+	 */
+	@Test
+	public void errorNotWorseThanEvenSelection() {
+		Random random = new Random(5);
+		int[] values = new int[1000];
+		int v = 0;
+		for (int i = 0; i < values.length; i++) {
+			v += random.nextInt(21) - 10;
+			values[i] = v + (random.nextInt(50) == 0 ? 300 : 0);
+		}
+		int[] indexes = Lttb.downsampleBuckets(values, 0, values.length, 16, null, 0);
+		int[] even = new int[indexes.length];
+		for (int i = 0; i < even.length; i++) {
+			even[i] = (int) ((long) i * (values.length - 1) / (even.length - 1));
+		}
+		assertTrue(Lttb.maxError(values, 0, indexes) < Lttb.maxError(values, 0, even));
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class MinMaxPyramidTest {
+
+	@Test
+	public void bucketsMatchScan() {
+		int[] values = RangeIndexTest.randomColumns(333, 5)[0];
+		assertBuckets(new MinMaxPyramid(values, 333), values, 0, 333);
+	}
+
+	@Test
+	public void appendMatchesScan() {
+		int[][] columns = RangeIndexTest.randomColumns(256, 6);
+		MinMaxPyramid pyramid = new MinMaxPyramid(columns[0], 0);
+		for (int length = 3; length <= 256; length += 3) {
+			pyramid.append(columns[0], 0, length);
+			assertBuckets(pyramid, columns[0], 0, length);
+		}
+	}
+
+	/**
+	 * Removed values move buckets grid, so the first bucket of a level may cover less values.
+	 */
+	@Test
+	public void repeatedEvictionsMatchScan() {
+		RangeIndexTest.Window window = new RangeIndexTest.Window(100, 0);
+		MinMaxPyramid pyramid = new MinMaxPyramid(window.columns[0], 0);
+		Random random = new Random(7);
+		for (int step = 0; step < 300; step++) {
+			window.append(1 + random.nextInt(9), random);
+			int removed = window.evict(70, 1 + random.nextInt(20));
+			pyramid.removeFirst(window.columns[0], window.start, removed);
+			pyramid.append(window.columns[0], window.start, window.length);
+			assertBuckets(pyramid, window.columns[0], window.start, window.length);
+		}
+	}
+
+	@Test
+	public void prependMatchesScan() {
+		RangeIndexTest.Window window = new RangeIndexTest.Window(1000, 900);
+		MinMaxPyramid pyramid = new MinMaxPyramid(window.columns[0], window.start, 0);
+		Random random = new Random(8);
+		while (window.start > 10) {
+			int count = 1 + random.nextInt(10);
+			window.prepend(count, random);
+			pyramid.prepend(window.columns[0], window.start, count);
+			assertBuckets(pyramid, window.columns[0], window.start, window.length);
+		}
+	}
+
+	private static void assertBuckets(MinMaxPyramid pyramid, int[] values, int start, int length) {
+		for (int level = 0; level < pyramid.getLevelsCount(); level++) {
+			int count = pyramid.getBucketsCount(level);
+			assertEquals(0, pyramid.getBucketStart(level, 0));
+			for (int b = 0; b < count; b++) {
+				int from = pyramid.getBucketStart(level, b);
+				int to = b + 1 < count ? pyramid.getBucketStart(level, b + 1) : length;
+				assertEquals(b, pyramid.getBucket(level, from));
+				int min = Integer.MAX_VALUE;
+				int max = Integer.MIN_VALUE;
+				for (int i = start + from; i < start + to; i++) {
+					min = Math.min(min, values[i]);
+					max = Math.max(max, values[i]);
+				}
+				assertEquals(min, pyramid.getMin(level, b));
+				assertEquals(max, pyramid.getMax(level, b));
+				assertEquals(values[start + from], pyramid.getFirst(level, b));
+				assertEquals(values[start + to - 1], pyramid.getLast(level, b));
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class NumberFormatterTest {
+
+	private static final double[] BOUNDARIES = {
+			0, -0.0, 0.04, 0.05, 0.06, -0.04, -0.05, 0.15, 0.25, 0.35, 0.45, 2.5, -2.5, 9.95, 99.95, 999.9,
+			999.94, 999.95, 999.96, 1000, 1234.55, -1234.55, 999999.94, 999999.95, 999999.96, 1000000,
+			-999999.95, 123456789.25, 1e12 + 0.5, Integer.MAX_VALUE, Integer.MIN_VALUE, 1e15 + 0.25};
+
+	private final DecimalFormat decimalFormat = new DecimalFormat("#,##0.#", DecimalFormatSymbols.getInstance(Locale.US));
+	private final char[] out = new char[NumberFormatter.MAX_LENGTH];
+
+	@Test
+	public void boundariesMatchDecimalFormat() {
+		NumberFormatter formatter = new NumberFormatter(',', '.');
+		for (double value : BOUNDARIES) {
+			assertEquals(String.valueOf(value), decimalFormat.format(value), format(formatter, value));
+		}
+	}
+
+	@Test
+	public void randomValuesMatchDecimalFormat() {
+		NumberFormatter formatter = new NumberFormatter(',', '.');
+		Random random = new Random(3);
+		for (int i = 0; i < 100000; i++) {
+			//Hundredths make many half even ties.
+			double value = (random.nextInt(2000000) - 1000000) / 100.0;
+			assertEquals(String.valueOf(value), decimalFormat.format(value), format(formatter, value));
+			float f = random.nextFloat() * (float) Math.pow(10, random.nextInt(12));
+			assertEquals(String.valueOf(f), decimalFormat.format((double) f), format(formatter, f));
+		}
+	}
+
+	@Test
+	public void abbreviatedMatchesDecimalFormatWithSuffix() {
+		NumberFormatter formatter = new NumberFormatter(',', '.');
+		float[] values = {0, 999.9f, 999.95f, 1000, 1050, 1550, 999999.95f, 1000000, 2.45e6f, 999999999, 1e9f, 3.75e12f};
+		for (float f : values) {
+			assertEquals(String.valueOf(f), formatAbbreviated(f), formatAbbreviated(formatter, f));
+		}
+		Random random = new Random(4);
+		for (int i = 0; i < 100000; i++) {
+			float f = random.nextFloat() * (float) Math.pow(10, random.nextInt(13));
+			assertEquals(String.valueOf(f), formatAbbreviated(f), formatAbbreviated(formatter, f));
+		}
+	}
+
+	/**
+	 * Cached texts stay correct when entries are replaced and when the same value is formatted both ways.
+	 */
+	@Test
+	public void cacheEvictionKeepsTexts() {
+		NumberFormatter formatter = new NumberFormatter(' ', ',');
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 1000; i++) {
+				double value = i * 1111.5;
+				String expected = decimalFormat.format(value).replace(',', ' ').replace('.', ',');
+				assertEquals(expected, format(formatter, value));
+				if (i % 3 == 0) {
+					//Recently used values are found in the cache.
+					assertEquals(expected, format(formatter, value));
+				}
+			}
+		}
+		assertEquals("1 500", format(formatter, 1500));
+		assertEquals("1,5K", formatAbbreviated(formatter, 1500));
+		assertEquals("1 500", format(formatter, 1500));
+		formatter.clearCache();
+		assertEquals("1,5K", formatAbbreviated(formatter, 1500));
+	}
+
+	@Test
+	public void formatWritesFromOffset() {
+		NumberFormatter formatter = new NumberFormatter(',', '.');
+		out[0] = '$';
+		int length = formatter.format(12345.67, out, 1);
+		assertEquals("$12,345.7", new String(out, 0, length + 1));
+		length = formatter.format(12345.67, out, 1);
+		assertEquals("$12,345.7", new String(out, 0, length + 1));
+	}
+
+	/**
+	 * Formatting of chart labels before NumberFormatter was used.
+	 */
+	private String formatAbbreviated(float f) {
+		if (f < 1000.0f) {
+			return decimalFormat.format((double) f);
+		} else if (f < 1000000.0f) {
+			return decimalFormat.format((double) (f / 1000.0f)) + "K";
+		} else if (f < 1.0E9f) {
+			return decimalFormat.format((double) (f / 1000000.0f)) + "M";
+		} else {
+			return decimalFormat.format((double) (f / 1.0E9f)) + "B";
+		}
+	}
+
+	private String format(NumberFormatter formatter, double value) {
+		return new String(out, 0, formatter.format(value, out, 0));
+	}
+
+	private String formatAbbreviated(NumberFormatter formatter, float f) {
+		return new String(out, 0, formatter.formatAbbreviated(f, out));
+	}
+}
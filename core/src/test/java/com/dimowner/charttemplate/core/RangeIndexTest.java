@@ -0,0 +1,263 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class RangeIndexTest {
+
+	private static final int LINES = 3;
+
+	@Test
+	public void maxAndMinMatchScan() {
+		int[][] columns = randomColumns(1000, 1);
+		RangeIndex index = new RangeIndex(columns, 1000);
+		boolean[] lines = {true, false, true};
+		Random random = new Random(2);
+		for (int q = 0; q < 200; q++) {
+			int from = random.nextInt(1000);
+			int to = from + 1 + random.nextInt(1000 - from);
+			assertEquals(scanMax(columns, from, to, lines), index.getMax(from, to, lines));
+			assertEquals(scanMin(columns, from, to, lines), index.getMin(from, to, lines));
+		}
+	}
+
+	/**
+	 * Views pass own lines state into queries, so they do not change results of each other.
+	 */
+	@Test
+	public void linesStateIsPassedByQuery() {
+		int[][] columns = {{1, 2, 3}, {10, 20, 30}, {5, 5, 5}};
+		RangeIndex index = new RangeIndex(columns, 3);
+		boolean[] first = {true, true, true};
+		boolean[] second = {true, false, true};
+		assertEquals(30, index.getMax(0, 3, first));
+		assertEquals(5, index.getMax(0, 3, second));
+		assertEquals(30, index.getMax(0, 3, first));
+		assertEquals(Integer.MIN_VALUE, index.getMax(0, 3, new boolean[LINES]));
+		assertEquals(Integer.MIN_VALUE, index.getMax(2, 2, first));
+	}
+
+	@Test
+	public void scaledMaxAndMin() {
+		int[][] columns = {{1, 2, 3}, {10, 20, 30}, {5, 5, 5}};
+		RangeIndex index = new RangeIndex(columns, 3);
+		LineScales scales = new LineScales(LINES);
+		scales.set(0, -10, 100);
+		boolean[] lines = {true, false, false};
+		assertEquals(90, index.getMax(0, 3, lines, scales), 0);
+		assertEquals(70, index.getMin(0, 3, lines, scales), 0);
+		assertEquals(Float.NEGATIVE_INFINITY, index.getMax(3, 3, lines, scales), 0);
+	}
+
+	@Test
+	public void appendMatchesBuild() {
+		int[][] columns = randomColumns(700, 3);
+		RangeIndex index = new RangeIndex(columns, 1);
+		for (int length = 2; length <= 700; length += 7) {
+			index.append(columns, 0, length);
+		}
+		index.append(columns, 0, 700);
+		boolean[] lines = {true, true, true};
+		RangeIndex built = new RangeIndex(columns, 700);
+		for (int from = 0; from < 700; from += 13) {
+			assertEquals(built.getMax(from, 700, lines), index.getMax(from, 700, lines));
+			assertEquals(built.getMin(from, 700, lines), index.getMin(from, 700, lines));
+		}
+	}
+
+	@Test
+	public void sumIndexMatchesScan() {
+		int[][] columns = randomColumns(500, 4);
+		boolean[] lines = {true, true, true};
+		SumIndex index = new SumIndex(columns, 0, 500, lines);
+		index.setLineCalculated(1, false);
+		lines[1] = false;
+		assertEquals(scanSumMax(columns, 0, 500, lines), index.getMax(0, 500));
+		assertEquals(scanSumMax(columns, 100, 101, lines), index.getMax(100, 101));
+		index.setLineCalculated(1, true);
+		lines[1] = true;
+		assertEquals(scanSumMax(columns, 17, 333, lines), index.getMax(17, 333));
+	}
+
+	/**
+	 * Sliding window drops values from the beginning without moving them, values are moved to the beginning
+	 * of arrays when there is no free space at the end. The index wraps its leaves around.
+	 */
+	@Test
+	public void repeatedEvictionsMatchScan() {
+		Window window = new Window(100, 0);
+		RangeIndex index = new RangeIndex(window.columns, 0);
+		SumIndex sums = new SumIndex(window.columns, 0, 0, new boolean[] {true, true, true});
+		boolean[] lines = {true, false, true};
+		Random random = new Random(3);
+		for (int step = 0; step < 300; step++) {
+			window.append(1 + random.nextInt(9), random);
+			int removed = window.evict(70, 1 + random.nextInt(20));
+			index.removeFirst(removed);
+			index.append(window.columns, window.start, window.length);
+			sums.removeFirst(removed);
+			sums.append(window.columns, window.start, window.length);
+			assertEquals(window.length, index.getLength());
+			assertQueries(window, index, sums, lines, random);
+		}
+		sums.setLineCalculated(1, false);
+		assertEquals(scanSumMax(window.columns, window.start, window.start + window.length, lines),
+				sums.getMax(0, window.length));
+	}
+
+	@Test
+	public void prependMatchesScan() {
+		Window window = new Window(1000, 900);
+		RangeIndex index = new RangeIndex(window.columns, window.start, 0, null);
+		SumIndex sums = new SumIndex(window.columns, window.start, 0, new boolean[] {true, true, true});
+		boolean[] lines = {true, true, false};
+		Random random = new Random(4);
+		while (window.start > 10) {
+			int count = 1 + random.nextInt(10);
+			window.prepend(count, random);
+			index.prepend(window.columns, window.start, count);
+			sums.prepend(window.columns, window.start, count);
+			assertEquals(window.length, index.getLength());
+			assertQueries(window, index, sums, lines, random);
+		}
+	}
+
+	private static void assertQueries(Window window, RangeIndex index, SumIndex sums, boolean[] lines,
+			Random random) {
+		int[][] columns = window.columns;
+		int start = window.start;
+		boolean[] all = {true, true, true};
+		for (int q = 0; q < 10; q++) {
+			int from = random.nextInt(window.length);
+			int to = from + 1 + random.nextInt(window.length - from);
+			assertEquals(scanMax(columns, start + from, start + to, lines), index.getMax(from, to, lines));
+			assertEquals(scanMin(columns, start + from, start + to, lines), index.getMin(from, to, lines));
+			assertEquals(scanSumMax(columns, start + from, start + to, all), sums.getMax(from, to));
+		}
+	}
+
+	/**
+	 * Values of lines placed in arrays with free space before and after them, like in chart data.
+	 */
+	static class Window {
+
+		final int[][] columns;
+		int start;
+		int length;
+
+		Window(int capacity, int start) {
+			columns = new int[LINES][capacity];
+			this.start = start;
+		}
+
+		/**
+		 * Write count random values after the last one, values are moved to the beginning when there is no space.
+		 */
+		void append(int count, Random random) {
+			if (start + length + count > columns[0].length) {
+				for (int j = 0; j < LINES; j++) {
+					System.arraycopy(columns[j], start, columns[j], 0, length);
+				}
+				start = 0;
+			}
+			for (int i = start + length; i < start + length + count; i++) {
+				for (int j = 0; j < LINES; j++) {
+					columns[j][i] = random.nextInt(10000) - 1000;
+				}
+			}
+			length += count;
+		}
+
+		/**
+		 * Write count random values before the first one.
+		 */
+		void prepend(int count, Random random) {
+			start -= count;
+			length += count;
+			for (int i = start; i < start + count; i++) {
+				for (int j = 0; j < LINES; j++) {
+					columns[j][i] = random.nextInt(10000) - 1000;
+				}
+			}
+		}
+
+		/**
+		 * Remove first values by batches, keeping the last maxPoints.
+		 * @return count of removed values.
+		 */
+		int evict(int maxPoints, int batch) {
+			if (length < maxPoints + batch) {
+				return 0;
+			}
+			int removed = length - maxPoints;
+			start += removed;
+			length = maxPoints;
+			return removed;
+		}
+	}
+
+	static int[][] randomColumns(int length, long seed) {
+		Random random = new Random(seed);
+		int[][] columns = new int[LINES][length];
+		for (int j = 0; j < LINES; j++) {
+			for (int i = 0; i < length; i++) {
+				columns[j][i] = random.nextInt(10000) - 1000;
+			}
+		}
+		return columns;
+	}
+
+	static int scanMax(int[][] columns, int from, int to, boolean[] lines) {
+		int max = Integer.MIN_VALUE;
+		for (int j = 0; j < columns.length; j++) {
+			for (int i = from; i < to && lines[j]; i++) {
+				max = Math.max(max, columns[j][i]);
+			}
+		}
+		return max;
+	}
+
+	static int scanMin(int[][] columns, int from, int to, boolean[] lines) {
+		int min = Integer.MAX_VALUE;
+		for (int j = 0; j < columns.length; j++) {
+			for (int i = from; i < to && lines[j]; i++) {
+				min = Math.min(min, columns[j][i]);
+			}
+		}
+		return min;
+	}
+
+	static int scanSumMax(int[][] columns, int from, int to, boolean[] lines) {
+		int max = Integer.MIN_VALUE;
+		for (int i = from; i < to; i++) {
+			int sum = 0;
+			for (int j = 0; j < columns.length; j++) {
+				if (lines[j]) {
+					sum += columns[j][i];
+				}
+			}
+			max = Math.max(max, sum);
+		}
+		return max;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2019 Dmitriy Ponomarenko
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dimowner.charttemplate.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ViewportTest {
+
+	private static final float STEP = 10;
+	private static final float WIDTH = 100;
+
+	@Test
+	public void rangeIncludesOnePointBeyondEachEdge() {
+		Viewport vp = viewport(55, 0);
+		vp.resolveRange(100);
+		assertEquals(5, vp.getFirstIndex());
+		assertEquals(17, vp.getEndIndex());
+		assertTrue(vp.getX(vp.getFirstIndex()) <= 0);
+		assertTrue(vp.getX(vp.getFirstIndex() + 1) > 0);
+		assertTrue(vp.getX(vp.getEndIndex() - 1) >= WIDTH);
+		assertTrue(vp.getX(vp.getEndIndex() - 2) < WIDTH);
+	}
+
+	@Test
+	public void rangeIncludesPadding() {
+		Viewport vp = viewport(55, 20);
+		vp.resolveRange(100);
+		assertEquals(3, vp.getFirstIndex());
+		assertEquals(19, vp.getEndIndex());
+	}
+
+	@Test
+	public void rangeIsClampedToData() {
+		Viewport vp = viewport(-30, 0);
+		vp.resolveRange(8);
+		assertEquals(0, vp.getFirstIndex());
+		assertEquals(8, vp.getEndIndex());
+
+		vp = viewport(500, 0);
+		vp.resolveRange(20);
+		assertEquals(20, vp.getFirstIndex());
+		assertEquals(20, vp.getEndIndex());
+
+		vp.resolveRange(0);
+		assertEquals(0, vp.getFirstIndex());
+		assertEquals(0, vp.getEndIndex());
+	}
+
+	@Test
+	public void rangeIsUnlimitedUntilResolved() {
+		Viewport vp = viewport(55, 0);
+		assertEquals(5, vp.getFirstIndex());
+		assertEquals(Integer.MAX_VALUE, vp.getEndIndex());
+		vp.resolveRange(100);
+		vp.setScroll(0, 0, STEP);
+		assertEquals(Integer.MAX_VALUE, vp.getEndIndex());
+	}
+
+	/**
+	 * Line is laid out exactly for the resolved range at any scroll position, points are placed by index.
+	 */
+	@Test
+	public void lineIsLaidOutForResolvedRange() {
+		int length = 50;
+		long[] time = new long[length];
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			time[i] = 1000 + i * 60000L;
+			values[i] = (i * 37) % 11;
+		}
+		ArrayChartModel model = new ArrayChartModel(time, new int[][] {values},
+				new int[] {ChartModel.TYPE_LINE}, false, false, false);
+		ChartLayout layout = new ChartLayout();
+		float[] out = new float[length * 4];
+		for (float scrollPos = -25; scrollPos < length * STEP; scrollPos += 7.5f) {
+			for (float padding = 0; padding <= 20; padding += 20) {
+				Viewport vp = viewport(scrollPos, padding);
+				vp.setValues(100, 1, 0);
+				vp.resolveRange(length);
+				int count = layout.layoutLine(model.getValues(0), model.getStart(), model.getLength(), vp, out);
+				//Each point of the range starts a segment to the next point, the last point of data ends it.
+				assertEquals((vp.getEndIndex() - vp.getFirstIndex()) * 4, count);
+				for (int k = 0, i = vp.getFirstIndex(); k < count; k += 4, i++) {
+					int next = Math.min(i + 1, length - 1);
+					assertEquals(vp.getX(i), out[k], 0.001f);
+					assertEquals(vp.getY(values[i]), out[k + 1], 0);
+					assertEquals(vp.getX(next), out[k + 2], 0.001f);
+					assertEquals(vp.getY(values[next]), out[k + 3], 0);
+				}
+			}
+		}
+	}
+
+	private static Viewport viewport(float scrollPos, float padding) {
+		Viewport vp = new Viewport();
+		vp.setScroll(scrollPos / STEP, scrollPos, STEP);
+		vp.setSize(WIDTH, padding);
+		return vp;
+	}
+}